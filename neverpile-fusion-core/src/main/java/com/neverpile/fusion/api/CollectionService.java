@@ -1,8 +1,10 @@
 package com.neverpile.fusion.api;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
 
 import com.neverpile.fusion.api.exception.VersionMismatchException;
 import com.neverpile.fusion.model.Collection;
@@ -31,6 +33,33 @@ public interface CollectionService {
    */
   Optional<Collection> getVersion(String id, Instant versionTimestamp);
 
+  /**
+   * Get the header of the current version of the collection with the given id, i.e. the collection
+   * without its elements. The header suffices to authorize access to the collection. The default
+   * implementation retrieves the whole collection; implementations should override it with a cheaper
+   * retrieval.
+   * 
+   * @param id the collection's id
+   * @return the current version without elements or the empty optional if there is no such
+   *         collection.
+   */
+  default Optional<Collection> getCurrentHeader(final String id) {
+    return getCurrent(id).map(CollectionService::withoutElements);
+  }
+
+  /**
+   * Get the header of a particular version of the collection with the given id, i.e. the collection
+   * without its elements. The default implementation retrieves the whole collection; implementations
+   * should override it with a cheaper retrieval.
+   * 
+   * @param id the collection's id
+   * @param versionTimestamp the version's timestamp
+   * @return the version without elements or the empty optional if there is no such collection.
+   */
+  default Optional<Collection> getVersionHeader(final String id, final Instant versionTimestamp) {
+    return getVersion(id, versionTimestamp).map(CollectionService::withoutElements);
+  }
+
   /**
    * Get the version timestamps of all versions of the collection with the given id.
    * 
@@ -39,6 +68,20 @@ public interface CollectionService {
    */
   List<Instant> getVersions(String id);
 
+  /**
+   * Get the version timestamps of the versions of the collection with the given id selected by the
+   * given query. The default implementation selects from the list of all versions; implementations
+   * should override it with a more efficient selection.
+   * 
+   * @param id the collection's id
+   * @param query the query selecting the versions
+   * @return the list of version timestamps in the order requested by the query or the empty list, if
+   *         the collection does not exist
+   */
+  default List<Instant> getVersions(final String id, final VersionQuery query) {
+    return query.apply(getVersions(id), Function.identity());
+  }
+
   /**
    * Get the version metadata of all versions of the collection with the given id.
    * 
@@ -47,6 +90,21 @@ public interface CollectionService {
    */
   List<VersionMetadata> getVersionsWithMetadata(String id);
 
+  /**
+   * Get the version metadata of the versions of the collection with the given id selected by the
+   * given query. If the query requests grouping, related successive versions are merged into a
+   * single entry. The default implementation selects from the list of all versions; implementations
+   * should override it with a more efficient selection.
+   * 
+   * @param id the collection's id
+   * @param query the query selecting the versions
+   * @return the list of version metadata in the order requested by the query or the empty list, if
+   *         the collection does not exist
+   */
+  default List<VersionMetadata> getVersionsWithMetadata(final String id, final VersionQuery query) {
+    return query.applyToMetadata(getVersionsWithMetadata(id));
+  }
+
   /**
    * Save a new collection or a new version thereof. Implementations must guard against lost updates
    * by employing optimistic concurrency control. When saving a new version of an existing
@@ -61,4 +119,9 @@ public interface CollectionService {
    * @throws VersionMismatchException if a version mismatch is detected.
    */
   Collection save(Collection newVersion);
+
+  private static Collection withoutElements(final Collection collection) {
+    collection.setElements(new ArrayList<>());
+    return collection;
+  }
 }
@@ -0,0 +1,27 @@
+package com.neverpile.fusion.api;
+
+import java.util.function.Consumer;
+
+/**
+ * An InvalidationBus distributes {@link InvalidationEvent}s among all nodes of a fusion deployment,
+ * so that in-process caches can be kept coherent with the saves performed by other nodes. An event
+ * is published whenever a collection has been saved via the {@link CollectionService}.
+ * <p>
+ * Delivery is asynchronous and at-least-once: listeners may receive an event more than once and
+ * also receive the events published by their own node, so they must handle events idempotently.
+ */
+public interface InvalidationBus {
+  /**
+   * Publish the given event to all nodes, including this one.
+   * 
+   * @param event the event
+   */
+  void publish(InvalidationEvent event);
+
+  /**
+   * Register a listener receiving all events published from now on.
+   * 
+   * @param listener the listener
+   */
+  void subscribe(Consumer<InvalidationEvent> listener);
+}
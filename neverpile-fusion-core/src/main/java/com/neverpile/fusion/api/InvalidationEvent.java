@@ -0,0 +1,36 @@
+package com.neverpile.fusion.api;
+
+import java.time.Instant;
+
+/**
+ * Signals that a new version of a collection has been saved, so that cached state derived from
+ * older versions of the collection must be discarded.
+ */
+public class InvalidationEvent {
+  private final String collectionId;
+
+  private final Instant versionTimestamp;
+
+  public InvalidationEvent(final String collectionId, final Instant versionTimestamp) {
+    this.collectionId = collectionId;
+    this.versionTimestamp = versionTimestamp;
+  }
+
+  public String getCollectionId() {
+    return collectionId;
+  }
+
+  /**
+   * Return the version timestamp of the saved version.
+   * 
+   * @return the version timestamp
+   */
+  public Instant getVersionTimestamp() {
+    return versionTimestamp;
+  }
+
+  @Override
+  public String toString() {
+    return "InvalidationEvent [collectionId=" + collectionId + ", versionTimestamp=" + versionTimestamp + "]";
+  }
+}
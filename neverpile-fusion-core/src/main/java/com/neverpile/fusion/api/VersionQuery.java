@@ -0,0 +1,208 @@
+package com.neverpile.fusion.api;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+import com.neverpile.fusion.model.VersionMetadata;
+
+/**
+ * A cursor-based selection of versions of a collection: the versions strictly after and/or before
+ * the given timestamps, in the given order and at most {@link #getLimit()} of them. To page through
+ * a history, pass the last timestamp of one page as {@link #getBefore()} (when descending) or
+ * {@link #getAfter()} (when ascending) of the next one.
+ * <p>
+ * When retrieving version metadata, related successive versions can be grouped by setting a
+ * {@link #getGroupingWindow()}. The limit then applies to the number of groups.
+ */
+public class VersionQuery {
+  public enum Direction {
+    /**
+     * Oldest version first.
+     */
+    ASCENDING,
+    /**
+     * Most recent version first.
+     */
+    DESCENDING
+  }
+
+  /**
+   * If set, select only versions newer than the given timestamp.
+   */
+  private Instant after;
+
+  /**
+   * If set, select only versions older than the given timestamp.
+   */
+  private Instant before;
+
+  /**
+   * If set, select at most this many versions.
+   */
+  private Integer limit;
+
+  private Direction direction = Direction.ASCENDING;
+
+  /**
+   * If set, group successive versions by the same creator with the same type which were created
+   * within the given time of each other. Only applies to the retrieval of version metadata.
+   */
+  private Duration groupingWindow;
+
+  public VersionQuery() {
+  }
+
+  public VersionQuery(final Instant after, final Instant before, final Integer limit, final Direction direction) {
+    this.after = after;
+    this.before = before;
+    this.limit = limit;
+    this.direction = direction;
+  }
+
+  /**
+   * Return a query selecting all versions in ascending order.
+   *
+   * @return the query
+   */
+  public static VersionQuery all() {
+    return new VersionQuery();
+  }
+
+  /**
+   * Return whether the given version timestamp lies within the bounds of this query.
+   *
+   * @param versionTimestamp the version timestamp
+   * @return <code>true</code> if the version is selected, disregarding the limit
+   */
+  public boolean includes(final Instant versionTimestamp) {
+    return (null == after || versionTimestamp.isAfter(after)) && (null == before || versionTimestamp.isBefore(before));
+  }
+
+  /**
+   * Apply this query to a complete list of versions in ascending order. This is meant for
+   * implementations which cannot select versions more efficiently.
+   *
+   * @param <T> the type of version representation
+   * @param ascending all versions in ascending order
+   * @param versionTimestamp a function extracting the version timestamp from a version
+   * @return the selected versions
+   */
+  public <T> List<T> apply(final List<T> ascending, final Function<T, Instant> versionTimestamp) {
+    List<T> selected = select(ascending, versionTimestamp);
+    return null != limit && selected.size() > limit ? new ArrayList<>(selected.subList(0, limit)) : selected;
+  }
+
+  /**
+   * Apply this query, including the grouping, to the complete metadata of all versions in
+   * ascending order. This is meant for implementations which cannot select versions more
+   * efficiently.
+   *
+   * @param ascending the metadata of all versions in ascending order
+   * @return the selected versions or groups of versions
+   */
+  public List<VersionMetadata> applyToMetadata(final List<VersionMetadata> ascending) {
+    return collect(select(ascending, v -> v.getVersionTimestamps().get(0)).iterator());
+  }
+
+  /**
+   * Collect the result of this query from the metadata of individual versions which are already
+   * within the bounds and in the order of this query. Related versions are grouped, if requested,
+   * and the versions are consumed only until the limit is reached, so that implementations can
+   * pass a lazily populated iterator. The iterator is consumed at most one element beyond the last
+   * version of the result.
+   *
+   * @param selected the metadata of the selected versions in query order
+   * @return the selected versions or groups of versions
+   */
+  public List<VersionMetadata> collect(final Iterator<VersionMetadata> selected) {
+    List<VersionMetadata> collected = new ArrayList<>();
+    VersionMetadata group = null;
+    while ((null != groupingWindow || !isLimitReached(collected)) && selected.hasNext()) {
+      VersionMetadata v = selected.next();
+      if (null != group && isRelated(group, v)) {
+        group.getVersionTimestamps().addAll(v.getVersionTimestamps());
+      } else if (isLimitReached(collected)) {
+        break;
+      } else {
+        group = new VersionMetadata(new ArrayList<>(v.getVersionTimestamps()), v.getTypeId(), v.getCreatedBy());
+        collected.add(group);
+      }
+    }
+    return collected;
+  }
+
+  private boolean isLimitReached(final List<VersionMetadata> collected) {
+    return null != limit && collected.size() >= limit;
+  }
+
+  private boolean isRelated(final VersionMetadata group, final VersionMetadata v) {
+    return null != groupingWindow
+        // created by same user
+        && Objects.equals(group.getCreatedBy(), v.getCreatedBy())
+        // have same type
+        && Objects.equals(group.getTypeId(), v.getTypeId())
+        // one version timestamp list is empty (should not happen)
+        && (group.getVersionTimestamps().isEmpty() || v.getVersionTimestamps().isEmpty()
+            // or difference between successive timestamps within grouping window
+            || Duration.between(group.getVersionTimestamps().get(group.getVersionTimestamps().size() - 1),
+                v.getVersionTimestamps().get(0)).abs().compareTo(groupingWindow) < 0);
+  }
+
+  private <T> List<T> select(final List<T> ascending, final Function<T, Instant> versionTimestamp) {
+    List<T> selected = new ArrayList<>();
+    for (T t : ascending)
+      if (includes(versionTimestamp.apply(t)))
+        selected.add(t);
+
+    if (direction == Direction.DESCENDING)
+      Collections.reverse(selected);
+
+    return selected;
+  }
+
+  public Instant getAfter() {
+    return after;
+  }
+
+  public void setAfter(final Instant after) {
+    this.after = after;
+  }
+
+  public Instant getBefore() {
+    return before;
+  }
+
+  public void setBefore(final Instant before) {
+    this.before = before;
+  }
+
+  public Integer getLimit() {
+    return limit;
+  }
+
+  public void setLimit(final Integer limit) {
+    this.limit = limit;
+  }
+
+  public Direction getDirection() {
+    return direction;
+  }
+
+  public void setDirection(final Direction direction) {
+    this.direction = direction;
+  }
+
+  public Duration getGroupingWindow() {
+    return groupingWindow;
+  }
+
+  public void setGroupingWindow(final Duration groupingWindow) {
+    this.groupingWindow = groupingWindow;
+  }
+}
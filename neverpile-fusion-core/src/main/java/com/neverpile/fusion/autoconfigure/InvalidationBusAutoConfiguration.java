@@ -0,0 +1,22 @@
+package com.neverpile.fusion.autoconfigure;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.neverpile.fusion.api.InvalidationBus;
+import com.neverpile.fusion.impl.LocalInvalidationBus;
+
+/**
+ * Provide a JVM-local {@link InvalidationBus} if no cluster-wide one is provided. This is an
+ * auto-configuration, so that the condition is evaluated after all regular bean definitions have
+ * been registered.
+ */
+@Configuration
+public class InvalidationBusAutoConfiguration {
+  @ConditionalOnMissingBean(InvalidationBus.class)
+  @Bean
+  public InvalidationBus localInvalidationBus() {
+    return new LocalInvalidationBus();
+  }
+}
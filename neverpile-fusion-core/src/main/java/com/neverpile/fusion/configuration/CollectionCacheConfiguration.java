@@ -0,0 +1,95 @@
+package com.neverpile.fusion.configuration;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Configuration of the cache in front of the {@link com.neverpile.fusion.api.CollectionService}.
+ * Collections are cached in serialized form, so the cache sizes are given in bytes.
+ */
+@Component
+@ConfigurationProperties("neverpile-fusion.collection-cache")
+public class CollectionCacheConfiguration {
+  public static class CurrentVersionCacheConfiguration {
+    /**
+     * The maximum total size of the cached current versions.
+     */
+    private DataSize maximumSize = DataSize.ofMegabytes(64);
+
+    /**
+     * The time after which a cached current version is reloaded. Saves invalidate the cached version
+     * immediately, but saves through other nodes only do so with a cluster-wide
+     * {@link com.neverpile.fusion.api.InvalidationBus}. Otherwise they only become visible once the
+     * cached version expires.
+     */
+    private Duration timeToLive = Duration.ofSeconds(30);
+
+    public DataSize getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(final DataSize maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+
+    public Duration getTimeToLive() {
+      return timeToLive;
+    }
+
+    public void setTimeToLive(final Duration timeToLive) {
+      this.timeToLive = timeToLive;
+    }
+  }
+
+  public static class VersionCacheConfiguration {
+    /**
+     * The maximum total size of the cached versions. Since versions never change, they are only
+     * evicted to stay within this size.
+     */
+    private DataSize maximumSize = DataSize.ofMegabytes(64);
+
+    public DataSize getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(final DataSize maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+  }
+
+  /**
+   * Whether to cache collections retrieved from the collection service.
+   */
+  private boolean enabled = false;
+
+  private CurrentVersionCacheConfiguration current = new CurrentVersionCacheConfiguration();
+
+  private VersionCacheConfiguration versions = new VersionCacheConfiguration();
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(final boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public CurrentVersionCacheConfiguration getCurrent() {
+    return current;
+  }
+
+  public void setCurrent(final CurrentVersionCacheConfiguration current) {
+    this.current = current;
+  }
+
+  public VersionCacheConfiguration getVersions() {
+    return versions;
+  }
+
+  public void setVersions(final VersionCacheConfiguration versions) {
+    this.versions = versions;
+  }
+}
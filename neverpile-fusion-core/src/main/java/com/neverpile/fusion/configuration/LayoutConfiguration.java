@@ -0,0 +1,209 @@
+package com.neverpile.fusion.configuration;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Configuration of the view layout engine.
+ */
+@Component
+@ConfigurationProperties("neverpile-fusion.layout")
+public class LayoutConfiguration {
+  /**
+   * The available script engine backends.
+   */
+  public enum EngineType {
+    /**
+     * Use GraalJS if an execution budget is configured (see {@link BudgetConfiguration}) or no
+     * JSR-223 engine is available, the JSR-223 engine otherwise.
+     */
+    AUTO,
+    /**
+     * Use the JSR-223 script engine registered under the name <code>JavaScript</code>, usually
+     * Nashorn. Execution budgets are not supported.
+     */
+    JSR223,
+    /**
+     * Use GraalJS via the polyglot API.
+     */
+    GRAAL
+  }
+
+  public static class PoolConfiguration {
+    /**
+     * The maximum number of script engine contexts. Each concurrently executing layout occupies one
+     * context.
+     */
+    private int size = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum time a layout request waits for a free context before it is rejected.
+     */
+    private Duration checkoutTimeout = Duration.ofSeconds(30);
+
+    public int getSize() {
+      return size;
+    }
+
+    public void setSize(final int size) {
+      this.size = size;
+    }
+
+    public Duration getCheckoutTimeout() {
+      return checkoutTimeout;
+    }
+
+    public void setCheckoutTimeout(final Duration checkoutTimeout) {
+      this.checkoutTimeout = checkoutTimeout;
+    }
+  }
+
+  public static class CacheConfiguration {
+    /**
+     * Whether to cache the layouts of stored collection versions.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The maximum total weight of the cached layouts. The weight of a layout is the number of nodes
+     * in its view trees.
+     */
+    private long maximumWeight = 1_000_000;
+
+    /**
+     * Whether to keep the intermediate results of the latest layout of each collection, so that the
+     * layout of a new version only has to run the element rules for changed elements. The retained
+     * states are bounded by the maximum weight as well.
+     */
+    private boolean incremental = true;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(final boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public long getMaximumWeight() {
+      return maximumWeight;
+    }
+
+    public void setMaximumWeight(final long maximumWeight) {
+      this.maximumWeight = maximumWeight;
+    }
+
+    public boolean isIncremental() {
+      return incremental;
+    }
+
+    public void setIncremental(final boolean incremental) {
+      this.incremental = incremental;
+    }
+  }
+
+  public static class BudgetConfiguration {
+    /**
+     * The maximum CPU time a single rule execution may take, e.g. the execution of an element rule
+     * for one element. Unlimited if not set. Rules are aborted as soon as they exceed the budget.
+     * Only supported by the GraalJS engine.
+     */
+    private Duration cpuTime;
+
+    /**
+     * The maximum number of statements a single rule execution may execute. Unlimited if zero. Only
+     * supported by the GraalJS engine.
+     */
+    private long statements;
+
+    public Duration getCpuTime() {
+      return cpuTime;
+    }
+
+    public void setCpuTime(final Duration cpuTime) {
+      this.cpuTime = cpuTime;
+    }
+
+    public long getStatements() {
+      return statements;
+    }
+
+    public void setStatements(final long statements) {
+      this.statements = statements;
+    }
+  }
+
+  /**
+   * The script engine backend used to execute layout rules.
+   */
+  private EngineType engine = EngineType.AUTO;
+
+  private PoolConfiguration pool = new PoolConfiguration();
+
+  private CacheConfiguration cache = new CacheConfiguration();
+
+  private BudgetConfiguration budget = new BudgetConfiguration();
+
+  /**
+   * The maximum number of threads used to lay out the views of a collection in parallel. Values less
+   * than two disable the parallel layout.
+   */
+  private int viewParallelism = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Whether to write the view layouts of ad-hoc layout requests to the response one by one as they
+   * complete instead of materializing the complete layout first. This bounds the memory held per
+   * request to roughly the size of the views in progress.
+   */
+  private boolean streamViews = true;
+
+  public EngineType getEngine() {
+    return engine;
+  }
+
+  public void setEngine(final EngineType engine) {
+    this.engine = engine;
+  }
+
+  public int getViewParallelism() {
+    return viewParallelism;
+  }
+
+  public void setViewParallelism(final int viewParallelism) {
+    this.viewParallelism = viewParallelism;
+  }
+
+  public boolean isStreamViews() {
+    return streamViews;
+  }
+
+  public void setStreamViews(final boolean streamViews) {
+    this.streamViews = streamViews;
+  }
+
+  public PoolConfiguration getPool() {
+    return pool;
+  }
+
+  public void setPool(final PoolConfiguration pool) {
+    this.pool = pool;
+  }
+
+  public BudgetConfiguration getBudget() {
+    return budget;
+  }
+
+  public void setBudget(final BudgetConfiguration budget) {
+    this.budget = budget;
+  }
+
+  public CacheConfiguration getCache() {
+    return cache;
+  }
+
+  public void setCache(final CacheConfiguration cache) {
+    this.cache = cache;
+  }
+}
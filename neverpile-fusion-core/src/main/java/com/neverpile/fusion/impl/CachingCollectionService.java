@@ -0,0 +1,166 @@
+package com.neverpile.fusion.impl;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.InvalidationBus;
+import com.neverpile.fusion.api.exception.NeverpileException;
+import com.neverpile.fusion.configuration.CollectionCacheConfiguration;
+import com.neverpile.fusion.model.Collection;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * A {@link CollectionService} decorator caching the collections retrieved from another
+ * implementation.
+ * <p>
+ * The current versions of collections are cached for a limited time and invalidated whenever a
+ * collection is saved, through this service or, given a cluster-wide {@link InvalidationBus},
+ * through any other node. Particular versions never change once they have been stored, so they are
+ * cached until they are evicted due to the size limit. Collections are cached in serialized form and
+ * deserialized on every access, so that callers are free to modify the returned collections.
+ * <p>
+ * The statistics of the caches are exposed under the names
+ * <code>fusion.collection.cache.current</code> and <code>fusion.collection.cache.versions</code>.
+ */
+public class CachingCollectionService extends DelegatingCollectionService {
+  private static final class VersionKey {
+    private final String id;
+    private final Instant versionTimestamp;
+
+    VersionKey(final String id, final Instant versionTimestamp) {
+      this.id = id;
+      this.versionTimestamp = versionTimestamp;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(id, versionTimestamp);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof VersionKey))
+        return false;
+      VersionKey other = (VersionKey) obj;
+      return id.equals(other.id) && versionTimestamp.equals(other.versionTimestamp);
+    }
+  }
+
+  private final ObjectMapper objectMapper;
+
+  private final Cache<String, byte[]> current;
+
+  private final Cache<VersionKey, byte[]> versions;
+
+  public CachingCollectionService(final CollectionService delegate, final ObjectMapper objectMapper,
+      final CollectionCacheConfiguration config, final MeterRegistry meterRegistry, final InvalidationBus bus) {
+    super(delegate);
+    this.objectMapper = objectMapper;
+
+    current = Caffeine.newBuilder() //
+        .maximumWeight(config.getCurrent().getMaximumSize().toBytes()) //
+        .weigher((String k, byte[] v) -> v.length) //
+        .expireAfterWrite(config.getCurrent().getTimeToLive()) //
+        .recordStats() //
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, current, "fusion.collection.cache.current");
+
+    versions = Caffeine.newBuilder() //
+        .maximumWeight(config.getVersions().getMaximumSize().toBytes()) //
+        .weigher((VersionKey k, byte[] v) -> v.length) //
+        .recordStats() //
+        .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, versions, "fusion.collection.cache.versions");
+
+    // versions never change, so only the current versions need to be invalidated
+    if (null != bus)
+      bus.subscribe(e -> invalidate(e.getCollectionId()));
+  }
+
+  @Override
+  public Optional<Collection> getCurrent(final String id) {
+    // nonexistent collections are not cached: the mapping function's null result isn't stored
+    return Optional.ofNullable(current.get(id, k -> serialize(delegate.getCurrent(k)))).map(this::deserialize);
+  }
+
+  @Override
+  public Optional<Collection> getVersion(final String id, final Instant versionTimestamp) {
+    if (null == id || null == versionTimestamp)
+      return delegate.getVersion(id, versionTimestamp);
+
+    return Optional.ofNullable(versions.get(new VersionKey(id, versionTimestamp),
+        k -> serialize(delegate.getVersion(k.id, k.versionTimestamp)))).map(this::deserialize);
+  }
+
+  @Override
+  public Optional<Collection> getCurrentHeader(final String id) {
+    // headers aren't cached, but reading one from a cached collection is cheaper than asking the delegate
+    byte[] cached = null != id ? current.getIfPresent(id) : null;
+    return null != cached ? Optional.of(deserializeHeader(cached)) : delegate.getCurrentHeader(id);
+  }
+
+  @Override
+  public Optional<Collection> getVersionHeader(final String id, final Instant versionTimestamp) {
+    byte[] cached = null != id && null != versionTimestamp
+        ? versions.getIfPresent(new VersionKey(id, versionTimestamp))
+        : null;
+    return null != cached ? Optional.of(deserializeHeader(cached)) : delegate.getVersionHeader(id, versionTimestamp);
+  }
+
+  @Override
+  public Collection save(final Collection newVersion) {
+    try {
+      return delegate.save(newVersion);
+    } finally {
+      // invalidate in any case: a failed save may well indicate that the cached version is stale
+      if (null != newVersion.getId())
+        current.invalidate(newVersion.getId());
+    }
+  }
+
+  /**
+   * Discard the cached current version of the collection with the given id, e.g. because it has
+   * been saved through another node. The service subscribes to the {@link InvalidationBus} given on
+   * construction, if any, to do so.
+   * 
+   * @param id the collection's id
+   */
+  public void invalidate(final String id) {
+    current.invalidate(id);
+  }
+
+  private byte[] serialize(final Optional<Collection> collection) {
+    try {
+      return collection.isPresent() ? objectMapper.writeValueAsBytes(collection.get()) : null;
+    } catch (JsonProcessingException e) {
+      throw new NeverpileException("Can't marshal to JSON", e);
+    }
+  }
+
+  private Collection deserialize(final byte[] serialized) {
+    try {
+      return objectMapper.readValue(serialized, Collection.class);
+    } catch (IOException e) {
+      throw new NeverpileException("Failed to unmarshal collection", e);
+    }
+  }
+
+  private Collection deserializeHeader(final byte[] serialized) {
+    try {
+      return CollectionHeaderReader.readHeader(objectMapper, objectMapper.getFactory().createParser(serialized));
+    } catch (IOException e) {
+      throw new NeverpileException("Failed to unmarshal collection", e);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.neverpile.fusion.impl;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neverpile.fusion.model.Collection;
+
+/**
+ * Reads the header of a serialized {@link Collection}, i.e. all of its properties but the elements.
+ * As the elements are written last, reading stops as soon as they start. Collections written while
+ * the type id still followed the elements are read completely, skipping the elements.
+ */
+public final class CollectionHeaderReader {
+  private CollectionHeaderReader() {
+  }
+
+  /**
+   * Read the header of the collection from the given parser, closing the parser afterwards.
+   * 
+   * @param objectMapper the mapper to map the header with
+   * @param parser the parser positioned before the collection
+   * @return the collection without elements
+   * @throws IOException if the content can't be read or mapped to a collection
+   */
+  public static Collection readHeader(final ObjectMapper objectMapper, final JsonParser parser) throws IOException {
+    try (JsonParser p = parser) {
+      if (p.nextToken() != JsonToken.START_OBJECT)
+        throw new JsonParseException(p, "Expected the start of a collection");
+
+      ObjectNode header = objectMapper.createObjectNode();
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String name = p.getCurrentName();
+        p.nextToken();
+        if (!"elements".equals(name))
+          header.set(name, objectMapper.readTree(p));
+        else if (header.has("typeId"))
+          break;
+        else
+          p.skipChildren();
+      }
+
+      return objectMapper.treeToValue(header, Collection.class);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.neverpile.fusion.impl;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.InvalidationBus;
+import com.neverpile.fusion.configuration.CollectionCacheConfiguration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Decorates the {@link CollectionService} implementation: collections are cached by a
+ * {@link CachingCollectionService}, if the collection cache is enabled, and saves are published on
+ * the {@link InvalidationBus}, if there is a cache or a cluster-wide bus. Otherwise the
+ * implementation is left alone, so that it can still be injected by its type. The post processor runs
+ * after all others, so that the decorators sit in front of any proxies of the implementation, e.g.
+ * transactional ones.
+ */
+@Component
+public class CollectionServicePostProcessor implements BeanPostProcessor, Ordered {
+  // resolved lazily: post processors are instantiated before regular beans
+  private final ObjectProvider<CollectionCacheConfiguration> config;
+  private final ObjectProvider<InvalidationBus> bus;
+  private final ObjectProvider<ObjectMapper> objectMapper;
+  private final ObjectProvider<MeterRegistry> meterRegistry;
+
+  @Autowired
+  public CollectionServicePostProcessor(final ObjectProvider<CollectionCacheConfiguration> config,
+      final ObjectProvider<InvalidationBus> bus, final ObjectProvider<ObjectMapper> objectMapper,
+      final ObjectProvider<MeterRegistry> meterRegistry) {
+    this.config = config;
+    this.bus = bus;
+    this.objectMapper = objectMapper;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+    if (!(bean instanceof CollectionService) || bean instanceof DelegatingCollectionService)
+      return bean;
+
+    CollectionService service = (CollectionService) bean;
+
+    CollectionCacheConfiguration cacheConfig = config.getIfAvailable();
+    boolean caching = null != cacheConfig && cacheConfig.isEnabled();
+
+    // without a cache, nobody listens on a local bus
+    InvalidationBus invalidationBus = bus.getIfAvailable();
+    if (null != invalidationBus && (caching || !(invalidationBus instanceof LocalInvalidationBus)))
+      service = new PublishingCollectionService(service, invalidationBus);
+
+    if (caching)
+      service = new CachingCollectionService(service, objectMapper.getObject(), cacheConfig,
+          meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), invalidationBus);
+
+    return service;
+  }
+
+  @Override
+  public int getOrder() {
+    return Ordered.LOWEST_PRECEDENCE;
+  }
+}
@@ -0,0 +1,76 @@
+package com.neverpile.fusion.impl;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.VersionQuery;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.VersionMetadata;
+
+/**
+ * Base class of {@link CollectionService} decorators, delegating all methods to the decorated
+ * service.
+ */
+public abstract class DelegatingCollectionService implements CollectionService {
+  protected final CollectionService delegate;
+
+  protected DelegatingCollectionService(final CollectionService delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * Return the decorated service.
+   * 
+   * @return the decorated service
+   */
+  public CollectionService getDelegate() {
+    return delegate;
+  }
+
+  @Override
+  public Optional<Collection> getCurrent(final String id) {
+    return delegate.getCurrent(id);
+  }
+
+  @Override
+  public Optional<Collection> getVersion(final String id, final Instant versionTimestamp) {
+    return delegate.getVersion(id, versionTimestamp);
+  }
+
+  @Override
+  public Optional<Collection> getCurrentHeader(final String id) {
+    return delegate.getCurrentHeader(id);
+  }
+
+  @Override
+  public Optional<Collection> getVersionHeader(final String id, final Instant versionTimestamp) {
+    return delegate.getVersionHeader(id, versionTimestamp);
+  }
+
+  @Override
+  public List<Instant> getVersions(final String id) {
+    return delegate.getVersions(id);
+  }
+
+  @Override
+  public List<Instant> getVersions(final String id, final VersionQuery query) {
+    return delegate.getVersions(id, query);
+  }
+
+  @Override
+  public List<VersionMetadata> getVersionsWithMetadata(final String id) {
+    return delegate.getVersionsWithMetadata(id);
+  }
+
+  @Override
+  public List<VersionMetadata> getVersionsWithMetadata(final String id, final VersionQuery query) {
+    return delegate.getVersionsWithMetadata(id, query);
+  }
+
+  @Override
+  public Collection save(final Collection newVersion) {
+    return delegate.save(newVersion);
+  }
+}
@@ -0,0 +1,47 @@
+package com.neverpile.fusion.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.neverpile.fusion.api.InvalidationBus;
+import com.neverpile.fusion.api.InvalidationEvent;
+
+/**
+ * An {@link InvalidationBus} delivering events within the publishing JVM only. This is sufficient
+ * for single-node deployments and the default if no other implementation is configured.
+ */
+public class LocalInvalidationBus implements InvalidationBus {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalInvalidationBus.class);
+
+  private final List<Consumer<InvalidationEvent>> listeners = new CopyOnWriteArrayList<>();
+
+  @Override
+  public void publish(final InvalidationEvent event) {
+    deliver(listeners, event);
+  }
+
+  @Override
+  public void subscribe(final Consumer<InvalidationEvent> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Deliver an event to the given listeners. A failing listener doesn't prevent the delivery to the
+   * others.
+   * 
+   * @param listeners the listeners
+   * @param event the event
+   */
+  public static void deliver(final List<Consumer<InvalidationEvent>> listeners, final InvalidationEvent event) {
+    for (Consumer<InvalidationEvent> listener : listeners)
+      try {
+        listener.accept(event);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Invalidation listener failed for {}", event, e);
+      }
+  }
+}
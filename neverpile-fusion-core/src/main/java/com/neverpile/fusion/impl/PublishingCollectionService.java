@@ -0,0 +1,38 @@
+package com.neverpile.fusion.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.InvalidationBus;
+import com.neverpile.fusion.api.InvalidationEvent;
+import com.neverpile.fusion.model.Collection;
+
+/**
+ * A {@link CollectionService} decorator publishing an {@link InvalidationEvent} on the
+ * {@link InvalidationBus} after every successful save.
+ */
+public class PublishingCollectionService extends DelegatingCollectionService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PublishingCollectionService.class);
+
+  private final InvalidationBus bus;
+
+  public PublishingCollectionService(final CollectionService delegate, final InvalidationBus bus) {
+    super(delegate);
+    this.bus = bus;
+  }
+
+  @Override
+  public Collection save(final Collection newVersion) {
+    Collection saved = delegate.save(newVersion);
+
+    // the save has been committed at this point: don't fail it because the event can't be published
+    try {
+      bus.publish(new InvalidationEvent(saved.getId(), saved.getVersionTimestamp()));
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to publish invalidation of collection {}", saved.getId(), e);
+    }
+
+    return saved;
+  }
+}
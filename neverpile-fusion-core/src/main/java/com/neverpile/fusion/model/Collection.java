@@ -19,8 +19,9 @@ import com.fasterxml.jackson.databind.JsonNode;
  * Collections are generally versioned, so that updates do not replace the old state but simply add
  * a new version with old versions still being accessible for reference purposes.
  */
+// the elements go last, so that the other properties can be read without reading the elements
 @JsonPropertyOrder({
-    "id", "versionTimestamp", "type", "state", "dateCreated", "dateModified", "createdBy", "metadata", "elements"
+    "id", "versionTimestamp", "typeId", "state", "dateCreated", "dateModified", "createdBy", "metadata", "elements"
 })
 public class Collection {
   /**
@@ -0,0 +1,219 @@
+package com.neverpile.fusion.model.rules;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.neverpile.fusion.configuration.LayoutConfiguration;
+import com.neverpile.fusion.configuration.LayoutConfiguration.CacheConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * A cache of the layouts of stored collection versions. Since a version never changes once it has
+ * been stored, its layout only depends on the collection type. Layouts are therefore keyed by the
+ * collection id, the version timestamp and a hash of the type's content, so that a changed type
+ * simply leads to new entries while the outdated ones are evicted eventually.
+ * <p>
+ * The cache is bounded by the total number of layout nodes. Its statistics are exposed under the
+ * name <code>fusion.collection.layout.cache</code>.
+ * <p>
+ * In addition, the cache may keep the {@link LayoutState} of the latest laid out version of each
+ * collection, so that a new version missing from the cache can be laid out incrementally.
+ * <p>
+ * Layouts in which a view failed are not cached, since the failure may well be temporary, e.g. a
+ * rule running into a timeout.
+ */
+@Component
+public class LayoutCache {
+  /**
+   * A function computing a layout incrementally.
+   */
+  @FunctionalInterface
+  public interface IncrementalLayouter {
+    /**
+     * Compute the layout.
+     * 
+     * @param previous the state of a previous layout of the same collection or <code>null</code>
+     * @param nextState receives the state of the computed layout or <code>null</code> if no state
+     *          is needed
+     * @return the layout
+     */
+    CollectionLayout layout(LayoutState previous, Consumer<LayoutState> nextState);
+  }
+
+  private static final class Key {
+    private final String collectionId;
+    private final Instant versionTimestamp;
+    private final String typeHash;
+
+    Key(final String collectionId, final Instant versionTimestamp, final String typeHash) {
+      this.collectionId = collectionId;
+      this.versionTimestamp = versionTimestamp;
+      this.typeHash = typeHash;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(collectionId, versionTimestamp, typeHash);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return collectionId.equals(other.collectionId) && Objects.equals(versionTimestamp, other.versionTimestamp)
+          && typeHash.equals(other.typeHash);
+    }
+  }
+
+  private final ObjectMapper objectMapper;
+
+  private final Cache<Key, CollectionLayout> cache;
+
+  /**
+   * The states of the latest layouts, keyed without a version timestamp.
+   */
+  private final Cache<Key, LayoutState> states;
+
+  @Autowired
+  public LayoutCache(final ObjectMapper objectMapper, final LayoutConfiguration config,
+      final ObjectProvider<MeterRegistry> meterRegistry) {
+    this(objectMapper, config.getCache(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  public LayoutCache(final ObjectMapper objectMapper, final CacheConfiguration config,
+      final MeterRegistry meterRegistry) {
+    this.objectMapper = objectMapper;
+
+    if (config.isEnabled()) {
+      cache = Caffeine.newBuilder() //
+          .maximumWeight(config.getMaximumWeight()) //
+          .weigher((Key k, CollectionLayout layout) -> weigh(layout)) //
+          .recordStats() //
+          .build();
+      CaffeineCacheMetrics.monitor(meterRegistry, cache, "fusion.collection.layout.cache");
+    } else {
+      cache = null;
+    }
+
+    if (config.isEnabled() && config.isIncremental()) {
+      states = Caffeine.newBuilder() //
+          .maximumWeight(config.getMaximumWeight()) //
+          .weigher((Key k, LayoutState state) -> state.getWeight()) //
+          .recordStats() //
+          .build();
+      CaffeineCacheMetrics.monitor(meterRegistry, states, "fusion.collection.layout.state-cache");
+    } else {
+      states = null;
+    }
+  }
+
+  /**
+   * Return the cached layout of the given collection version or compute and cache it. Collections
+   * without an id or a version timestamp, i.e. ones which have not been stored, and layouts with
+   * failed views are never cached.
+   * 
+   * @param collection the stored collection version
+   * @param type the collection type used for the layout
+   * @param layouter the function computing the layout in case of a cache miss
+   * @return the layout
+   */
+  public CollectionLayout get(final Collection collection, final CollectionType type,
+      final Supplier<CollectionLayout> layouter) {
+    if (null == cache || null == collection.getId() || null == collection.getVersionTimestamp())
+      return layouter.get();
+
+    Key key = new Key(collection.getId(), collection.getVersionTimestamp(), hash(type));
+
+    // don't compute within the cache: layouts may take a while and would block unrelated entries
+    CollectionLayout layout = cache.getIfPresent(key);
+    if (null == layout) {
+      layout = layouter.get();
+      if (isComplete(layout))
+        cache.put(key, layout);
+    }
+
+    return layout;
+  }
+
+  /**
+   * Return the cached layout of the given collection version or compute and cache it
+   * incrementally, based on the state of the latest layout of the same collection and type.
+   * Collections without an id or a version timestamp are laid out from scratch and never cached.
+   * 
+   * @param collection the stored collection version
+   * @param type the collection type used for the layout
+   * @param layouter the function computing the layout in case of a cache miss
+   * @return the layout
+   */
+  public CollectionLayout getIncrementally(final Collection collection, final CollectionType type,
+      final IncrementalLayouter layouter) {
+    if (null == states || null == collection.getId() || null == collection.getVersionTimestamp())
+      return get(collection, type, () -> layouter.layout(null, null));
+
+    String typeHash = hash(type);
+    Key key = new Key(collection.getId(), collection.getVersionTimestamp(), typeHash);
+
+    CollectionLayout layout = cache.getIfPresent(key);
+    if (null == layout) {
+      Key stateKey = new Key(collection.getId(), null, typeHash);
+      layout = layouter.layout(states.getIfPresent(stateKey), next -> states.asMap().merge(stateKey, next,
+          // keep the state of the most recent version
+          (existing, s) -> s.getVersionTimestamp().isBefore(existing.getVersionTimestamp()) ? existing : s));
+      if (isComplete(layout))
+        cache.put(key, layout);
+    }
+
+    return layout;
+  }
+
+  /**
+   * Discard all cached layouts.
+   */
+  public void clear() {
+    if (null != cache)
+      cache.invalidateAll();
+    if (null != states)
+      states.invalidateAll();
+  }
+
+  private String hash(final CollectionType type) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return Base64.getEncoder().encodeToString(digest.digest(objectMapper.writeValueAsBytes(type)));
+    } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+      throw new IllegalStateException("Can't hash collection type " + type.getId(), e);
+    }
+  }
+
+  private static boolean isComplete(final CollectionLayout layout) {
+    return layout.getViewLayouts().values().stream().allMatch(view -> null == view.getError());
+  }
+
+  private static int weigh(final CollectionLayout layout) {
+    long weight = 1;
+    for (ViewLayout view : layout.getViewLayouts().values())
+      weight += LayoutState.weigh(view.getStructureTree());
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+}
@@ -0,0 +1,19 @@
+package com.neverpile.fusion.model.rules;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import com.neverpile.fusion.api.exception.NeverpileException;
+
+/**
+ * An exception thrown if a layout cannot be started because all layout engine resources remained
+ * occupied for longer than the configured wait time.
+ */
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Layout engine saturated")
+public class LayoutEngineSaturatedException extends NeverpileException {
+  private static final long serialVersionUID = 1L;
+
+  public LayoutEngineSaturatedException(final String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,221 @@
+package com.neverpile.fusion.model.rules;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+
+/**
+ * The intermediate results of a layout which allow the next version of the same collection to be
+ * laid out incrementally. For each view whose element rules are all incremental, the state keeps
+ * the tree fragment and the title visualizations each element contributed. When the next version
+ * is laid out, the fragments of elements whose id and modification date did not change are reused
+ * instead of running the element rules again. The fragments are then merged in element order and
+ * the tree rules are run on the result.
+ * <p>
+ * A state is only valid for collections with the same type, state and metadata as the collection
+ * it was created from, since element rules may depend on those.
+ * <p>
+ * States are immutable once created and may be shared between threads.
+ */
+public final class LayoutState {
+  /**
+   * The contribution of a single element to a view.
+   */
+  public static final class Fragment {
+    private final Node root;
+    private final Map<String, String> titleVisualization = new HashMap<>();
+
+    public Fragment() {
+      root = new Node();
+      root.setName("root");
+    }
+
+    /**
+     * @return the root of the tree fragment created by the element rules
+     */
+    public Node getRoot() {
+      return root;
+    }
+
+    /**
+     * @return the title visualizations set by the element rules
+     */
+    public Map<String, String> getTitleVisualization() {
+      return titleVisualization;
+    }
+  }
+
+  private final String typeId;
+  private final Collection.State collectionState;
+  private final JsonNode metadata;
+  private final Instant versionTimestamp;
+
+  /**
+   * The reusable fragments by view name and element key.
+   */
+  private final Map<String, Map<String, Fragment>> views;
+
+  /**
+   * Create the state for the given collection from the fragments of its views. Views laid out
+   * non-incrementally are simply omitted.
+   *
+   * @param collection the collection that was laid out
+   * @param fragments the fragments by view name, in element order
+   */
+  public LayoutState(final Collection collection, final Map<String, List<Fragment>> fragments) {
+    this.typeId = collection.getTypeId();
+    this.collectionState = collection.getState();
+    this.metadata = collection.getMetadata();
+    this.versionTimestamp = collection.getVersionTimestamp();
+
+    // fragments of elements which cannot be identified unambiguously can't be reused
+    Set<String> ambiguous = ambiguousKeys(collection);
+
+    this.views = new HashMap<>();
+    fragments.forEach((view, list) -> {
+      Map<String, Fragment> byKey = new HashMap<>();
+      for (int i = 0; i < list.size(); i++) {
+        String key = key(collection.getElements().get(i));
+        if (!ambiguous.contains(key))
+          byKey.put(key, list.get(i));
+      }
+      views.put(view, byKey);
+    });
+  }
+
+  /**
+   * Return the key identifying an element's content for the purpose of incremental layouts.
+   *
+   * @param element the element
+   * @return the key
+   */
+  public static String key(final Element element) {
+    return element.getId() + "@" + element.getDateModified();
+  }
+
+  /**
+   * Return the keys of the given collection's elements which occur more than once. Elements with
+   * such keys must always be laid out from scratch.
+   *
+   * @param collection the collection
+   * @return the set of ambiguous keys
+   */
+  public static Set<String> ambiguousKeys(final Collection collection) {
+    Set<String> seen = new HashSet<>();
+    Set<String> ambiguous = new HashSet<>();
+    for (Element e : collection.getElements()) {
+      String key = key(e);
+      if (!seen.add(key))
+        ambiguous.add(key);
+    }
+    return ambiguous;
+  }
+
+  /**
+   * Return whether the fragments of this state may be reused for the given collection.
+   *
+   * @param collection the collection to lay out
+   * @return <code>true</code> if the state is applicable
+   */
+  public boolean isApplicableTo(final Collection collection) {
+    return Objects.equals(typeId, collection.getTypeId()) && collectionState == collection.getState()
+        && Objects.equals(metadata, collection.getMetadata());
+  }
+
+  /**
+   * Return whether this state holds the fragments of the given view, i.e. whether the view was laid
+   * out incrementally and successfully.
+   *
+   * @param view the view name
+   * @return <code>true</code> if the fragments of the view are available
+   */
+  public boolean hasFragments(final String view) {
+    return views.containsKey(view);
+  }
+
+  /**
+   * Return the fragment created for the element with the given key in the given view.
+   *
+   * @param view the view name
+   * @param key the element key (see {@link #key(Element)})
+   * @return the fragment or <code>null</code> if there is none
+   */
+  public Fragment getFragment(final String view, final String key) {
+    Map<String, Fragment> fragments = views.get(view);
+    return null != fragments ? fragments.get(key) : null;
+  }
+
+  /**
+   * @return the version timestamp of the collection this state was created from
+   */
+  public Instant getVersionTimestamp() {
+    return versionTimestamp;
+  }
+
+  /**
+   * @return the total number of nodes held by this state
+   */
+  public int getWeight() {
+    long weight = 1;
+    for (Map<String, Fragment> fragments : views.values())
+      for (Fragment fragment : fragments.values())
+        weight += weigh(fragment.getRoot());
+    return (int) Math.min(weight, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Merge the given fragments into a new tree, as if the element rules which created them had
+   * been run on a single tree in the given order: children are matched by name and created in the
+   * order of their first appearance, properties and visualizations are combined with later
+   * fragments winning. Likewise, the initial expansion of a node is the one set by the last fragment
+   * which set it at all. The fragments are left untouched.
+   *
+   * @param fragments the fragments in element order
+   * @return the root of the merged tree
+   */
+  public static Node merge(final List<Fragment> fragments) {
+    Node root = new Node();
+    root.setName("root");
+    for (Fragment fragment : fragments)
+      merge(root, fragment.getRoot());
+    return root;
+  }
+
+  private static void merge(final Node target, final Node source) {
+    target.getProperties().putAll(source.getProperties());
+    if (null != source.getVisualization() && !source.getVisualization().isEmpty()) {
+      if (null == target.getVisualization())
+        target.setVisualization(new HashMap<>());
+      target.getVisualization().putAll(source.getVisualization());
+    }
+    if (null != source.getElementId())
+      target.setElementId(source.getElementId());
+    if (source.isExpansionSet())
+      target.setInitiallyExpanded(source.isInitiallyExpanded());
+    if (null != source.getOnDragoverExecutable())
+      target.onDragover(source.getOnDragoverExecutable());
+    if (null != source.getOnDropExecutable())
+      target.onDrop(source.getOnDropExecutable());
+
+    for (Node child : source.getChildren())
+      merge(target.createChild(child.getName()), child);
+  }
+
+  static long weigh(final Node node) {
+    if (null == node)
+      return 0;
+
+    long weight = 1;
+    for (Node child : node.getChildren())
+      weight += weigh(child);
+    return weight;
+  }
+}
@@ -1,11 +1,9 @@
 package com.neverpile.fusion.model.rules;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -38,15 +36,27 @@ public class Node {
   private String elementId;
 
   /**
-   * The child nodes of this node.
+   * The child nodes of this node, indexed by name.
    */
-  private List<Node> children = new ArrayList<>();
+  private NodeChildren children = new NodeChildren();
+
+  /**
+   * The child list this node was last added to. Notified about name changes, so that it can update
+   * its index.
+   */
+  private transient NodeChildren container;
 
   /**
    * Whether the node shall be initially expanded when opening the view.
    */
   private boolean initiallyExpanded;
 
+  /**
+   * Whether {@link #initiallyExpanded} has been set explicitly, so that merging layout fragments
+   * can tell an untouched node from a collapsed one.
+   */
+  private transient boolean expansionSet;
+
   /**
    * String containing a native JavaScript function, executed on dragover.
    */
@@ -93,30 +103,36 @@ public class Node {
 
   public void setName(final String name) {
     this.name = name;
+    if (null != container)
+      container.invalidate();
   }
 
   public List<Node> getChildren() {
     return children;
   }
 
+  /**
+   * Replace the children of this node. The given list is copied.
+   * 
+   * @param children the new children
+   */
   public void setChildren(final List<Node> children) {
-    this.children = Objects.requireNonNull(children, "children");
+    Objects.requireNonNull(children, "children");
+    this.children = new NodeChildren(children);
   }
 
   public Node createChild(final String name) {
-    Optional<Node> child = children.stream().filter(m -> Objects.equals(name, m.getName())).findFirst();
-    if (child.isPresent()) {
-      return child.get();
-    } else {
-      Node n = new Node();
-      n.setName(name);
-      children.add(n);
-      return n;
+    Node child = children.find(name);
+    if (null == child) {
+      child = new Node();
+      child.setName(name);
+      children.add(child);
     }
+    return child;
   }
 
   public Node findChild(final String p) {
-    return children.stream().filter(m -> Objects.equals(p, m.getName())).findFirst().orElse(null);
+    return children.find(p);
   }
 
   public Node createPath(final String... nodePath) {
@@ -170,6 +186,11 @@ public class Node {
 
   public void setInitiallyExpanded(final boolean initiallyExpanded) {
     this.initiallyExpanded = initiallyExpanded;
+    this.expansionSet = true;
+  }
+
+  boolean isExpansionSet() {
+    return expansionSet;
   }
 
   public String getOnDragoverExecutable() {
@@ -206,4 +227,13 @@ public class Node {
     this.onDropExecutable = executable;
     return this;
   }
+
+  void attachTo(final NodeChildren container) {
+    this.container = container;
+  }
+
+  void detachFrom(final NodeChildren container) {
+    if (this.container == container)
+      this.container = null;
+  }
 }
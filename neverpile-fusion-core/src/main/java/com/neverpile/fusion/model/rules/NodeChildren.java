@@ -0,0 +1,130 @@
+package com.neverpile.fusion.model.rules;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * The child list of a {@link Node}. Besides the children in insertion order, it maintains an index
+ * from child names to the first child of the respective name, so that children can be looked up by
+ * name in constant time.
+ * <p>
+ * Appending a child updates the index in place. All other modifications, e.g. inserting in the
+ * middle, removing or sorting, as well as renaming a contained node merely invalidate it, causing it
+ * to be rebuilt upon the next lookup. This keeps the common pattern of building a tree path by path
+ * linear while leaving the list freely modifiable by tree rules.
+ */
+final class NodeChildren extends AbstractList<Node> implements RandomAccess {
+  private final ArrayList<Node> nodes;
+
+  /**
+   * The index or <code>null</code> if it needs to be rebuilt.
+   */
+  private Map<String, Node> index;
+
+  NodeChildren() {
+    this.nodes = new ArrayList<>();
+  }
+
+  NodeChildren(final Collection<Node> nodes) {
+    this.nodes = new ArrayList<>(nodes);
+    this.nodes.forEach(n -> n.attachTo(this));
+  }
+
+  /**
+   * Return the first child with the given name.
+   *
+   * @param name the name
+   * @return the child or <code>null</code> if there is none
+   */
+  Node find(final String name) {
+    if (null == index)
+      rebuild();
+
+    Node child = index.get(name);
+    if (null != child && !Objects.equals(name, child.getName())) {
+      // renamed without us being notified, e.g. via direct field access
+      rebuild();
+      child = index.get(name);
+    }
+    return child;
+  }
+
+  /**
+   * Called by a contained node if its name changes.
+   */
+  void invalidate() {
+    index = null;
+  }
+
+  @Override
+  public Node get(final int i) {
+    return nodes.get(i);
+  }
+
+  @Override
+  public int size() {
+    return nodes.size();
+  }
+
+  @Override
+  public void add(final int i, final Node node) {
+    Objects.requireNonNull(node, "node");
+    nodes.add(i, node);
+    modCount++;
+    node.attachTo(this);
+
+    if (null != index) {
+      if (i == nodes.size() - 1)
+        index.putIfAbsent(node.getName(), node);
+      else
+        invalidate();
+    }
+  }
+
+  @Override
+  public Node set(final int i, final Node node) {
+    Objects.requireNonNull(node, "node");
+    Node previous = nodes.set(i, node);
+    previous.detachFrom(this);
+    node.attachTo(this);
+    invalidate();
+    return previous;
+  }
+
+  @Override
+  public Node remove(final int i) {
+    Node removed = nodes.remove(i);
+    modCount++;
+    removed.detachFrom(this);
+    invalidate();
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    nodes.forEach(n -> n.detachFrom(this));
+    nodes.clear();
+    modCount++;
+    invalidate();
+  }
+
+  @Override
+  public void sort(final Comparator<? super Node> c) {
+    nodes.sort(c);
+    modCount++;
+    invalidate();
+  }
+
+  private void rebuild() {
+    Map<String, Node> rebuilt = new HashMap<>(Math.max(16, nodes.size() * 4 / 3 + 1));
+    for (Node node : nodes)
+      rebuilt.putIfAbsent(node.getName(), node);
+    index = rebuilt;
+  }
+}
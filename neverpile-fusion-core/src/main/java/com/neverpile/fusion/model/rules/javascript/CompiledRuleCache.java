@@ -0,0 +1,172 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.Rule;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A cache of compiled {@link JavascriptRule} scripts. Entries are keyed by the id of the
+ * {@link CollectionType} a rule belongs to, the rule name and the script code. Lookups are based on
+ * the hash of the script code, but since the full code takes part in the key's equality, a hash
+ * collision can never yield the wrong script.
+ * <p>
+ * All entries of a collection type are evicted as soon as a changed version of the type is
+ * encountered (see {@link #validate(CollectionType)}) or when they are evicted explicitly.
+ * <p>
+ * The cache is agnostic of the representation of a compiled script. Note that some representations
+ * are bound to the engine that produced them, e.g. a JSR-223 {@link CompiledScript} to its
+ * {@link ScriptEngine}. A cache holding such scripts must not be shared between engines.
+ *
+ * @param <S> the type of the compiled scripts
+ */
+class CompiledRuleCache<S> {
+  private static final String METRIC_NAME = "fusion.collection.layout.script-cache";
+
+  /**
+   * A compiler turning the code of a rule into its compiled representation.
+   *
+   * @param <S> the type of the compiled scripts
+   */
+  @FunctionalInterface
+  interface Compiler<S> {
+    S compile(JavascriptRule rule) throws ScriptException;
+  }
+
+  private static final class RuleKey {
+    private final String name;
+    private final String scriptCode;
+    private final int hash;
+
+    RuleKey(final String name, final String scriptCode) {
+      this.name = name;
+      this.scriptCode = scriptCode;
+      this.hash = 31 * Objects.hashCode(name) + scriptCode.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof RuleKey))
+        return false;
+      RuleKey other = (RuleKey) obj;
+      return hash == other.hash && Objects.equals(name, other.name) && scriptCode.equals(other.scriptCode);
+    }
+  }
+
+  private static final class TypeEntry<S> {
+    private final int fingerprint;
+    private final Map<RuleKey, S> scripts = new ConcurrentHashMap<>();
+
+    TypeEntry(final int fingerprint) {
+      this.fingerprint = fingerprint;
+    }
+  }
+
+  private final Compiler<S> compiler;
+
+  private final Map<String, TypeEntry<S>> types = new ConcurrentHashMap<>();
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+
+  CompiledRuleCache(final Compiler<S> compiler, final MeterRegistry meterRegistry) {
+    this.compiler = compiler;
+
+    hits = Counter.builder(METRIC_NAME).tag("result", "hit") //
+        .description("compiled rule script cache hits").register(meterRegistry);
+    misses = Counter.builder(METRIC_NAME).tag("result", "miss") //
+        .description("compiled rule script cache misses").register(meterRegistry);
+    evictions = Counter.builder(METRIC_NAME + ".evictions") //
+        .description("collection types evicted from the compiled rule script cache").register(meterRegistry);
+  }
+
+  /**
+   * Make sure that the cached entries for the given type still match its current definition. If the
+   * type's rules have changed since the entries were compiled, all entries for the type are evicted.
+   *
+   * @param type the collection type about to be used
+   */
+  void validate(final CollectionType type) {
+    int fingerprint = fingerprint(type);
+    types.compute(type.getId(), (id, existing) -> {
+      if (null == existing)
+        return new TypeEntry<>(fingerprint);
+      if (existing.fingerprint == fingerprint)
+        return existing;
+
+      evictions.increment();
+      return new TypeEntry<>(fingerprint);
+    });
+  }
+
+  /**
+   * Return the compiled script for the given rule, compiling it if it isn't cached yet.
+   *
+   * @param type the collection type the rule belongs to
+   * @param rule the rule
+   * @return the compiled script
+   * @throws ScriptException if the rule's script cannot be compiled
+   */
+  S get(final CollectionType type, final JavascriptRule rule) throws ScriptException {
+    TypeEntry<S> entry = types.computeIfAbsent(type.getId(), id -> new TypeEntry<>(fingerprint(type)));
+
+    RuleKey key = new RuleKey(rule.getName(), rule.getScriptCode());
+    S script = entry.scripts.get(key);
+    if (null != script) {
+      hits.increment();
+      return script;
+    }
+
+    misses.increment();
+    script = compiler.compile(rule);
+    S existing = entry.scripts.putIfAbsent(key, script);
+
+    return null != existing ? existing : script;
+  }
+
+  /**
+   * Evict all entries for the collection type with the given id.
+   *
+   * @param collectionTypeId the collection type id
+   */
+  void evict(final String collectionTypeId) {
+    if (null != types.remove(collectionTypeId))
+      evictions.increment();
+  }
+
+  private static int fingerprint(final CollectionType type) {
+    int fingerprint = fingerprint(1, type.getGlobalRules());
+    for (View view : type.getViews()) {
+      fingerprint = fingerprint(fingerprint, view.getElementRules());
+      fingerprint = fingerprint(fingerprint, view.getTreeRules());
+    }
+    return fingerprint;
+  }
+
+  private static int fingerprint(int fingerprint, final Iterable<Rule> rules) {
+    for (Rule rule : rules) {
+      fingerprint = 31 * fingerprint + Objects.hashCode(rule.getName());
+      if (rule instanceof JavascriptRule)
+        fingerprint = 31 * fingerprint + Objects.hashCode(((JavascriptRule) rule).getScriptCode());
+    }
+    return fingerprint;
+  }
+}
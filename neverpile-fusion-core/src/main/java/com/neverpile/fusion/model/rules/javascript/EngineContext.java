@@ -0,0 +1,57 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A JSR-223 script engine along with everything compiled for it: the scripting support library
+ * <code>LayoutEngine.js</code>, the per-element initialization and the cache of compiled rules.
+ * Contexts are not thread-safe and must only be used by one layout at a time (see
+ * {@link ScriptContextPool}).
+ */
+class EngineContext {
+  private final ScriptEngine engine;
+  private final CompiledRuleCache<CompiledScript> compiledRules;
+  private final CompiledScript runtime;
+  private final CompiledScript initElement;
+
+  EngineContext(final ScriptEngine engine, final MeterRegistry meterRegistry) {
+    this.engine = engine;
+    this.compiledRules = new CompiledRuleCache<>(rule -> ((Compilable) engine).compile(rule.getScriptCode()),
+        meterRegistry);
+
+    try (Reader r = new InputStreamReader(getClass().getResourceAsStream("LayoutEngine.js"), StandardCharsets.UTF_8)) {
+      this.runtime = ((Compilable) engine).compile(r);
+      this.initElement = ((Compilable) engine).compile("_initElement()");
+    } catch (ScriptException | IOException e) {
+      throw new RuleExecutionException("global", "Failed to initialize tree layout engine", e);
+    }
+  }
+
+  ScriptEngine getEngine() {
+    return engine;
+  }
+
+  CompiledRuleCache<CompiledScript> getCompiledRules() {
+    return compiledRules;
+  }
+
+  CompiledScript getRuntime() {
+    return runtime;
+  }
+
+  CompiledScript getInitElement() {
+    return initElement;
+  }
+}
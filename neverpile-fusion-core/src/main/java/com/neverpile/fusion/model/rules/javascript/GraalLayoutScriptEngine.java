@@ -0,0 +1,252 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.script.ScriptException;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+
+import com.neverpile.fusion.configuration.LayoutConfiguration.BudgetConfiguration;
+import com.neverpile.fusion.configuration.LayoutConfiguration.PoolConfiguration;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A {@link LayoutScriptEngine} based on GraalJS. All scopes are backed by polyglot {@link Context}s
+ * sharing a single polyglot {@link Engine}, so that the parsed and compiled code of
+ * <code>LayoutEngine.js</code> and of the rules is cached, and JIT-warmed where a compiler is
+ * available, across layouts.
+ * <p>
+ * A context is used for a single scope only and closed afterwards. This keeps the global variables
+ * of one layout from leaking into the next. Contexts are still handed out by a
+ * {@link ScriptContextPool} to bound the number of concurrent layouts.
+ * <p>
+ * Contexts run in Nashorn compatibility mode so that rules may keep using Java bean properties like
+ * <code>node.children</code>. JavaScript objects and arrays handed to Java methods accepting
+ * arbitrary objects (e.g. <code>withProperty()</code>) are converted to plain {@link Map}s and
+ * {@link List}s, since they must remain usable after the context has been closed.
+ * <p>
+ * Rule executions exceeding their budget are cancelled by closing their context, which is never
+ * reused anyway. Statement budgets are enforced via the context's {@link ResourceLimits}, which are
+ * reset before every script evaluation.
+ */
+class GraalLayoutScriptEngine implements LayoutScriptEngine {
+  private static final String LANGUAGE = "js";
+
+  private final class Scope implements LayoutScope {
+    private final ScriptContextPool.Lease<Context> lease;
+    private final Context context;
+    private final Value bindings;
+    private final CollectionType type;
+
+    Scope(final ScriptContextPool.Lease<Context> lease, final CollectionType type) {
+      this.lease = lease;
+      this.context = lease.get();
+      this.bindings = context.getBindings(LANGUAGE);
+      this.type = type;
+
+      // contexts are never reused
+      lease.discard();
+    }
+
+    @Override
+    public void put(final String name, final Object value) {
+      bindings.putMember(name, value);
+    }
+
+    @Override
+    public void eval(final String script) throws ScriptException {
+      try {
+        resetLimits();
+        context.eval(LANGUAGE, script);
+      } catch (PolyglotException e) {
+        throw toScriptException(e);
+      }
+    }
+
+    @Override
+    public void initElement(final int elementIndex) throws ScriptException {
+      try {
+        bindings.putMember("_elementIndex", elementIndex);
+        resetLimits();
+        context.eval(initElement);
+      } catch (PolyglotException e) {
+        throw toScriptException(e);
+      }
+    }
+
+    @Override
+    public void execute(final JavascriptRule rule) throws ScriptException {
+      resetLimits();
+      long start = budget.start();
+      try (RuleBudget.Watch watch = budget.watch(() -> context.close(true))) {
+        try {
+          context.eval(compiledRules.get(type, rule));
+        } catch (PolyglotException e) {
+          if (null != watch && watch.isExceeded())
+            throw budget.cpuTimeExceeded(rule);
+          if ((e.isCancelled() || e.isResourceExhausted()) && null != resourceLimits)
+            throw budget.statementsExceeded(rule, e);
+          throw toScriptException(e);
+        }
+
+        if (null != watch && watch.isExceeded())
+          throw budget.cpuTimeExceeded(rule);
+      }
+      budget.check(rule, start);
+    }
+
+    private void resetLimits() {
+      if (null != resourceLimits)
+        context.resetLimits();
+    }
+
+    @Override
+    public void close() {
+      lease.close();
+    }
+  }
+
+  private final Engine engine;
+  private final HostAccess hostAccess;
+
+  private final Source runtime;
+  private final Source initElement;
+  private final CompiledRuleCache<Source> compiledRules;
+
+  private final ScriptContextPool<Context> pool;
+
+  private final RuleBudget budget;
+  private final ResourceLimits resourceLimits;
+
+  GraalLayoutScriptEngine(final PoolConfiguration config, final BudgetConfiguration budgetConfig,
+      final MeterRegistry meterRegistry) {
+    this.engine = Engine.newBuilder().option("engine.WarnInterpreterOnly", "false").build();
+    this.hostAccess = HostAccess.newBuilder(HostAccess.ALL) //
+        .targetTypeMapping(Value.class, Object.class, GraalLayoutScriptEngine::isGuestStructure,
+            GraalLayoutScriptEngine::toHost) //
+        .build();
+
+    try (Reader r = new InputStreamReader(getClass().getResourceAsStream("LayoutEngine.js"), StandardCharsets.UTF_8)) {
+      this.runtime = Source.newBuilder(LANGUAGE, r, "LayoutEngine.js").build();
+    } catch (IOException e) {
+      throw new RuleExecutionException("global", "Failed to initialize tree layout engine", e);
+    }
+    this.initElement = Source.create(LANGUAGE, "_initElement()");
+
+    this.budget = new RuleBudget(budgetConfig, true);
+    // all contexts of an engine must share the same limits
+    this.resourceLimits = budget.getStatements() > 0
+        ? ResourceLimits.newBuilder().statementLimit(budget.getStatements(), null).build()
+        : null;
+
+    // sources are not bound to a context, so a single cache is shared by all of them
+    this.compiledRules = new CompiledRuleCache<>(
+        rule -> Source.newBuilder(LANGUAGE, rule.getScriptCode(), rule.getName()).buildLiteral(), meterRegistry);
+
+    this.pool = new ScriptContextPool<>(config.getSize(), config.getCheckoutTimeout(), this::createContext,
+        Context::close, meterRegistry);
+  }
+
+  private Context createContext() {
+    Context.Builder builder = Context.newBuilder(LANGUAGE) //
+        .engine(engine) //
+        .allowHostAccess(hostAccess) //
+        .allowHostClassLookup(className -> true) //
+        .allowExperimentalOptions(true) //
+        .option("js.nashorn-compat", "true");
+    if (null != resourceLimits)
+      builder.resourceLimits(resourceLimits);
+
+    Context context = builder.build();
+
+    // instantiate scripting support
+    context.eval(runtime);
+
+    return context;
+  }
+
+  @Override
+  public LayoutScope openScope(final CollectionType type) throws ScriptException {
+    // drop compiled rules of an outdated version of the type
+    compiledRules.validate(type);
+
+    try {
+      return new Scope(pool.checkout(), type);
+    } catch (PolyglotException e) {
+      throw toScriptException(e);
+    }
+  }
+
+  @Override
+  public void evictCompiledRules(final String collectionTypeId) {
+    compiledRules.evict(collectionTypeId);
+  }
+
+  @Override
+  public void close() {
+    pool.shutdown();
+    budget.close();
+    engine.close();
+  }
+
+  private static ScriptException toScriptException(final PolyglotException e) {
+    ScriptException se = new ScriptException(e.getMessage());
+    se.initCause(e);
+    return se;
+  }
+
+  private static boolean isGuestStructure(final Value value) {
+    return !value.isHostObject() && !value.isProxyObject() && !value.canExecute()
+        && (value.hasArrayElements() || value.hasMembers());
+  }
+
+  private static Object toHost(final Value value) {
+    if (value.isNull())
+      return null;
+    if (value.isHostObject())
+      return value.asHostObject();
+    if (value.isString())
+      return value.asString();
+    if (value.isBoolean())
+      return value.asBoolean();
+    if (value.isNumber())
+      return value.fitsInInt() ? (Object) value.asInt() : value.fitsInLong() ? (Object) value.asLong() : value.asDouble();
+    if (value.isInstant())
+      return value.asInstant();
+
+    if (value.hasArrayElements()) {
+      List<Object> list = new ArrayList<>((int) value.getArraySize());
+      for (long i = 0; i < value.getArraySize(); i++)
+        list.add(toHost(value.getArrayElement(i)));
+      return list;
+    }
+
+    if (value.hasMembers()) {
+      Map<String, Object> map = new LinkedHashMap<>();
+      for (String key : value.getMemberKeys()) {
+        Value member = value.getMember(key);
+        if (!member.canExecute())
+          map.put(key, toHost(member));
+      }
+      return map;
+    }
+
+    return value.toString();
+  }
+}
@@ -1,11 +1,19 @@
 package com.neverpile.fusion.model.rules.javascript;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+
 /**
  * This is a bridge class used to represent a collection within the JavaScript rule execution context. 
+ * <p>
+ * Instances created via {@link #of(Collection)} are shallow: the metadata is the collection's
+ * original JSON tree and is only converted to JavaScript objects when a rule accesses it (see
+ * <code>_initCollection()</code> in <code>LayoutEngine.js</code>).
  */
 public class JSCollection {
   private String id;
@@ -31,6 +39,35 @@ public class JSCollection {
   }
   
   private State state = State.Active;
+
+  /**
+   * Create a bridge for the given collection.
+   * 
+   * @param collection the collection
+   * @return the bridge
+   */
+  public static JSCollection of(final Collection collection) {
+    JSCollection c = new JSCollection();
+    c.setId(collection.getId());
+    c.setVersionTimestamp(toDate(collection.getVersionTimestamp()));
+    c.setType(collection.getTypeId());
+    c.setDateCreated(toDate(collection.getDateCreated()));
+    c.setDateModified(toDate(collection.getDateModified()));
+    c.setCreatedBy(collection.getCreatedBy());
+    c.setMetadata(collection.getMetadata());
+    c.setState(null != collection.getState() ? State.valueOf(collection.getState().name()) : null);
+
+    List<JSElement> elements = new ArrayList<>(collection.getElements().size());
+    for (Element element : collection.getElements())
+      elements.add(JSElement.of(element));
+    c.setElements(elements);
+
+    return c;
+  }
+
+  static Date toDate(final Instant instant) {
+    return null != instant ? Date.from(instant) : null;
+  }
   
   public String getId() {
     return id;
@@ -3,10 +3,13 @@ package com.neverpile.fusion.model.rules.javascript;
 import java.util.Date;
 import java.util.List;
 
+import com.neverpile.fusion.model.Element;
 import com.neverpile.fusion.model.spec.Specification;
 
 /**
  * This is a bridge class used to represent a collection element within the JavaScript rule execution context. 
+ * <p>
+ * Instances created via {@link #of(Element)} are shallow, see {@link JSCollection}.
  */
 public class JSElement {
   private String id;
@@ -20,6 +23,26 @@ public class JSElement {
   private Specification specification;
   
   private Object metadata;
+
+  private Element element;
+
+  /**
+   * Create a bridge for the given element.
+   * 
+   * @param element the element
+   * @return the bridge
+   */
+  public static JSElement of(final Element element) {
+    JSElement e = new JSElement();
+    e.setId(element.getId());
+    e.setDateCreated(JSCollection.toDate(element.getDateCreated()));
+    e.setDateModified(JSCollection.toDate(element.getDateModified()));
+    e.setTags(element.getTags());
+    e.setSpecification(element.getSpecification());
+    e.setMetadata(element.getMetadata());
+    e.element = element;
+    return e;
+  }
   
   public String getId() {
     return id;
@@ -68,4 +91,14 @@ public class JSElement {
   public void setMetadata(final Object metadata) {
     this.metadata = metadata;
   }
+
+  /**
+   * Return the element this bridge was created for. Used to map the element objects seen by the
+   * rules back to the model without a search.
+   * 
+   * @return the element or <code>null</code> if the bridge wasn't created via {@link #of(Element)}
+   */
+  public Element getElement() {
+    return element;
+  }
 }
@@ -14,6 +14,19 @@ public class JavascriptRule extends Rule {
    */
   private String scriptCode;
 
+  /**
+   * Whether the rule can be run incrementally. Only relevant for element rules: when a new version
+   * of a collection is laid out, the rules of a view are only run for the elements which have
+   * changed if all of its element rules are incremental, and the trees they create are merged with
+   * the ones created for the unchanged elements before.
+   * <p>
+   * A rule is incremental if its effect only depends on the current element, the type, state and
+   * metadata of the collection and the library rules. Rules which inspect the tree built so far,
+   * other elements, the collection's version timestamp or modification date or which keep state
+   * across elements must opt out by setting this to <code>false</code>.
+   */
+  private boolean incremental = true;
+
   public String getScriptCode() {
     return scriptCode;
   }
@@ -21,4 +34,12 @@ public class JavascriptRule extends Rule {
   public void setScriptCode(final String scriptCode) {
     this.scriptCode = scriptCode;
   }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  public void setIncremental(final boolean incremental) {
+    this.incremental = incremental;
+  }
 }
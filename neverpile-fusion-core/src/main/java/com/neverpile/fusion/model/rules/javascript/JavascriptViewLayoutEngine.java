@@ -1,47 +1,224 @@
 package com.neverpile.fusion.model.rules.javascript;
 
-import static java.util.function.Function.identity;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-import java.io.InputStreamReader;
-import java.util.stream.Collectors;
-
-import javax.script.Bindings;
-import javax.script.ScriptEngine;
+import javax.annotation.PreDestroy;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutConfiguration;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.CollectionType;
 import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
 import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.LayoutEngineSaturatedException;
+import com.neverpile.fusion.model.rules.LayoutState;
+import com.neverpile.fusion.model.rules.LayoutState.Fragment;
 import com.neverpile.fusion.model.rules.Node;
 import com.neverpile.fusion.model.rules.Rule;
 import com.neverpile.fusion.model.rules.RuleExecutionException;
 import com.neverpile.fusion.model.rules.ViewLayout;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
 /**
  * A JavaScript based layout engine. It can make use of {@link Rule} of the type
  * {@link JavascriptRule}.
+ * <p>
+ * Rule scripts are compiled once and cached per collection type (see {@link CompiledRuleCache}), so
+ * that repeated executions over many elements and views do not have to parse them again. The same
+ * holds for the scripting support library <code>LayoutEngine.js</code>: it is compiled when the
+ * engine is created and merely instantiated into the fresh scope of each layout, which boils down to
+ * the creation of a handful of function objects.
+ * <p>
+ * The collection is exposed to the rules without serializing it: scripts see a {@link JSCollection}
+ * bridge whose properties are converted to JavaScript objects upon first access.
+ * <p>
+ * Script engines are not shared between concurrent layouts. Instead, each layout opens a
+ * {@link LayoutScope} backed by resources from a bounded pool (see {@link ScriptContextPool}) whose
+ * size and checkout timeout are configured via {@link LayoutConfiguration}.
+ * <p>
+ * The views of a collection type are independent of each other and are laid out in parallel on a
+ * bounded executor. Each view gets a scope of its own which is seeded by running the library
+ * (global) rules. A failing view does not affect the others.
+ * <p>
+ * Layouts of subsequent versions of a collection can be computed incrementally (see
+ * {@link #layoutIncrementally(Collection, CollectionType, LayoutState, Consumer)}): the element
+ * rules are only run for elements which changed, while the tree rules always run on the complete
+ * tree.
+ * <p>
+ * Every rule execution is timed by a timer named <code>fusion.collection.layout.rule</code>, tagged
+ * with the rule name, the view and the collection type id. A detailed cost breakdown of a layout can
+ * be obtained via {@link #profile(Collection, CollectionType)}. Runaway rules are aborted according
+ * to the configured budget (see {@link LayoutConfiguration#getBudget()}).
+ * <p>
+ * The actual script execution is delegated to a {@link LayoutScriptEngine}. Unless one is provided
+ * as a bean, the JSR-223 engine (Nashorn) or GraalJS is used as configured. Budgets can only be
+ * enforced by GraalJS, so it is always chosen if a budget is configured.
  */
 @Component
 public class JavascriptViewLayoutEngine {
+  private static final String RULE_TIMER = "fusion.collection.layout.rule";
+
+  private static final String PHASE_GLOBAL = "global";
+  private static final String PHASE_ELEMENT = "element";
+  private static final String PHASE_TREE = "tree";
+
+  private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+  /**
+   * Measures the rule executions of a single scope. Each rule gets a timer tagged with the rule
+   * name, the view and the collection type id. If a profile is requested, the executions are
+   * recorded there as well, including their CPU time.
+   */
+  private final class RuleMeter {
+    private final String typeId;
+    private final String view;
+    private final RuleProfile profile;
+    private final Map<JavascriptRule, Timer> timers = new IdentityHashMap<>();
+
+    RuleMeter(final CollectionType type, final String view, final RuleProfile profile) {
+      this.typeId = Objects.toString(type.getId(), "");
+      this.view = Objects.toString(view, "");
+      this.profile = profile;
+    }
+
+    void execute(final LayoutScope scope, final String phase, final JavascriptRule rule) throws ScriptException {
+      long startCpu = null != profile ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0;
+      long start = System.nanoTime();
+      try {
+        scope.execute(rule);
+      } finally {
+        long elapsed = System.nanoTime() - start;
+        timers.computeIfAbsent(rule, r -> Timer.builder(RULE_TIMER) //
+            .description("execution time of a layout rule") //
+            .tags("rule", Objects.toString(r.getName(), ""), "view", view, "type", typeId) //
+            .register(meterRegistry)).record(elapsed, TimeUnit.NANOSECONDS);
+        if (null != profile)
+          profile.record(view, phase, rule.getName(), elapsed, THREAD_MX_BEAN.getCurrentThreadCpuTime() - startCpu);
+      }
+    }
+  }
+
+  /**
+   * The result of laying out a single view: the view layout along with the title visualizations and,
+   * for incremental layouts, the per-element fragments.
+   */
+  private static final class ViewResult {
+    private final CollectionLayout layout;
+    private List<Fragment> fragments;
+
+    ViewResult(final CollectionLayout layout) {
+      this.layout = layout;
+    }
+  }
+
   private static final Logger LOGGER = LoggerFactory.getLogger(JavascriptViewLayoutEngine.class);
 
   private final ObjectMapper objectMapper;
-  private final ScriptEngine engine;
+  private final LayoutScriptEngine scriptEngine;
+  private final boolean ownsScriptEngine;
+  private final ExecutorService viewExecutor;
+  private final MeterRegistry meterRegistry;
 
   @Autowired
-  public JavascriptViewLayoutEngine(final ObjectMapper objectMapper) {
+  public JavascriptViewLayoutEngine(final ObjectMapper objectMapper, final LayoutConfiguration config,
+      final ObjectProvider<LayoutScriptEngine> scriptEngine, final ObjectProvider<MeterRegistry> meterRegistry) {
+    this(objectMapper, config, scriptEngine.getIfAvailable(), meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+  }
+
+  public JavascriptViewLayoutEngine(final ObjectMapper objectMapper, final LayoutConfiguration config,
+      final MeterRegistry meterRegistry) {
+    this(objectMapper, config, null, meterRegistry);
+  }
+
+  public JavascriptViewLayoutEngine(final ObjectMapper objectMapper, final LayoutConfiguration config,
+      final LayoutScriptEngine scriptEngine) {
+    this(objectMapper, config, scriptEngine, Metrics.globalRegistry);
+  }
+
+  private JavascriptViewLayoutEngine(final ObjectMapper objectMapper, final LayoutConfiguration config,
+      final LayoutScriptEngine scriptEngine, final MeterRegistry meterRegistry) {
     this.objectMapper = objectMapper;
+    this.ownsScriptEngine = null == scriptEngine;
+    this.scriptEngine = null != scriptEngine ? scriptEngine : createScriptEngine(config, meterRegistry);
+    this.viewExecutor = createViewExecutor(config.getViewParallelism());
+    this.meterRegistry = meterRegistry;
+  }
+
+  private static LayoutScriptEngine createScriptEngine(final LayoutConfiguration config,
+      final MeterRegistry meterRegistry) {
+    ScriptEngineManager manager = new ScriptEngineManager();
+
+    switch (config.getEngine()) {
+      case JSR223:
+        return new Jsr223LayoutScriptEngine(manager, config.getPool(), config.getBudget(), meterRegistry);
+      case GRAAL:
+        return new GraalLayoutScriptEngine(config.getPool(), config.getBudget(), meterRegistry);
+      default:
+        if (!Jsr223LayoutScriptEngine.hasBudget(config.getBudget()) && Jsr223LayoutScriptEngine.isAvailable(manager))
+          return new Jsr223LayoutScriptEngine(manager, config.getPool(), config.getBudget(), meterRegistry);
+
+        LOGGER.info("Execution budget configured or no JSR-223 JavaScript engine available - using GraalJS");
+        return new GraalLayoutScriptEngine(config.getPool(), config.getBudget(), meterRegistry);
+    }
+  }
 
-    this.engine = new ScriptEngineManager().getEngineByName("JavaScript");
+  /**
+   * Create the executor used to lay out views in parallel. If all of its threads are busy, views are
+   * laid out by the calling thread.
+   * 
+   * @param parallelism the maximum number of threads
+   * @return the executor or <code>null</code> if views are to be laid out sequentially
+   */
+  private static ExecutorService createViewExecutor(final int parallelism) {
+    if (parallelism <= 1)
+      return null;
+
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("fusion-layout-");
+    threadFactory.setDaemon(true);
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), threadFactory, (task, e) -> task.run());
+    executor.allowCoreThreadTimeOut(true);
+
+    return executor;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (null != viewExecutor)
+      viewExecutor.shutdown();
+    if (ownsScriptEngine)
+      scriptEngine.close();
   }
 
   /**
@@ -51,85 +228,326 @@ public class JavascriptViewLayoutEngine {
    * @param type the collection type (must match the type of the collection)
    * @return a list of {@link ViewLayout}s. One for each defined view type.
    * @throws RuleExecutionException if the rule execution fails
+   * @throws LayoutEngineSaturatedException if no script engine became available in time
    */
   public CollectionLayout layoutTree(final Collection collection, final CollectionType type)
       throws RuleExecutionException {
+    return layout(collection, type, false, null, null, null, null);
+  }
+
+  /**
+   * Create layouts for all views in the given collection type, handing each view layout to the given
+   * consumer instead of collecting it. Views are passed on in the order of their definition, as soon
+   * as they and all views before them are complete, so that they can be written out and released
+   * while later views are still being laid out. The consumer is always called by the calling thread.
+   * 
+   * @param collection the collection for which to generate layouts
+   * @param type the collection type (must match the type of the collection)
+   * @param viewConsumer the consumer of the view layouts
+   * @return the layout without any view layouts, i.e. just the type id and title visualizations
+   * @throws RuleExecutionException if the rule execution fails
+   * @throws LayoutEngineSaturatedException if no script engine became available in time
+   */
+  public CollectionLayout layoutTree(final Collection collection, final CollectionType type,
+      final Consumer<ViewLayout> viewConsumer) throws RuleExecutionException {
+    return layout(collection, type, false, null, null, viewConsumer, null);
+  }
+
+  /**
+   * Create layouts for all views in the given collection type, reusing the results of a previous
+   * layout of the same collection where possible. For views whose element rules are all
+   * {@link JavascriptRule#isIncremental() incremental}, the element rules are only run for elements
+   * which were added or whose modification date changed since the previous layout. The tree rules
+   * are always run on the complete tree. All other views are laid out from scratch.
+   * <p>
+   * If the previous state is absent or not applicable, e.g. because the collection metadata
+   * changed, all views are laid out from scratch, exactly like by a full layout. A state is still
+   * produced, though, which requires running the element rules once more per element.
+   * 
+   * @param collection the collection for which to generate layouts
+   * @param type the collection type (must match the type of the collection)
+   * @param previous the state of a previous layout of the collection or <code>null</code>
+   * @param nextState receives the state to be passed as <code>previous</code> when laying out a
+   *          later version of the collection or <code>null</code> if no state is needed
+   * @return a list of {@link ViewLayout}s. One for each defined view type.
+   * @throws RuleExecutionException if the rule execution fails
+   * @throws LayoutEngineSaturatedException if no script engine became available in time
+   */
+  public CollectionLayout layoutIncrementally(final Collection collection, final CollectionType type,
+      final LayoutState previous, final Consumer<LayoutState> nextState) throws RuleExecutionException {
+    LayoutState applicable = null != previous && previous.isApplicableTo(collection) ? previous : null;
+
+    // nothing to reuse and no state to produce
+    if (null == applicable && null == nextState)
+      return layout(collection, type, false, null, null, null, null);
+
+    return layout(collection, type, true, applicable, nextState, null, null);
+  }
+
+  /**
+   * Lay out the given collection like {@link #layoutTree(Collection, CollectionType)} and return the
+   * cost of each executed rule instead of the layout. Views which failed, e.g. because a rule
+   * exceeded its budget, are reported along with their error.
+   * 
+   * @param collection the collection for which to generate layouts
+   * @param type the collection type (must match the type of the collection)
+   * @return the cost breakdown
+   * @throws RuleExecutionException if the rule execution fails
+   * @throws LayoutEngineSaturatedException if no script engine became available in time
+   */
+  public RuleProfile profile(final Collection collection, final CollectionType type) throws RuleExecutionException {
+    RuleProfile profile = new RuleProfile();
+    long start = System.nanoTime();
+    CollectionLayout layout = layout(collection, type, false, null, null, null, profile);
+    profile.setTotalWallTimeNanos(System.nanoTime() - start);
+
+    layout.getViewLayouts().values().stream() //
+        .filter(v -> null != v.getError()) //
+        .forEach(v -> profile.getErrors().put(v.getView(), v.getError()));
+
+    return profile;
+  }
+
+  private CollectionLayout layout(final Collection collection, final CollectionType type, final boolean incremental,
+      final LayoutState previous, final Consumer<LayoutState> nextState, final Consumer<ViewLayout> viewConsumer,
+      final RuleProfile profile) {
+    CollectionLayout layout = new CollectionLayout();
+    layout.setCollectionTypeId(type.getId());
 
+    List<View> views = type.getViews();
+    if (views.isEmpty()) {
+      // the library rules may still contribute title visualizations
+      openScope(collection, type, layout, new RuleMeter(type, "", profile)).close();
+      if (null != nextState)
+        nextState.accept(new LayoutState(collection, Collections.emptyMap()));
+      return layout;
+    }
+
+    Set<String> ambiguous = incremental ? LayoutState.ambiguousKeys(collection) : null;
+
+    // lay out all but the first view in the background
+    List<Future<ViewResult>> futures = new ArrayList<>(views.size() - 1);
     try {
-      CollectionLayout layout = new CollectionLayout();
-      layout.setCollectionTypeId(type.getId());
-      
-      Bindings bindings = preparcollectionProcessingBindings(collection, layout);
+      for (View view : views.subList(1, views.size())) {
+        if (null != viewExecutor)
+          futures.add(viewExecutor.submit(
+              () -> layoutView(collection, type, view, incremental, previous, ambiguous, profile)));
+        else
+          futures.add(CompletableFuture.completedFuture(
+              layoutView(collection, type, view, incremental, previous, ambiguous, profile)));
+      }
 
-      // apply library rules
-      type.getGlobalRules().forEach(lib -> apply(bindings, (JavascriptRule) lib));
-      
-      layout.setViewLayouts(type.getViews().stream().map(view -> {
-        Node root = new Node();
-        root.setName("root");
+      // merge the results in view order, so that later views win, as if laid out sequentially
+      Map<String, List<Fragment>> fragments = new LinkedHashMap<>();
+      View first = views.get(0);
+      merge(layout, fragments, first,
+          layoutView(collection, type, first, incremental, previous, ambiguous, profile), viewConsumer);
+      for (int i = 0; i < futures.size(); i++) {
+        merge(layout, fragments, views.get(i + 1), join(futures.get(i)), viewConsumer);
+        // release the result as soon as it has been merged
+        futures.set(i, null);
+      }
 
-        // bind root node
-        bindings.put("_root", root);
+      if (null != nextState)
+        nextState.accept(new LayoutState(collection, fragments));
+
+      return layout;
+    } catch (RuntimeException e) {
+      futures.stream().filter(Objects::nonNull).forEach(f -> f.cancel(false));
+      throw e;
+    }
+  }
+
+  /**
+   * Lay out a single view in its own scope. The scope is seeded by running the library rules, just
+   * like for every other view. Title visualizations are collected in a separate layout which is
+   * returned along with the view layout.
+   */
+  private ViewResult layoutView(final Collection collection, final CollectionType type, final View view,
+      final boolean incremental, final LayoutState previous, final Set<String> ambiguous, final RuleProfile profile) {
+    ViewResult result = new ViewResult(new CollectionLayout());
+    CollectionLayout layout = result.layout;
+    RuleMeter meter = new RuleMeter(type, view.getName(), profile);
+
+    try (LayoutScope scope = openScope(collection, type, layout, meter)) {
+      ViewLayout viewLayout;
+      try {
+        Node root;
+        if (incremental && isIncremental(view) && null != previous && previous.hasFragments(view.getName())) {
+          // apply node creation rules to per-element fragments and merge them
+          List<Fragment> fragments = layoutFragments(scope, meter, collection, view, previous, ambiguous);
+          fragments.forEach(f -> layout.getTitleVisualization().putAll(f.getTitleVisualization()));
+          root = LayoutState.merge(fragments);
+
+          scope.put("_layout", layout);
+          scope.put("_root", root);
+
+          result.fragments = fragments;
+        } else {
+          root = new Node();
+          root.setName("root");
+
+          // bind root node
+          scope.put("_root", root);
 
-        try {
           // apply node creation rules
-          collection.getElements().forEach(element -> view.getElementRules().forEach(
-              rule -> apply(bindings, (JavascriptRule) rule, collection, element)));
+          for (int i = 0; i < collection.getElements().size(); i++)
+            for (Rule rule : view.getElementRules())
+              apply(scope, meter, (JavascriptRule) rule, i);
 
-          // apply tree rules
-          view.getTreeRules().forEach(rule -> apply(bindings, (JavascriptRule) rule));
+          // without fragments to reuse, the tree is built in one go, just like a full layout. The
+          // fragments for the next layout are created separately.
+          if (incremental && isIncremental(view)) {
+            result.fragments = layoutFragments(scope, meter, collection, view, null, ambiguous);
 
-          return new ViewLayout(view.getName(), root);
-        } catch (Exception e) {
-          // don't throw
-          LOGGER.info("Failed to lay out view: {} for type {}", view.getName(), type.getName(), e);
-          return new ViewLayout(view.getName(), "Failed to lay out view: " + e.getMessage());
+            scope.put("_layout", layout);
+            scope.put("_root", root);
+          }
         }
-      }).collect(Collectors.toMap(ViewLayout::getView, identity())));
-      
-      return layout;
+
+        // apply tree rules
+        view.getTreeRules().forEach(rule -> apply(scope, meter, PHASE_TREE, (JavascriptRule) rule));
+
+        viewLayout = new ViewLayout(view.getName(), root);
+      } catch (Exception e) {
+        // don't throw
+        LOGGER.info("Failed to lay out view: {} for type {}", view.getName(), type.getName(), e);
+        viewLayout = new ViewLayout(view.getName(), "Failed to lay out view: " + e.getMessage());
+        result.fragments = null;
+      }
+
+      layout.getViewLayouts().put(view.getName(), viewLayout);
+      return result;
+    }
+  }
+
+  private static boolean isIncremental(final View view) {
+    return view.getElementRules().stream().allMatch(r -> ((JavascriptRule) r).isIncremental());
+  }
+
+  /**
+   * Run the element rules of the given view for each element into a fragment of its own, reusing
+   * the fragments of unchanged elements from the previous layout.
+   */
+  private List<Fragment> layoutFragments(final LayoutScope scope, final RuleMeter meter, final Collection collection,
+      final View view, final LayoutState previous, final Set<String> ambiguous) {
+    List<Element> elements = collection.getElements();
+    List<Fragment> fragments = new ArrayList<>(elements.size());
+
+    for (int i = 0; i < elements.size(); i++) {
+      String key = LayoutState.key(elements.get(i));
+
+      Fragment fragment = null != previous && !ambiguous.contains(key)
+          ? previous.getFragment(view.getName(), key)
+          : null;
+      if (null == fragment) {
+        fragment = new Fragment();
+
+        CollectionLayout titles = new CollectionLayout();
+        titles.setTitleVisualization(fragment.getTitleVisualization());
+        scope.put("_layout", titles);
+        scope.put("_root", fragment.getRoot());
+
+        for (Rule rule : view.getElementRules())
+          apply(scope, meter, (JavascriptRule) rule, i);
+      }
+
+      fragments.add(fragment);
+    }
+
+    return fragments;
+  }
+
+  /**
+   * Open a scope for the given collection and apply the library rules.
+   */
+  private LayoutScope openScope(final Collection collection, final CollectionType type,
+      final CollectionLayout layout, final RuleMeter meter) {
+    LayoutScope scope = null;
+    try {
+      scope = scriptEngine.openScope(type);
+
+      preparcollectionProcessingBindings(scope, collection, layout);
+
+      // apply library rules
+      for (Rule lib : type.getGlobalRules())
+        apply(scope, meter, PHASE_GLOBAL, (JavascriptRule) lib);
+
+      return scope;
     } catch (ScriptException e) {
+      close(scope);
       throw new RuleExecutionException("global", "Failed to initialize tree layout engine", e);
-    } catch (JsonProcessingException e) {
-      throw new RuleExecutionException("global", "Cannot convert collection to JSON", e);
+    } catch (RuntimeException e) {
+      close(scope);
+      throw e;
     }
   }
 
-  private Bindings preparcollectionProcessingBindings(final Collection collection, final CollectionLayout layout)
-      throws ScriptException, JsonProcessingException {
-    Bindings bindings = engine.createBindings();
+  private static void close(final LayoutScope scope) {
+    if (null != scope)
+      scope.close();
+  }
 
-    // load scripting support
-    engine.eval(new InputStreamReader(getClass().getResourceAsStream("LayoutEngine.js")), bindings);
+  private static void merge(final CollectionLayout layout, final Map<String, List<Fragment>> fragments,
+      final View view, final ViewResult result, final Consumer<ViewLayout> viewConsumer) {
+    layout.getTitleVisualization().putAll(result.layout.getTitleVisualization());
+    if (null != viewConsumer)
+      result.layout.getViewLayouts().values().forEach(viewConsumer);
+    else
+      layout.getViewLayouts().putAll(result.layout.getViewLayouts());
+    if (null != result.fragments)
+      fragments.put(view.getName(), result.fragments);
+  }
 
+  private static ViewResult join(final Future<ViewResult> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuleExecutionException("global", "Interrupted while waiting for view layouts", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new RuleExecutionException("global", "Failed to lay out view", e.getCause());
+    }
+  }
+
+  private void preparcollectionProcessingBindings(final LayoutScope scope, final Collection collection,
+      final CollectionLayout layout) throws ScriptException {
     // intialize private bindings
-    bindings.put("_collection", collection);
-    bindings.put("_layout", layout);
+    scope.put("_collection", collection);
+    scope.put("_layout", layout);
 
-    // expose the collection as JSON to the scripting context
-    engine.eval("var collection = " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(collection),
-        bindings);
+    // expose the collection to the scripting context via a shallow bridge which is converted to JS
+    // objects lazily
+    scope.put("_jsCollection", JSCollection.of(collection));
+    scope.put("_objectMapper", objectMapper);
 
     // run per-collection initialization
-    engine.eval("_initCollection()", bindings);
+    scope.eval("_initCollection()");
+  }
 
-    return bindings;
+  /**
+   * Evict the compiled rules of the collection type with the given id. Must be called whenever a
+   * collection type is changed in a way that is not visible from the rules of the type alone.
+   * 
+   * @param collectionTypeId the id of the changed collection type
+   */
+  public void evictCompiledRules(final String collectionTypeId) {
+    scriptEngine.evictCompiledRules(collectionTypeId);
   }
 
-  private void apply(final Bindings bindings, final JavascriptRule rule, final Collection collection,
-      final Element element) {
+  private void apply(final LayoutScope scope, final RuleMeter meter, final JavascriptRule rule,
+      final int elementIndex) {
     if (null == rule.getScriptCode())
       return; // nothing to do
 
     try {
-      // intialize private bindings
-      bindings.put("_elementIndex", collection.getElements().indexOf(element));
-
       // run per-element initialization
-      engine.eval("_initElement()", bindings);
+      scope.initElement(elementIndex);
 
       // run rule script
-      engine.eval(rule.getScriptCode(), bindings);
+      meter.execute(scope, PHASE_ELEMENT, rule);
     } catch (Exception e) {
       LOGGER.debug("Failed to execute JavaScript-based rule '{}'", rule.getName(), e);
       throw new RuleExecutionException(rule.getName(),
@@ -137,12 +555,12 @@ public class JavascriptViewLayoutEngine {
     }
   }
 
-  public void apply(final Bindings bindings, final JavascriptRule rule) {
+  private void apply(final LayoutScope scope, final RuleMeter meter, final String phase, final JavascriptRule rule) {
     if (null == rule.getScriptCode())
       return; // nothing to do
 
     try {
-      engine.eval(rule.getScriptCode(), bindings);
+      meter.execute(scope, phase, rule);
     } catch (Exception e) {
       throw new RuleExecutionException(rule.getName(),
           "Failed to execute JavaScript-based rule " + rule.getName() + ": " + e.getMessage(), e);
@@ -0,0 +1,118 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import javax.script.Bindings;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import com.neverpile.fusion.configuration.LayoutConfiguration.BudgetConfiguration;
+import com.neverpile.fusion.configuration.LayoutConfiguration.PoolConfiguration;
+import com.neverpile.fusion.model.CollectionType;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * A {@link LayoutScriptEngine} based on the JSR-223 engine registered under the name
+ * <code>JavaScript</code>, usually Nashorn. Engines are pooled (see {@link ScriptContextPool}) and
+ * each scope is backed by a fresh set of {@link Bindings}, i.e. a fresh global object, of a pooled
+ * engine.
+ * <p>
+ * Running scripts can't be interrupted, so execution budgets can't be enforced: the engine refuses
+ * to start if one is configured.
+ */
+class Jsr223LayoutScriptEngine implements LayoutScriptEngine {
+  private static final String ENGINE_NAME = "JavaScript";
+
+  private final class Scope implements LayoutScope {
+    private final ScriptContextPool.Lease<EngineContext> lease;
+    private final EngineContext context;
+    private final CollectionType type;
+    private final Bindings bindings;
+
+    Scope(final ScriptContextPool.Lease<EngineContext> lease, final CollectionType type) throws ScriptException {
+      this.lease = lease;
+      this.context = lease.get();
+      this.type = type;
+
+      // drop compiled rules of an outdated version of the type
+      context.getCompiledRules().validate(type);
+
+      // instantiate scripting support
+      this.bindings = context.getEngine().createBindings();
+      context.getRuntime().eval(bindings);
+    }
+
+    @Override
+    public void put(final String name, final Object value) {
+      bindings.put(name, value);
+    }
+
+    @Override
+    public void eval(final String script) throws ScriptException {
+      context.getEngine().eval(script, bindings);
+    }
+
+    @Override
+    public void initElement(final int elementIndex) throws ScriptException {
+      bindings.put("_elementIndex", elementIndex);
+      context.getInitElement().eval(bindings);
+    }
+
+    @Override
+    public void execute(final JavascriptRule rule) throws ScriptException {
+      context.getCompiledRules().get(type, rule).eval(bindings);
+    }
+
+    @Override
+    public void close() {
+      lease.close();
+    }
+  }
+
+  private final ScriptContextPool<EngineContext> pool;
+
+  Jsr223LayoutScriptEngine(final ScriptEngineManager manager, final PoolConfiguration config,
+      final BudgetConfiguration budgetConfig, final MeterRegistry meterRegistry) {
+    if (!isAvailable(manager))
+      throw new IllegalStateException("No JSR-223 script engine named '" + ENGINE_NAME + "' is available");
+
+    if (hasBudget(budgetConfig))
+      throw new IllegalStateException(
+          "Execution budgets are not supported by the JSR-223 layout engine - use the GraalJS engine instead");
+
+    this.pool = new ScriptContextPool<>(config.getSize(), config.getCheckoutTimeout(),
+        () -> new EngineContext(manager.getEngineByName(ENGINE_NAME), meterRegistry), meterRegistry);
+  }
+
+  static boolean isAvailable(final ScriptEngineManager manager) {
+    return null != manager.getEngineByName(ENGINE_NAME);
+  }
+
+  /**
+   * @param config the budget configuration
+   * @return whether a CPU time or statement budget is configured
+   */
+  static boolean hasBudget(final BudgetConfiguration config) {
+    return (null != config.getCpuTime() && !config.getCpuTime().isZero()) || config.getStatements() > 0;
+  }
+
+  @Override
+  public LayoutScope openScope(final CollectionType type) throws ScriptException {
+    ScriptContextPool.Lease<EngineContext> lease = pool.checkout();
+    try {
+      return new Scope(lease, type);
+    } catch (ScriptException | RuntimeException e) {
+      lease.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public void evictCompiledRules(final String collectionTypeId) {
+    pool.forEach(context -> context.getCompiledRules().evict(collectionTypeId));
+  }
+
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+}
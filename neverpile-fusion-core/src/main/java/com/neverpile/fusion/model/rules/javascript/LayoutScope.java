@@ -0,0 +1,45 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import javax.script.ScriptException;
+
+/**
+ * A scope in which the rules for the layout of a single collection are executed. Scopes are not
+ * thread-safe. Closing a scope releases the script execution resources it occupies.
+ */
+public interface LayoutScope extends AutoCloseable {
+  /**
+   * Bind a Java object to a global variable of the scope.
+   *
+   * @param name the variable name
+   * @param value the value
+   */
+  void put(String name, Object value);
+
+  /**
+   * Evaluate the given script in this scope.
+   *
+   * @param script the script code
+   * @throws ScriptException if the evaluation fails
+   */
+  void eval(String script) throws ScriptException;
+
+  /**
+   * Set up the per-element global variables (<code>element</code>, <code>tags</code>) for the
+   * element with the given index.
+   *
+   * @param elementIndex the index of the element within the collection
+   * @throws ScriptException if the initialization fails
+   */
+  void initElement(int elementIndex) throws ScriptException;
+
+  /**
+   * Execute the given rule in this scope. The compiled form of the rule may be cached.
+   *
+   * @param rule the rule
+   * @throws ScriptException if the execution fails
+   */
+  void execute(JavascriptRule rule) throws ScriptException;
+
+  @Override
+  void close();
+}
@@ -0,0 +1,45 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import javax.script.ScriptException;
+
+import com.neverpile.fusion.configuration.LayoutConfiguration;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.LayoutEngineSaturatedException;
+
+/**
+ * The service provider interface for script backends executing {@link JavascriptRule}s on behalf
+ * of the {@link JavascriptViewLayoutEngine}. An implementation is responsible for managing its
+ * script execution resources, for caching compiled rules and for providing the scripting support
+ * library <code>LayoutEngine.js</code> to each scope.
+ * <p>
+ * A custom implementation can be plugged in by exposing it as a bean. Otherwise one of the built-in
+ * implementations is chosen according to {@link LayoutConfiguration#getEngine()}.
+ */
+public interface LayoutScriptEngine extends AutoCloseable {
+  /**
+   * Open a fresh scope for the layout of a collection of the given type. The scope has the
+   * scripting support library instantiated, but is otherwise isolated from all other scopes.
+   *
+   * @param type the collection type whose rules will be executed in the scope
+   * @return the scope
+   * @throws ScriptException if the scope cannot be initialized
+   * @throws LayoutEngineSaturatedException if no script execution resources became available in
+   *           time
+   */
+  LayoutScope openScope(CollectionType type) throws ScriptException;
+
+  /**
+   * Evict the compiled rules of the collection type with the given id.
+   *
+   * @param collectionTypeId the id of the collection type
+   */
+  void evictCompiledRules(String collectionTypeId);
+
+  /**
+   * Release all resources held by this engine.
+   */
+  @Override
+  default void close() {
+    // nothing to do by default
+  }
+}
@@ -0,0 +1,165 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import com.neverpile.fusion.configuration.LayoutConfiguration.BudgetConfiguration;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+
+/**
+ * Enforces the execution budget of single rule executions (see {@link BudgetConfiguration}).
+ * <p>
+ * The CPU time budget can be enforced in two ways: engines which can cancel a running script use
+ * {@link #watch(Runnable)} to have it cancelled by a watchdog thread once the executing thread has
+ * used up the budget. The CPU time is checked after the execution via
+ * {@link #check(JavascriptRule, long)} as well.
+ */
+class RuleBudget implements AutoCloseable {
+  /**
+   * A running watch over a rule execution.
+   */
+  final class Watch implements AutoCloseable {
+    private final long threadId = Thread.currentThread().getId();
+    private final long start = threadMXBean.getCurrentThreadCpuTime();
+    private final Runnable cancel;
+
+    private ScheduledFuture<?> check;
+    private boolean closed;
+    private volatile boolean exceeded;
+
+    private Watch(final Runnable cancel) {
+      this.cancel = cancel;
+    }
+
+    private synchronized void schedule(final long delayNanos) {
+      if (!closed)
+        check = watchdog.schedule(this::check, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void check() {
+      synchronized (this) {
+        if (closed)
+          return;
+
+        long remaining = cpuTimeNanos - (threadMXBean.getThreadCpuTime(threadId) - start);
+        if (remaining > 0) {
+          // the thread was not running all the time
+          schedule(remaining);
+          return;
+        }
+
+        exceeded = true;
+      }
+
+      // cancel outside the lock: cancellation may wait for the execution to be unwound
+      cancel.run();
+    }
+
+    /**
+     * @return whether the execution exceeded the budget and was cancelled
+     */
+    boolean isExceeded() {
+      return exceeded;
+    }
+
+    @Override
+    public synchronized void close() {
+      closed = true;
+      if (null != check)
+        check.cancel(false);
+    }
+  }
+
+  private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+  private final long cpuTimeNanos;
+  private final long statements;
+
+  private final ScheduledExecutorService watchdog;
+
+  /**
+   * Create a budget.
+   *
+   * @param config the budget configuration
+   * @param cancellable whether the engine can cancel running scripts and thus needs a watchdog
+   */
+  RuleBudget(final BudgetConfiguration config, final boolean cancellable) {
+    this.cpuTimeNanos = null != config.getCpuTime() ? config.getCpuTime().toNanos() : 0;
+    this.statements = config.getStatements();
+
+    if (cancellable && cpuTimeNanos > 0) {
+      CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("fusion-layout-watchdog-");
+      threadFactory.setDaemon(true);
+      this.watchdog = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    } else {
+      this.watchdog = null;
+    }
+  }
+
+  /**
+   * @return the statement limit per rule execution or zero if unlimited
+   */
+  long getStatements() {
+    return statements;
+  }
+
+  /**
+   * Return the CPU time used by the current thread so far, if a CPU time budget is configured.
+   *
+   * @return the CPU time in nanoseconds or zero if there is no CPU time budget
+   */
+  long start() {
+    return cpuTimeNanos > 0 ? threadMXBean.getCurrentThreadCpuTime() : 0;
+  }
+
+  /**
+   * Fail the given rule if its execution, started at the given CPU time, exceeded the budget.
+   *
+   * @param rule the rule
+   * @param start the CPU time returned by {@link #start()} before the execution
+   * @throws RuleExecutionException if the budget was exceeded
+   */
+  void check(final JavascriptRule rule, final long start) {
+    if (cpuTimeNanos > 0 && threadMXBean.getCurrentThreadCpuTime() - start > cpuTimeNanos)
+      throw cpuTimeExceeded(rule);
+  }
+
+  /**
+   * Watch the rule execution about to be performed by the current thread and run the given action
+   * from a different thread if it exceeds the CPU time budget.
+   *
+   * @param cancel the action cancelling the execution
+   * @return the watch which must be closed once the execution is complete or <code>null</code> if
+   *         there is no CPU time budget
+   */
+  Watch watch(final Runnable cancel) {
+    if (null == watchdog)
+      return null;
+
+    Watch watch = new Watch(cancel);
+    watch.schedule(cpuTimeNanos);
+    return watch;
+  }
+
+  RuleExecutionException cpuTimeExceeded(final JavascriptRule rule) {
+    return new RuleExecutionException(rule.getName(),
+        "CPU time budget of " + Duration.ofNanos(cpuTimeNanos).toMillis() + "ms exceeded");
+  }
+
+  RuleExecutionException statementsExceeded(final JavascriptRule rule, final Throwable cause) {
+    return new RuleExecutionException(rule.getName(), "Statement budget of " + statements + " exceeded", cause);
+  }
+
+  @Override
+  public void close() {
+    if (null != watchdog)
+      watchdog.shutdownNow();
+  }
+}
@@ -0,0 +1,118 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A per-rule cost breakdown of a single layout. Rules are identified by the view in which they were
+ * executed, their phase (<code>global</code>, <code>element</code> or <code>tree</code>) and their
+ * name. Note that global rules are executed once per view.
+ */
+public class RuleProfile {
+  /**
+   * The accumulated cost of a single rule.
+   */
+  public static class RuleCost {
+    private final String view;
+    private final String phase;
+    private final String rule;
+
+    private long executions;
+    private long wallTimeNanos;
+    private long cpuTimeNanos;
+    private long maxWallTimeNanos;
+
+    RuleCost(final String view, final String phase, final String rule) {
+      this.view = view;
+      this.phase = phase;
+      this.rule = rule;
+    }
+
+    public String getView() {
+      return view;
+    }
+
+    public String getPhase() {
+      return phase;
+    }
+
+    public String getRule() {
+      return rule;
+    }
+
+    /**
+     * @return the number of executions, e.g. one per element for element rules
+     */
+    public long getExecutions() {
+      return executions;
+    }
+
+    /**
+     * @return the total elapsed time of all executions in milliseconds
+     */
+    public double getWallTimeMillis() {
+      return wallTimeNanos / 1e6;
+    }
+
+    /**
+     * @return the total CPU time of all executions in milliseconds
+     */
+    public double getCpuTimeMillis() {
+      return cpuTimeNanos / 1e6;
+    }
+
+    /**
+     * @return the elapsed time of the slowest execution in milliseconds
+     */
+    public double getMaxWallTimeMillis() {
+      return maxWallTimeNanos / 1e6;
+    }
+  }
+
+  private final Map<List<String>, RuleCost> costs = new LinkedHashMap<>();
+
+  private long totalWallTimeNanos;
+
+  private final Map<String, String> errors = new LinkedHashMap<>();
+
+  synchronized void record(final String view, final String phase, final String rule, final long wallTimeNanos,
+      final long cpuTimeNanos) {
+    RuleCost cost = costs.computeIfAbsent(List.of(view, phase, Objects.toString(rule)),
+        k -> new RuleCost(view, phase, rule));
+    cost.executions++;
+    cost.wallTimeNanos += wallTimeNanos;
+    cost.cpuTimeNanos += cpuTimeNanos;
+    cost.maxWallTimeNanos = Math.max(cost.maxWallTimeNanos, wallTimeNanos);
+  }
+
+  synchronized void setTotalWallTimeNanos(final long totalWallTimeNanos) {
+    this.totalWallTimeNanos = totalWallTimeNanos;
+  }
+
+  /**
+   * @return the elapsed time of the complete layout in milliseconds
+   */
+  public synchronized double getTotalWallTimeMillis() {
+    return totalWallTimeNanos / 1e6;
+  }
+
+  /**
+   * @return the errors of failed views by view name
+   */
+  public Map<String, String> getErrors() {
+    return errors;
+  }
+
+  /**
+   * @return the rule costs, most expensive first
+   */
+  public synchronized List<RuleCost> getRules() {
+    List<RuleCost> rules = new ArrayList<>(costs.values());
+    rules.sort(Comparator.comparingLong((RuleCost c) -> c.wallTimeNanos).reversed());
+    return rules;
+  }
+}
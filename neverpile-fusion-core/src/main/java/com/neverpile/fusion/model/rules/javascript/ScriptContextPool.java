@@ -0,0 +1,222 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.neverpile.fusion.model.rules.LayoutEngineSaturatedException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * A bounded pool of script execution contexts. Contexts are created lazily, up to the configured
+ * size. If all contexts are checked out, callers wait up to the configured timeout for one to be
+ * returned and fail with a {@link LayoutEngineSaturatedException} otherwise.
+ * <p>
+ * The pool exposes the following metrics:
+ * <dl>
+ * <dt><code>fusion.collection.layout.pool.checkout</code>
+ * <dd>the time spent waiting for a context
+ * <dt><code>fusion.collection.layout.pool.usage</code>
+ * <dd>the time a context was held until it was returned
+ * <dt><code>fusion.collection.layout.pool.timeouts</code>
+ * <dd>the number of checkouts rejected due to a timeout
+ * <dt><code>fusion.collection.layout.pool.size</code>, <code>.active</code>, <code>.waiting</code>
+ * <dd>the maximum number of contexts, the number of contexts currently checked out and the number
+ * of callers currently waiting for a context. A pool with <code>active == size</code> and a
+ * non-zero number of waiting callers is saturated.
+ * </dl>
+ * <p>
+ * Contexts which must not be reused can be discarded via {@link Lease#discard()}. They are handed to
+ * the pool's disposer instead of being returned, and a fresh context is created on demand.
+ * <p>
+ * Checkouts are gated by a semaphore holding one permit per context. A permit is given back
+ * whenever a lease is closed, whether its context is returned or discarded, so that a waiting
+ * caller either finds an idle context or creates a fresh one.
+ *
+ * @param <C> the type of the pooled contexts
+ */
+class ScriptContextPool<C> {
+  private static final String METRIC_PREFIX = "fusion.collection.layout.pool";
+
+  /**
+   * A checked out context. Closing the lease returns the context to the pool.
+   *
+   * @param <C> the type of the pooled context
+   */
+  static final class Lease<C> implements AutoCloseable {
+    private final ScriptContextPool<C> pool;
+    private final C context;
+    private final long checkoutTime = System.nanoTime();
+    private boolean closed;
+    private boolean discarded;
+
+    private Lease(final ScriptContextPool<C> pool, final C context) {
+      this.pool = pool;
+      this.context = context;
+    }
+
+    C get() {
+      return context;
+    }
+
+    /**
+     * Mark the context as not reusable. Upon {@link #close()} it will be disposed of instead of
+     * being returned to the pool.
+     */
+    void discard() {
+      discarded = true;
+    }
+
+    @Override
+    public void close() {
+      if (closed)
+        return;
+
+      closed = true;
+      pool.release(this);
+    }
+  }
+
+  private final int size;
+  private final Duration checkoutTimeout;
+  private final Supplier<C> factory;
+  private final Consumer<C> disposer;
+
+  private final BlockingQueue<C> idle = new LinkedBlockingQueue<>();
+  private final List<C> all = new CopyOnWriteArrayList<>();
+
+  private final Semaphore permits;
+
+  private final AtomicInteger active = new AtomicInteger();
+  private final AtomicInteger waiting = new AtomicInteger();
+
+  private volatile boolean shutdown;
+
+  private final Timer checkoutTimer;
+  private final Timer usageTimer;
+  private final Counter timeouts;
+
+  ScriptContextPool(final int size, final Duration checkoutTimeout, final Supplier<C> factory,
+      final MeterRegistry meterRegistry) {
+    this(size, checkoutTimeout, factory, c -> {
+    }, meterRegistry);
+  }
+
+  ScriptContextPool(final int size, final Duration checkoutTimeout, final Supplier<C> factory,
+      final Consumer<C> disposer, final MeterRegistry meterRegistry) {
+    if (size < 1)
+      throw new IllegalArgumentException("The pool size must be positive");
+
+    this.size = size;
+    this.checkoutTimeout = checkoutTimeout;
+    this.factory = factory;
+    this.disposer = disposer;
+    this.permits = new Semaphore(size, true);
+
+    checkoutTimer = Timer.builder(METRIC_PREFIX + ".checkout") //
+        .description("time spent waiting for a layout engine context").register(meterRegistry);
+    usageTimer = Timer.builder(METRIC_PREFIX + ".usage") //
+        .description("time a layout engine context was held").register(meterRegistry);
+    timeouts = Counter.builder(METRIC_PREFIX + ".timeouts") //
+        .description("layout engine context checkouts rejected due to a timeout").register(meterRegistry);
+
+    Gauge.builder(METRIC_PREFIX + ".size", this, p -> p.size) //
+        .description("maximum number of layout engine contexts").register(meterRegistry);
+    Gauge.builder(METRIC_PREFIX + ".active", this, p -> p.active.get()) //
+        .description("number of layout engine contexts in use").register(meterRegistry);
+    Gauge.builder(METRIC_PREFIX + ".waiting", this, p -> p.waiting.get()) //
+        .description("number of layout requests waiting for a context").register(meterRegistry);
+  }
+
+  /**
+   * Check out a context, waiting for one to become available if necessary.
+   *
+   * @return the lease for the context
+   * @throws LayoutEngineSaturatedException if no context became available within the checkout
+   *           timeout
+   */
+  Lease<C> checkout() {
+    long start = System.nanoTime();
+    waiting.incrementAndGet();
+    try {
+      if (!permits.tryAcquire(checkoutTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+        timeouts.increment();
+        throw new LayoutEngineSaturatedException(
+            "No layout engine context became available within " + checkoutTimeout.toMillis() + "ms");
+      }
+
+      // holding a permit, there is either an idle context or room for a new one
+      C context = idle.poll();
+      if (null == context) {
+        try {
+          context = factory.get();
+          all.add(context);
+        } catch (RuntimeException e) {
+          permits.release();
+          throw e;
+        }
+      }
+
+      active.incrementAndGet();
+      return new Lease<>(this, context);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LayoutEngineSaturatedException("Interrupted while waiting for a layout engine context");
+    } finally {
+      waiting.decrementAndGet();
+      checkoutTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Apply the given action to all contexts created by this pool, regardless of whether they are
+   * currently checked out or not.
+   *
+   * @param action the action
+   */
+  void forEach(final Consumer<C> action) {
+    all.forEach(action);
+  }
+
+  /**
+   * Dispose of all idle contexts. Contexts which are currently checked out are disposed of when they
+   * are returned.
+   */
+  void shutdown() {
+    shutdown = true;
+
+    C context;
+    while (null != (context = idle.poll()))
+      dispose(context);
+  }
+
+  private void release(final Lease<C> lease) {
+    usageTimer.record(System.nanoTime() - lease.checkoutTime, TimeUnit.NANOSECONDS);
+    active.decrementAndGet();
+    try {
+      if (lease.discarded || shutdown)
+        dispose(lease.context);
+      else
+        idle.offer(lease.context);
+    } finally {
+      // wake up a waiting caller, who takes the returned context or creates a fresh one
+      permits.release();
+    }
+  }
+
+  private void dispose(final C context) {
+    all.remove(context);
+    disposer.accept(context);
+  }
+}
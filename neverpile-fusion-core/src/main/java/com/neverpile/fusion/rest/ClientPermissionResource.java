@@ -38,7 +38,8 @@ public class ClientPermissionResource {
   @GetMapping(value = "{collectionId}/permissions")
   @Timed(description = "get collection permissions", value = "fusion.collection.permissions")
   public List<Permission> layout(@PathVariable("collectionId") final String collectionId) {
-    Collection collection = collectionService.getCurrent(collectionId).orElseThrow(
+    // the permissions depend on the header only
+    Collection collection = collectionService.getCurrentHeader(collectionId).orElseThrow(
         () -> new NotFoundException("Collection not found"));
 
     return collectionAuthorizationService.getClientPermissions(collection);
@@ -0,0 +1,187 @@
+package com.neverpile.fusion.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.ViewLayout;
+
+/**
+ * Writes a {@link CollectionLayout} to a stream view by view, so that each view can be released as
+ * soon as it has been written. The resulting JSON is equivalent to the serialized
+ * {@link CollectionLayout}, except that the title visualizations, which are only known once all
+ * views are complete, come last.
+ * <p>
+ * Nothing is written before the first view, so that failures before that point can still be
+ * reported as regular error responses. Once the response has been committed, failures are reported
+ * in the layout itself instead: a view which can't be serialized and the views which have not been
+ * written when the layout fails are written as failed views, i.e. with an error, and the layout is
+ * completed.
+ */
+class CollectionLayoutWriter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CollectionLayoutWriter.class);
+
+  /**
+   * A supplier of the output stream.
+   */
+  @FunctionalInterface
+  interface Output {
+    OutputStream open() throws IOException;
+  }
+
+  /**
+   * A function computing a layout view by view.
+   */
+  @FunctionalInterface
+  interface Layouter {
+    /**
+     * Compute the layout.
+     *
+     * @param viewConsumer receives each view layout as soon as it is complete
+     * @return the layout without any view layouts
+     */
+    CollectionLayout layout(Consumer<ViewLayout> viewConsumer);
+  }
+
+  private final ObjectMapper objectMapper;
+  private final Output output;
+  private final String collectionTypeId;
+
+  private JsonGenerator generator;
+
+  private final Set<String> writtenViews = new HashSet<>();
+
+  /**
+   * Create a writer.
+   *
+   * @param objectMapper the object mapper used to serialize the views
+   * @param output the supplier of the output stream, called upon the first write
+   * @param collectionTypeId the id of the collection type
+   */
+  CollectionLayoutWriter(final ObjectMapper objectMapper, final Output output,
+      final String collectionTypeId) {
+    this.objectMapper = objectMapper;
+    this.output = output;
+    this.collectionTypeId = collectionTypeId;
+  }
+
+  /**
+   * Write a complete layout.
+   *
+   * @param layout the layout
+   * @throws IOException if writing fails
+   */
+  void write(final CollectionLayout layout) throws IOException {
+    for (ViewLayout view : layout.getViewLayouts().values())
+      writeView(view);
+    finish(layout);
+  }
+
+  /**
+   * Write the layout computed by the given layouter, writing each view as soon as it is complete.
+   * If the layout fails before the first view has been written, the failure is passed on. After
+   * that, the views not written yet are written as failed views.
+   *
+   * @param viewNames the names of all views of the layout
+   * @param layouter the function computing the layout
+   * @throws IOException if writing fails
+   */
+  void stream(final List<String> viewNames, final Layouter layouter) throws IOException {
+    CollectionLayout layout;
+    try {
+      layout = layouter.layout(view -> {
+        try {
+          writeView(view);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } catch (RuntimeException e) {
+      if (null == generator)
+        throw e;
+
+      LOGGER.warn("Failed to lay out collection of type {} after streaming had started", collectionTypeId, e);
+      for (String name : viewNames)
+        if (!writtenViews.contains(name))
+          writeView(new ViewLayout(name, "Failed to lay out view: " + e.getMessage()));
+      layout = new CollectionLayout();
+    }
+
+    finish(layout);
+  }
+
+  /**
+   * Write the given view layout and flush it to the output stream. A view which can't be serialized
+   * is written as a failed view.
+   *
+   * @param view the view layout
+   * @throws IOException if writing fails
+   */
+  void writeView(final ViewLayout view) throws IOException {
+    start();
+
+    // serialize the view completely before writing it, so that a failure doesn't leave it incomplete
+    TokenBuffer buffer = new TokenBuffer(objectMapper, false);
+    try {
+      objectMapper.writeValue(buffer, view);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Failed to serialize layout of view {}", view.getView(), e);
+      buffer = new TokenBuffer(objectMapper, false);
+      objectMapper.writeValue(buffer, new ViewLayout(view.getView(), "Failed to write view: " + e.getMessage()));
+    }
+
+    generator.writeFieldName(view.getView());
+    buffer.serialize(generator);
+    generator.flush();
+    writtenViews.add(view.getView());
+  }
+
+  /**
+   * Write the rest of the layout. The view layouts contained in the given layout are ignored.
+   *
+   * @param layout the layout providing the title visualizations
+   * @throws IOException if writing fails
+   */
+  void finish(final CollectionLayout layout) throws IOException {
+    start();
+    generator.writeEndObject();
+
+    generator.writeFieldName("titleVisualization");
+    generator.writeObject(layout.getTitleVisualization());
+
+    generator.writeEndObject();
+    generator.close();
+  }
+
+  private void start() throws IOException {
+    if (null != generator)
+      return;
+
+    generator = objectMapper.getFactory().createGenerator(output.open(), JsonEncoding.UTF8);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+    if (objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT))
+      generator.useDefaultPrettyPrinter();
+
+    generator.writeStartObject();
+    if (null != collectionTypeId)
+      generator.writeStringField("collectionTypeId", collectionTypeId);
+    generator.writeFieldName("viewLayouts");
+    generator.writeStartObject();
+  }
+}
@@ -3,16 +3,16 @@ package com.neverpile.fusion.rest;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.Principal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -31,6 +31,8 @@ import com.neverpile.common.authorization.api.CoreActions;
 import com.neverpile.fusion.api.CollectionIdStrategy;
 import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.api.VersionQuery;
+import com.neverpile.fusion.api.VersionQuery.Direction;
 import com.neverpile.fusion.api.exception.PermissionDeniedException;
 import com.neverpile.fusion.authorization.CollectionAuthorizationService;
 import com.neverpile.fusion.model.Collection;
@@ -52,7 +54,12 @@ import io.micrometer.core.annotation.Timed;
     produces = MediaType.APPLICATION_JSON_VALUE)
 public class CollectionResource {
 
-  private static final long VERSION_AGGREGATION_WINDOW = TimeUnit.SECONDS.toMillis(30);
+  /**
+   * The maximum time between successive versions grouped into one history entry.
+   */
+  @Value("${neverpile-fusion.history.grouping-window:PT30S}")
+  private Duration versionGroupingWindow;
+
   @Autowired
   private CollectionService collectionService;
 
@@ -114,11 +121,26 @@ public class CollectionResource {
           "operation", "retrieve", "target", "collection-version-list"
       },
       value = "fusion.collection.get-version-list")
-  public List<Date> getVersionList(@PathVariable("collectionID") final String collectionId) {
-    if (!collectionAuthorizationService.authorizeCollectionAction(getCurrent(collectionId), CoreActions.GET))
+  public List<Date> getVersionList(@PathVariable("collectionID") final String collectionId,
+      @RequestParam(
+          name = "after",
+          required = false) @DateTimeFormat(
+              iso = DateTimeFormat.ISO.DATE_TIME) final Instant after,
+      @RequestParam(
+          name = "before",
+          required = false) @DateTimeFormat(
+              iso = DateTimeFormat.ISO.DATE_TIME) final Instant before,
+      @RequestParam(
+          name = "limit",
+          required = false) final Integer limit,
+      @RequestParam(
+          name = "direction",
+          defaultValue = "ASCENDING") final Direction direction) {
+    if (!collectionAuthorizationService.authorizeCollectionAction(getCurrentHeader(collectionId), CoreActions.GET))
       throw new PermissionDeniedException();
 
-    return collectionService.getVersions(collectionId).stream().map(i -> Date.from(i)).collect(Collectors.toList());
+    return collectionService.getVersions(collectionId, versionQuery(after, before, limit, direction)).stream().map(
+        i -> Date.from(i)).collect(Collectors.toList());
   }
 
   @PreSignedUrlEnabled
@@ -133,40 +155,46 @@ public class CollectionResource {
   public List<VersionMetadata> getVersionListWithMetadata(@PathVariable("collectionID") final String collectionId,
       @RequestParam(
           name = "groupRelatedVersions",
-          defaultValue = "false") final boolean groupRelatedVersions) {
-    if (!collectionAuthorizationService.authorizeCollectionAction(getCurrent(collectionId), CoreActions.GET))
+          defaultValue = "false") final boolean groupRelatedVersions,
+      @RequestParam(
+          name = "after",
+          required = false) @DateTimeFormat(
+              iso = DateTimeFormat.ISO.DATE_TIME) final Instant after,
+      @RequestParam(
+          name = "before",
+          required = false) @DateTimeFormat(
+              iso = DateTimeFormat.ISO.DATE_TIME) final Instant before,
+      @RequestParam(
+          name = "limit",
+          required = false) final Integer limit,
+      @RequestParam(
+          name = "direction",
+          defaultValue = "ASCENDING") final Direction direction) {
+    if (!collectionAuthorizationService.authorizeCollectionAction(getCurrentHeader(collectionId), CoreActions.GET))
       throw new PermissionDeniedException();
 
-    List<VersionMetadata> versionsWithMetadata = collectionService.getVersionsWithMetadata(collectionId);
-
-    if (groupRelatedVersions) {
-      VersionMetadata prev = null;
-      for (Iterator<VersionMetadata> i = versionsWithMetadata.iterator(); i.hasNext();) {
-        VersionMetadata v = i.next();
-
-        // aggregate two versions, if they are
-        if (prev != null
-            // created by same user
-            && Objects.equals(prev.getCreatedBy(), v.getCreatedBy())
-            // have same type
-            && Objects.equals(prev.getTypeId(), v.getTypeId())
-            // one version timestamp list is empty (should not happen)
-            && (prev.getVersionTimestamps().isEmpty() //
-                || v.getVersionTimestamps().isEmpty()
-                // or difference between timestamps within aggregation window
-                || Math.abs(v.getVersionTimestamps().get(0).toEpochMilli() - prev.getVersionTimestamps().get(
-                    prev.getVersionTimestamps().size() - 1).toEpochMilli()) < VERSION_AGGREGATION_WINDOW //
-            )) {
-          // add version to previous one
-          prev.getVersionTimestamps().addAll(v.getVersionTimestamps());
-          i.remove();
-        } else {
-          prev = v;
-        }
-      }
-    }
-
-    return versionsWithMetadata;
+    VersionQuery query = versionQuery(after, before, limit, direction);
+    if (groupRelatedVersions)
+      query.setGroupingWindow(versionGroupingWindow);
+
+    return collectionService.getVersionsWithMetadata(collectionId, query);
+  }
+
+  /**
+   * Get the header of the current version for authorization purposes, without retrieving the
+   * elements.
+   */
+  private Collection getCurrentHeader(final String collectionId) {
+    return collectionService.getCurrentHeader(collectionId).orElseThrow(
+        () -> new NotFoundException("Collection not found"));
+  }
+
+  private static VersionQuery versionQuery(final Instant after, final Instant before, final Integer limit,
+      final Direction direction) {
+    if (null != limit && limit <= 0)
+      throw new NotAcceptableException("Invalid limit: " + limit);
+
+    return new VersionQuery(after, before, limit, direction);
   }
 
   @PreSignedUrlEnabled
@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.neverpile.fusion.api.CollectionTypeService;
 import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.rules.javascript.JavascriptViewLayoutEngine;
 import com.neverpile.fusion.rest.exception.NotFoundException;
 
 import io.micrometer.core.annotation.Timed;
@@ -34,6 +35,9 @@ public class CollectionTypeResource {
   @Autowired
   private CollectionTypeService collectionTypeService;
 
+  @Autowired
+  private JavascriptViewLayoutEngine layoutEngine;
+
   @GetMapping(value = "{id}")
   @Timed(description = "get collection type by id", extraTags = {
       "operation", "retrieve", "target", "collection-type"
@@ -94,6 +98,9 @@ public class CollectionTypeResource {
 
     collectionTypeService.save(type);
 
+    // the type's rules may have changed
+    layoutEngine.evictCompiledRules(type.getId());
+
     return type;
   }
 }
@@ -1,18 +1,35 @@
 package com.neverpile.fusion.rest;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.common.authorization.api.CoreActions;
+import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.api.exception.PermissionDeniedException;
+import com.neverpile.fusion.authorization.CollectionAuthorizationService;
+import com.neverpile.fusion.configuration.LayoutConfiguration;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.View;
 import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.LayoutCache;
 import com.neverpile.fusion.model.rules.javascript.JavascriptViewLayoutEngine;
+import com.neverpile.fusion.model.rules.javascript.RuleProfile;
 import com.neverpile.fusion.rest.exception.NotFoundException;
 
 import io.micrometer.core.annotation.Timed;
@@ -20,6 +37,16 @@ import io.micrometer.core.annotation.Timed;
 /**
  * A REST resource providing view layout services. While certain client implementations may be able
  * to perform view layout generation on their own, this service can be used by clients which cannot.
+ * <p>
+ * Layouts of stored collection versions, requested via the <code>GET</code> endpoints, are cached
+ * (see {@link LayoutCache}).
+ * <p>
+ * Ad-hoc layouts, requested via <code>POST</code>, are written to the response view by view as the
+ * views complete, unless disabled via {@link LayoutConfiguration#isStreamViews()}. Thus, large
+ * layouts never have to be held in memory as a whole.
+ * <p>
+ * For debugging expensive collection types, the <code>profile</code> endpoint lays out a sample
+ * collection and returns the cost of each rule instead of the layout.
  */
 @RestController
 @RequestMapping(path = "/api/v1/layout", produces = {
@@ -33,15 +60,85 @@ public class ViewLayoutResource {
   @Autowired
   private JavascriptViewLayoutEngine engine;
 
+  @Autowired
+  private CollectionService collectionService;
+
+  @Autowired
+  private CollectionAuthorizationService collectionAuthorizationService;
+
+  @Autowired
+  private LayoutCache layoutCache;
+
+  @Autowired
+  private LayoutConfiguration layoutConfiguration;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
   @PostMapping(value = "{typeId}", consumes = MediaType.APPLICATION_JSON_VALUE)
   @Timed(description = "get collection type by id", extraTags = {
       "operation", "layout", "target", "collection"
   }, value = "fusion.collection.layout")
-  public CollectionLayout layout(@PathVariable("typeId") final String id, @RequestBody final Collection collection) {
+  public void layout(@PathVariable("typeId") final String id, @RequestBody final Collection collection,
+      final HttpServletResponse response) throws IOException {
     CollectionType type = collectionTypeService.get(id).orElseThrow(
         () -> new NotFoundException("Collection type not found: " + id));
 
-    return engine.layoutTree(collection, type);
+    CollectionLayoutWriter writer = new CollectionLayoutWriter(objectMapper, () -> {
+      response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+      return response.getOutputStream();
+    }, type.getId());
+
+    if (!layoutConfiguration.isStreamViews()) {
+      writer.write(engine.layoutTree(collection, type));
+      return;
+    }
+
+    writer.stream(type.getViews().stream().map(View::getName).collect(Collectors.toList()),
+        viewConsumer -> engine.layoutTree(collection, type, viewConsumer));
+  }
+
+  @PostMapping(value = "{typeId}/profile", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Timed(description = "profile layout rules", extraTags = {
+      "operation", "profile", "target", "collection"
+  }, value = "fusion.collection.layout.profile")
+  public RuleProfile profile(@PathVariable("typeId") final String id, @RequestBody final Collection collection) {
+    CollectionType type = collectionTypeService.get(id).orElseThrow(
+        () -> new NotFoundException("Collection type not found: " + id));
+
+    return engine.profile(collection, type);
+  }
+
+  @GetMapping("{typeId}/{collectionID}")
+  @Timed(description = "get layout of stored collection (current version)", extraTags = {
+      "operation", "layout", "target", "collection"
+  }, value = "fusion.collection.layout.stored")
+  public CollectionLayout layoutCurrent(@PathVariable("typeId") final String typeId,
+      @PathVariable("collectionID") final String collectionId) {
+    return layoutStored(typeId, collectionService.getCurrent(collectionId).orElseThrow(
+        () -> new NotFoundException("Collection not found")));
+  }
+
+  @GetMapping("{typeId}/{collectionID}/history/{versionTimestamp}")
+  @Timed(description = "get layout of stored collection (version specified by timestamp)", extraTags = {
+      "operation", "layout", "target", "collection"
+  }, value = "fusion.collection.layout.stored")
+  public CollectionLayout layoutVersion(@PathVariable("typeId") final String typeId,
+      @PathVariable("collectionID") final String collectionId,
+      @PathVariable("versionTimestamp") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) final Instant versionTimestamp) {
+    return layoutStored(typeId, collectionService.getVersion(collectionId, versionTimestamp).orElseThrow(
+        () -> new NotFoundException("Collection not found")));
+  }
+
+  private CollectionLayout layoutStored(final String typeId, final Collection collection) {
+    if (!collectionAuthorizationService.authorizeCollectionAction(collection, CoreActions.GET))
+      throw new PermissionDeniedException();
+
+    CollectionType type = collectionTypeService.get(typeId).orElseThrow(
+        () -> new NotFoundException("Collection type not found: " + typeId));
+
+    return layoutCache.getIncrementally(collection, type,
+        (previous, nextState) -> engine.layoutIncrementally(collection, type, previous, nextState));
   }
 
 }
@@ -1,7 +1,6 @@
 // init the collection related global variables
 function _initCollection() {
-  _cd(collection);
-  collection.elements.forEach(_cd);
+  collection = _wrapCollection(_jsCollection);
 }
 
 // init the element-related global variables
@@ -11,10 +10,111 @@ function _initElement() {
   tags = element.tags;
 }
 
-// convert dates to "real" dates of collection and element objects
-function _cd(o) {
-  o.dateCreated = new Date(o.dateCreated);
-  o.dateModified = new Date(o.dateModified);
+// expose a JSCollection bridge as a JS object. Everything but the scalar properties is converted 
+// lazily upon first access.
+function _wrapCollection(c) {
+  var o = {
+    id: c.getId(),
+    versionTimestamp: c.getVersionTimestamp() ? String(c.getVersionTimestamp().toInstant()) : null,
+    typeId: c.getType()
+  };
+  _lazy(o, 'elements', function () {
+    var l = c.getElements();
+    var elements = [];
+    for (var i = 0; i < l.size(); i++) {
+      elements.push(_wrapElement(l.get(i)));
+    }
+    return elements;
+  });
+  _lazy(o, 'metadata', function () { return _fromJson(c.getMetadata()); });
+  _lazy(o, 'dateCreated', function () { return _date(c.getDateCreated()); });
+  _lazy(o, 'dateModified', function () { return _date(c.getDateModified()); });
+  o.createdBy = c.getCreatedBy();
+  o.state = c.getState() ? String(c.getState().name()) : null;
+  return o;
+}
+
+// expose a JSElement bridge as a JS object
+function _wrapElement(e) {
+  var o = { id: e.getId() };
+  // keep a hidden reference to the Java element for O(1) lookups
+  Object.defineProperty(o, '_element', { value: e.getElement() });
+  _lazy(o, 'dateCreated', function () { return _date(e.getDateCreated()); });
+  _lazy(o, 'dateModified', function () { return _date(e.getDateModified()); });
+  _lazy(o, 'tags', function () { return _array(e.getTags()); });
+  _lazy(o, 'metadata', function () { return _fromJson(e.getMetadata()); });
+  _lazy(o, 'specification', function () {
+    return e.getSpecification() ? _fromJson(_objectMapper.valueToTree(e.getSpecification())) : null;
+  });
+  return o;
+}
+
+// define a property the value of which is computed upon first access
+function _lazy(o, name, compute) {
+  function define(v) {
+    Object.defineProperty(o, name, { value: v, writable: true, enumerable: true, configurable: true });
+  }
+  Object.defineProperty(o, name, {
+    get: function () { var v = compute(); define(v); return v; },
+    set: define,
+    enumerable: true,
+    configurable: true
+  });
+}
+
+// map a JS element object to the corresponding Java element
+function _javaElement(e) {
+  if (e && e._element) {
+    return e._element;
+  }
+  // not one of the element objects we handed out: fall back to a search
+  return _collection.elements.get(collection.elements.indexOf(e));
+}
+
+// convert a java.util.Date to a JS date. A missing date is mapped to the epoch.
+function _date(d) {
+  return new Date(d ? Number(d.getTime()) : null);
+}
+
+// convert a java.util.List to a JS array
+function _array(l) {
+  var a = [];
+  if (l) {
+    for (var i = 0; i < l.size(); i++) {
+      a.push(l.get(i));
+    }
+  }
+  return a;
+}
+
+// convert a Jackson JsonNode to the JS value JSON.parse() would have produced
+function _fromJson(n) {
+  if (!n || n.isNull() || n.isMissingNode()) {
+    return null;
+  }
+  if (n.isObject()) {
+    var o = {};
+    var names = n.fieldNames();
+    while (names.hasNext()) {
+      var name = names.next();
+      o[name] = _fromJson(n.get(name));
+    }
+    return o;
+  }
+  if (n.isArray()) {
+    var a = [];
+    for (var i = 0; i < n.size(); i++) {
+      a.push(_fromJson(n.get(i)));
+    }
+    return a;
+  }
+  if (n.isNumber()) {
+    return n.isIntegralNumber() && n.canConvertToInt() ? n.asInt() : n.asDouble();
+  }
+  if (n.isBoolean()) {
+    return n.asBoolean();
+  }
+  return String(n.asText());
 }
 
 // wrap a Java Node object so that the withProperty method replaces the JS element with the java one  
@@ -22,10 +122,10 @@ function _wrapNode(n) {
   var wrapper = {
     // wrap the withElement method to replace the JS element with the Java one
     withElement: function (e) {
-      return n.withElement(_collection.elements.get(collection.elements.indexOf(e)));
+      return n.withElement(_javaElement(e));
     },
     createElementNode: function (e) {
-      return _wrapNode(n.createElementNode(_collection.elements.get(collection.elements.indexOf(e))));
+      return _wrapNode(n.createElementNode(_javaElement(e)));
     },
     withProperty: function (k, v) {
       n.withProperty(k, v);
@@ -68,9 +168,7 @@ function withNode(f) {
 }
 function createElementNode(e) {
   var path = Array.prototype.slice.call(arguments).slice(1);
-  return _root.createPath(path).createElementNode(
-    _collection.elements.get(collection.elements.indexOf(e))
-  );
+  return _root.createPath(path).createElementNode(_javaElement(e));
 }
 function putNodeProperty(n, v) {
   var path = Array.prototype.slice.call(arguments).slice(2);
@@ -0,0 +1,69 @@
+package com.neverpile.fusion.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.neverpile.fusion.api.VersionQuery.Direction;
+import com.neverpile.fusion.model.VersionMetadata;
+
+public class VersionQueryTest {
+  private final List<VersionMetadata> history = Arrays.asList( //
+      version(0, "alice"), version(10, "alice"), version(20, "alice"), // one group
+      version(100, "alice"), // too late for the previous group
+      version(105, "bob"), version(110, "bob"), // another user
+      version(200, "bob"));
+
+  @Test
+  public void testThat_versionsAreSelectedByBoundsAndDirection() {
+    VersionQuery query = new VersionQuery(Instant.ofEpochSecond(0), Instant.ofEpochSecond(200), 3,
+        Direction.DESCENDING);
+
+    assertThat(query.applyToMetadata(history)).extracting(v -> v.getVersionTimestamps().get(0)) //
+        .containsExactly(Instant.ofEpochSecond(110), Instant.ofEpochSecond(105), Instant.ofEpochSecond(100));
+  }
+
+  @Test
+  public void testThat_relatedVersionsAreGrouped() {
+    VersionQuery query = VersionQuery.all();
+    query.setGroupingWindow(Duration.ofSeconds(30));
+
+    assertThat(query.applyToMetadata(history)).extracting(v -> v.getVersionTimestamps().size()) //
+        .containsExactly(3, 1, 2, 1);
+  }
+
+  @Test
+  public void testThat_limitAppliesToGroups() {
+    VersionQuery query = new VersionQuery(null, null, 2, Direction.DESCENDING);
+    query.setGroupingWindow(Duration.ofSeconds(30));
+
+    List<VersionMetadata> groups = query.applyToMetadata(history);
+    assertThat(groups).hasSize(2);
+    assertThat(groups.get(1).getVersionTimestamps()) //
+        .containsExactly(Instant.ofEpochSecond(110), Instant.ofEpochSecond(105));
+  }
+
+  @Test
+  public void testThat_versionsAreConsumedOnlyUntilTheLastGroupIsComplete() {
+    VersionQuery query = new VersionQuery(null, null, 1, Direction.ASCENDING);
+    query.setGroupingWindow(Duration.ofSeconds(30));
+
+    AtomicInteger consumed = new AtomicInteger();
+    Iterator<VersionMetadata> i = history.stream().peek(v -> consumed.incrementAndGet()).iterator();
+
+    assertThat(query.collect(i)).hasSize(1);
+    // the three versions of the first group and the one ending it
+    assertThat(consumed.get()).isEqualTo(4);
+  }
+
+  private static VersionMetadata version(final long seconds, final String createdBy) {
+    return new VersionMetadata(Instant.ofEpochSecond(seconds), "aCollectionType", createdBy);
+  }
+}
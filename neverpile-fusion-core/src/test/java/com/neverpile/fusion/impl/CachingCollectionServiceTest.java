@@ -0,0 +1,175 @@
+package com.neverpile.fusion.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.InvalidationEvent;
+import com.neverpile.fusion.api.exception.VersionMismatchException;
+import com.neverpile.fusion.configuration.CollectionCacheConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CachingCollectionServiceTest {
+  private static final Instant V1 = Instant.ofEpochMilli(10);
+
+  private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule()) //
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final LocalInvalidationBus bus = new LocalInvalidationBus();
+
+  private CollectionService delegate;
+
+  private CachingCollectionService service;
+
+  @BeforeEach
+  public void setup() {
+    delegate = mock(CollectionService.class);
+    when(delegate.getCurrent("aCollection")).thenAnswer(i -> Optional.of(collection(V1)));
+    when(delegate.getVersion("aCollection", V1)).thenAnswer(i -> Optional.of(collection(V1)));
+    when(delegate.getCurrent("doesNotExist")).thenReturn(Optional.empty());
+
+    service = new CachingCollectionService(delegate, objectMapper, new CollectionCacheConfiguration(), registry,
+        bus);
+  }
+
+  @Test
+  public void testThat_currentVersionIsCached() {
+    Collection first = service.getCurrent("aCollection").get();
+    Collection second = service.getCurrent("aCollection").get();
+
+    verify(delegate, times(1)).getCurrent("aCollection");
+    assertThat(second.getVersionTimestamp()).isEqualTo(V1);
+    assertThat(second.getElements()).extracting(Element::getId).containsExactly("anElement");
+
+    // callers get their own copies
+    first.getElements().clear();
+    assertThat(service.getCurrent("aCollection").get().getElements()).hasSize(1);
+  }
+
+  @Test
+  public void testThat_nonexistentCollectionsAreNotCached() {
+    assertThat(service.getCurrent("doesNotExist")).isEmpty();
+    assertThat(service.getCurrent("doesNotExist")).isEmpty();
+
+    verify(delegate, times(2)).getCurrent("doesNotExist");
+  }
+
+  @Test
+  public void testThat_saveInvalidatesCurrentVersion() {
+    service.getCurrent("aCollection");
+    service.save(collection(V1));
+    service.getCurrent("aCollection");
+
+    verify(delegate, times(2)).getCurrent("aCollection");
+  }
+
+  @Test
+  public void testThat_failedSaveInvalidatesCurrentVersion() {
+    when(delegate.save(any())).thenThrow(new VersionMismatchException("conflict", "a", "b"));
+
+    service.getCurrent("aCollection");
+    assertThrows(VersionMismatchException.class, () -> service.save(collection(V1)));
+    service.getCurrent("aCollection");
+
+    verify(delegate, times(2)).getCurrent("aCollection");
+  }
+
+  @Test
+  public void testThat_headersAreReadFromCachedCollections() {
+    when(delegate.getCurrentHeader("aCollection")).thenReturn(Optional.empty());
+
+    service.getCurrent("aCollection");
+    Collection header = service.getCurrentHeader("aCollection").get();
+
+    assertThat(header.getTypeId()).isEqualTo("aCollectionType");
+    assertThat(header.getElements()).isEmpty();
+    verify(delegate, never()).getCurrentHeader("aCollection");
+  }
+
+  @Test
+  public void testThat_headersOfUncachedCollectionsAreDelegated() {
+    when(delegate.getCurrentHeader("aCollection")).thenReturn(Optional.of(new Collection()));
+
+    assertThat(service.getCurrentHeader("aCollection")).isNotEmpty();
+    verify(delegate, never()).getCurrent("aCollection");
+  }
+
+  @Test
+  public void testThat_invalidationEventsInvalidateCurrentVersion() {
+    service.getCurrent("aCollection");
+    bus.publish(new InvalidationEvent("aCollection", Instant.ofEpochMilli(20)));
+    service.getCurrent("aCollection");
+
+    verify(delegate, times(2)).getCurrent("aCollection");
+  }
+
+  @Test
+  public void testThat_savesArePublished() {
+    when(delegate.save(any())).thenAnswer(i -> collection(Instant.ofEpochMilli(20)));
+
+    List<InvalidationEvent> published = new ArrayList<>();
+    bus.subscribe(published::add);
+
+    new PublishingCollectionService(delegate, bus).save(collection(V1));
+
+    assertThat(published).extracting(InvalidationEvent::getCollectionId, InvalidationEvent::getVersionTimestamp) //
+        .containsExactly(tuple("aCollection", Instant.ofEpochMilli(20)));
+  }
+
+  @Test
+  public void testThat_versionsAreCachedAcrossSaves() {
+    service.getVersion("aCollection", V1);
+    service.save(collection(V1));
+    assertThat(service.getVersion("aCollection", V1).get().getVersionTimestamp()).isEqualTo(V1);
+
+    verify(delegate, times(1)).getVersion("aCollection", V1);
+  }
+
+  @Test
+  public void testThat_cacheStatisticsAreExported() {
+    service.getCurrent("aCollection");
+    service.getCurrent("aCollection");
+
+    assertThat(registry.get("cache.gets").tag("cache", "fusion.collection.cache.current").tag("result", "hit") //
+        .functionCounter().count()).isEqualTo(1.0);
+    assertThat(registry.get("cache.gets").tag("cache", "fusion.collection.cache.current").tag("result", "miss") //
+        .functionCounter().count()).isEqualTo(1.0);
+    assertThat(registry.find("cache.evictions").tag("cache", "fusion.collection.cache.versions").functionCounter()) //
+        .isNotNull();
+  }
+
+  private static Collection collection(final Instant versionTimestamp) {
+    Collection c = new Collection();
+    c.setId("aCollection");
+    c.setTypeId("aCollectionType");
+    c.setVersionTimestamp(versionTimestamp);
+
+    Element e = new Element();
+    e.setId("anElement");
+    c.getElements().add(e);
+    return c;
+  }
+}
@@ -0,0 +1,78 @@
+package com.neverpile.fusion.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Collection.State;
+import com.neverpile.fusion.model.Element;
+
+public class CollectionHeaderReaderTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule()) //
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  @Test
+  public void testThat_headerIsRead() throws Exception {
+    Collection header = read(objectMapper.writeValueAsString(createTestCollection()));
+
+    assertThat(header.getId()).isEqualTo("aCollection");
+    assertThat(header.getTypeId()).isEqualTo("aCollectionType");
+    assertThat(header.getState()).isEqualTo(State.Closed);
+    assertThat(header.getCreatedBy()).isEqualTo("user");
+    assertThat(header.getDateModified()).isEqualTo(Instant.ofEpochMilli(10));
+    assertThat(header.getMetadata().path("foo").asText()).isEqualTo("bar");
+    assertThat(header.getElements()).isEmpty();
+  }
+
+  @Test
+  public void testThat_readingStopsAtTheElements() throws Exception {
+    String serialized = objectMapper.writeValueAsString(createTestCollection());
+
+    // the truncated content would not be valid if the elements were read
+    String truncated = serialized.substring(0, serialized.indexOf("\"elements\":[") + 13);
+
+    assertThat(read(truncated).getTypeId()).isEqualTo("aCollectionType");
+  }
+
+  @Test
+  public void testThat_typeIdFollowingTheElementsIsRead() throws Exception {
+    ObjectNode serialized = objectMapper.valueToTree(createTestCollection());
+    serialized.set("typeId", serialized.remove("typeId"));
+
+    Collection header = read(objectMapper.writeValueAsString(serialized));
+
+    assertThat(header.getTypeId()).isEqualTo("aCollectionType");
+    assertThat(header.getCreatedBy()).isEqualTo("user");
+    assertThat(header.getElements()).isEmpty();
+  }
+
+  private Collection read(final String serialized) throws Exception {
+    return CollectionHeaderReader.readHeader(objectMapper, objectMapper.getFactory().createParser(serialized));
+  }
+
+  private Collection createTestCollection() {
+    Collection c = new Collection();
+    c.setId("aCollection");
+    c.setTypeId("aCollectionType");
+    c.setState(State.Closed);
+    c.setCreatedBy("user");
+    c.setDateCreated(Instant.ofEpochMilli(10));
+    c.setDateModified(Instant.ofEpochMilli(10));
+    c.setMetadata(objectMapper.createObjectNode().put("foo", "bar"));
+
+    for (int i = 0; i < 3; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      e.setMetadata(objectMapper.createObjectNode().put("foo", "baz"));
+      c.getElements().add(e);
+    }
+    return c;
+  }
+}
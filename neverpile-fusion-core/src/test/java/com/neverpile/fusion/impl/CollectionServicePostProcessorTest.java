@@ -0,0 +1,70 @@
+package com.neverpile.fusion.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.InvalidationBus;
+import com.neverpile.fusion.api.InvalidationEvent;
+import com.neverpile.fusion.configuration.CollectionCacheConfiguration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CollectionServicePostProcessorTest {
+  private final StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+
+  private final CollectionCacheConfiguration cacheConfig = new CollectionCacheConfiguration();
+
+  private final CollectionService service = mock(CollectionService.class);
+
+  @BeforeEach
+  public void setup() {
+    beanFactory.addBean("cacheConfig", cacheConfig);
+    beanFactory.addBean("objectMapper", new ObjectMapper());
+    beanFactory.addBean("meterRegistry", new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void testThat_serviceIsLeftAloneWithoutCacheAndClusterWideBus() {
+    beanFactory.addBean("bus", new LocalInvalidationBus());
+
+    assertThat(postProcess()).isSameAs(service);
+  }
+
+  @Test
+  public void testThat_savesArePublishedOnClusterWideBus() {
+    beanFactory.addBean("bus", new InvalidationBus() {
+      @Override
+      public void publish(final InvalidationEvent event) {
+      }
+
+      @Override
+      public void subscribe(final Consumer<InvalidationEvent> listener) {
+      }
+    });
+
+    assertThat(postProcess()).isInstanceOf(PublishingCollectionService.class);
+  }
+
+  @Test
+  public void testThat_serviceIsCachedIfEnabled() {
+    beanFactory.addBean("bus", new LocalInvalidationBus());
+    cacheConfig.setEnabled(true);
+
+    assertThat(postProcess()).isInstanceOf(CachingCollectionService.class);
+  }
+
+  private Object postProcess() {
+    return new CollectionServicePostProcessor(beanFactory.getBeanProvider(CollectionCacheConfiguration.class),
+        beanFactory.getBeanProvider(InvalidationBus.class), beanFactory.getBeanProvider(ObjectMapper.class),
+        beanFactory.getBeanProvider(MeterRegistry.class)).postProcessAfterInitialization(service, "collectionService");
+  }
+}
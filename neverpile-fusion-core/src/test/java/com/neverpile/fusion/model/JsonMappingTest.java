@@ -33,6 +33,7 @@ public class JsonMappingTest {
   private final String REF = "{\r\n" + //
       "  \"id\" : \"anId\",\r\n" + //
       "  \"versionTimestamp\" : \"1970-01-01T00:00:00.001Z\",\r\n" + //
+      "  \"typeId\" : \"aCollectionType\",\r\n" + //
       "  \"state\" : \"Active\",\r\n" + //
       "  \"dateCreated\" : \"1970-01-01T00:00:00.001Z\",\r\n" + //
       "  \"dateModified\" : \"1970-01-01T00:00:00.001Z\",\r\n" + //
@@ -84,8 +85,7 @@ public class JsonMappingTest {
       "      } ],\r\n" + //
       "      \"annotationData\" : null\r\n" + //
       "    }\r\n" + //
-      "  } ],\r\n" + //
-      "  \"typeId\" : \"aCollectionType\"\r\n" + //
+      "  } ]\r\n" + //
       "}";
 
   @Test
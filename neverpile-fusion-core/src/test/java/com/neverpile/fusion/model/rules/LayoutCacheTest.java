@@ -0,0 +1,139 @@
+package com.neverpile.fusion.model.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutConfiguration.CacheConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.View;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class LayoutCacheTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private final AtomicInteger layouts = new AtomicInteger();
+
+  private LayoutCache cache;
+
+  @BeforeEach
+  public void init() {
+    cache = new LayoutCache(objectMapper, new CacheConfiguration(), new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void testThat_layoutsOfStoredVersionsAreCached() {
+    CollectionType type = type("aView");
+
+    CollectionLayout first = cache.get(collection("anId", Instant.ofEpochMilli(1)), type, this::layout);
+    CollectionLayout second = cache.get(collection("anId", Instant.ofEpochMilli(1)), type("aView"), this::layout);
+
+    assertThat(second).isSameAs(first);
+    assertThat(layouts.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testThat_versionsAndTypesAreDistinguished() {
+    cache.get(collection("anId", Instant.ofEpochMilli(1)), type("aView"), this::layout);
+    cache.get(collection("anId", Instant.ofEpochMilli(2)), type("aView"), this::layout);
+    cache.get(collection("anotherId", Instant.ofEpochMilli(1)), type("aView"), this::layout);
+    cache.get(collection("anId", Instant.ofEpochMilli(1)), type("anotherView"), this::layout);
+
+    assertThat(layouts.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void testThat_unsavedCollectionsAreNotCached() {
+    cache.get(collection("anId", null), type("aView"), this::layout);
+    cache.get(collection("anId", null), type("aView"), this::layout);
+
+    assertThat(layouts.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testThat_layoutsWithFailedViewsAreNotCached() {
+    Collection c = collection("anId", Instant.ofEpochMilli(1));
+
+    cache.get(c, type("aView"), this::failedLayout);
+    cache.get(c, type("aView"), this::failedLayout);
+    cache.getIncrementally(c, type("aView"), (previous, nextState) -> failedLayout());
+
+    assertThat(layouts.get()).isEqualTo(3);
+
+    // a successful layout replaces the failed one
+    CollectionLayout layout = cache.get(c, type("aView"), this::layout);
+    assertThat(cache.get(c, type("aView"), this::failedLayout)).isSameAs(layout);
+    assertThat(layouts.get()).isEqualTo(4);
+  }
+
+  @Test
+  public void testThat_cacheCanBeDisabled() {
+    CacheConfiguration config = new CacheConfiguration();
+    config.setEnabled(false);
+    cache = new LayoutCache(objectMapper, config, new SimpleMeterRegistry());
+
+    cache.get(collection("anId", Instant.ofEpochMilli(1)), type("aView"), this::layout);
+    cache.get(collection("anId", Instant.ofEpochMilli(1)), type("aView"), this::layout);
+
+    assertThat(layouts.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testThat_latestStateIsPassedToIncrementalLayouts() {
+    List<LayoutState> seen = new ArrayList<>();
+    List<LayoutState> produced = new ArrayList<>();
+
+    for (long version : new long[]{2, 1, 3}) {
+      Collection c = collection("anId", Instant.ofEpochMilli(version));
+      cache.getIncrementally(c, type("aView"), (previous, nextState) -> {
+        seen.add(previous);
+        LayoutState state = new LayoutState(c, Collections.emptyMap());
+        produced.add(state);
+        nextState.accept(state);
+        return layout();
+      });
+    }
+
+    // the state of an older version does not replace the one of a newer version
+    assertThat(seen).containsExactly(null, produced.get(0), produced.get(0));
+  }
+
+  private CollectionLayout layout() {
+    layouts.incrementAndGet();
+    return new CollectionLayout();
+  }
+
+  private CollectionLayout failedLayout() {
+    CollectionLayout layout = layout();
+    layout.getViewLayouts().put("aView", new ViewLayout("aView", "Failed to lay out view: timeout"));
+    return layout;
+  }
+
+  private static Collection collection(final String id, final Instant versionTimestamp) {
+    Collection c = new Collection();
+    c.setId(id);
+    c.setVersionTimestamp(versionTimestamp);
+    return c;
+  }
+
+  private static CollectionType type(final String viewName) {
+    CollectionType t = new CollectionType();
+    t.setId("aType");
+
+    View v = new View();
+    v.setName(viewName);
+    t.getViews().add(v);
+
+    return t;
+  }
+}
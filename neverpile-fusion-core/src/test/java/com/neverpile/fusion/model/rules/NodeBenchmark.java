@@ -0,0 +1,75 @@
+package com.neverpile.fusion.model.rules;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Builds view trees the way element rules do: one path per element, looking up every path segment
+ * by name. With a linear child lookup, building a flat tree took time quadratic in the number of
+ * nodes.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NodeBenchmark {
+  @Param({
+      "1000", "10000", "100000"
+  })
+  public int nodes;
+
+  /**
+   * All nodes below a single parent.
+   */
+  @Benchmark
+  public Node flat() {
+    Node root = new Node();
+    for (int i = 0; i < nodes; i++)
+      root.createPath("All", "n" + i);
+    return root;
+  }
+
+  /**
+   * Nodes spread over a hundred groups, each looked up once per node.
+   */
+  @Benchmark
+  public Node grouped() {
+    Node root = new Node();
+    for (int i = 0; i < nodes; i++)
+      root.createPath("By group", "Group " + i % 100, "n" + i);
+    return root;
+  }
+
+  /**
+   * Build a flat tree, then sort it the way tree rules do and look up every node once more.
+   */
+  @Benchmark
+  public Node flatSortedAndRevisited() {
+    Node root = flat();
+    root.findChild("All").getChildren().sort((a, b) -> b.getName().compareTo(a.getName()));
+    for (int i = 0; i < nodes; i++)
+      root.findNode("All", "n" + i);
+    return root;
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(NodeBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,85 @@
+package com.neverpile.fusion.model.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class NodeTest {
+  @Test
+  public void testThat_childrenAreFoundByName() {
+    Node root = new Node();
+    Node a = root.createChild("a");
+    Node b = root.createChild("b");
+
+    assertThat(root.createChild("a")).isSameAs(a);
+    assertThat(root.findChild("b")).isSameAs(b);
+    assertThat(root.findChild("c")).isNull();
+    assertThat(root.getChildren()).containsExactly(a, b);
+  }
+
+  @Test
+  public void testThat_indexFollowsListModifications() {
+    Node root = new Node();
+    Node a = root.createChild("a");
+    Node b = root.createChild("b");
+
+    root.getChildren().remove(a);
+    assertThat(root.findChild("a")).isNull();
+
+    Node otherB = new Node();
+    otherB.setName("b");
+    root.getChildren().add(0, otherB);
+    assertThat(root.findChild("b")).isSameAs(otherB);
+
+    root.getChildren().sort(Comparator.comparing(n -> n == b ? 0 : 1));
+    assertThat(root.findChild("b")).isSameAs(b);
+
+    root.getChildren().clear();
+    assertThat(root.findChild("b")).isNull();
+  }
+
+  @Test
+  public void testThat_indexFollowsRenames() {
+    Node root = new Node();
+    Node a = root.createChild("a");
+
+    a.setName("renamed");
+
+    assertThat(root.findChild("a")).isNull();
+    assertThat(root.createChild("renamed")).isSameAs(a);
+  }
+
+  @Test
+  public void testThat_setChildrenReplacesTheIndex() {
+    Node root = new Node();
+    root.createChild("a");
+
+    Node b = new Node();
+    b.setName("b");
+    root.setChildren(Arrays.asList(b));
+
+    assertThat(root.findChild("a")).isNull();
+    assertThat(root.findChild("b")).isSameAs(b);
+  }
+
+  @Test
+  public void testThat_indexSurvivesJsonRoundTrip() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+
+    Node root = new Node();
+    root.createPath("a", "b");
+    root.createChild("c");
+
+    String json = mapper.writeValueAsString(root);
+    Node read = mapper.readValue(json, Node.class);
+
+    assertThat(read.getChildren()).extracting(Node::getName).containsExactly("a", "c");
+    assertThat(read.findNode("a", "b")).isNotNull();
+    assertThat(mapper.writeValueAsString(read)).isEqualTo(json);
+  }
+}
@@ -0,0 +1,133 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.spec.Artifact;
+
+/**
+ * Measures the cost of exposing a collection to the rules: serializing it to JSON and evaluating
+ * the result as JavaScript source (as done before) vs. binding the shallow {@link JSCollection}
+ * bridge which is converted lazily. Both variants touch the tags and the metadata of each element,
+ * like a typical element rule would.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollectionExposureBenchmark {
+  private static final String TOUCH_ELEMENTS = "collection.elements.forEach(function (e) { e.tags; e.metadata.foo; })";
+
+  private static final String INIT_FROM_JSON = "_cd(collection); collection.elements.forEach(_cd);"
+      + "function _cd(o) { o.dateCreated = new Date(o.dateCreated); o.dateModified = new Date(o.dateModified); }";
+
+  @Param({
+      "10", "100", "1000"
+  })
+  public int elements;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules() //
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+  private ScriptEngine engine;
+
+  private CompiledScript runtime;
+
+  private Collection collection;
+
+  @Setup
+  public void setup() throws ScriptException, IOException {
+    engine = new ScriptEngineManager().getEngineByName("JavaScript");
+
+    try (Reader r = new InputStreamReader(JavascriptViewLayoutEngine.class.getResourceAsStream("LayoutEngine.js"),
+        StandardCharsets.UTF_8)) {
+      runtime = ((Compilable) engine).compile(r);
+    }
+
+    collection = new Collection();
+    collection.setId("aCollection");
+    collection.setTypeId("aType");
+    collection.setVersionTimestamp(Instant.now());
+    collection.setDateCreated(Instant.now());
+    collection.setDateModified(Instant.now());
+    collection.setMetadata(objectMapper.createObjectNode().put("title", "A collection"));
+
+    for (int i = 0; i < elements; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      e.setDateCreated(Instant.now());
+      e.setDateModified(Instant.now());
+      e.setTags(Arrays.asList("foo", "bar"));
+      e.setMetadata(objectMapper.createObjectNode().put("foo", "bar" + i).put("index", i));
+
+      Artifact a = new Artifact();
+      a.setContentURI("text:collection:from://some/where" + i);
+      e.setSpecification(a);
+
+      collection.getElements().add(e);
+    }
+  }
+
+  @Benchmark
+  public Object jsonRoundTrip() throws ScriptException, IOException {
+    Bindings bindings = engine.createBindings();
+    runtime.eval(bindings);
+
+    engine.eval("var collection = " + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(collection),
+        bindings);
+    engine.eval(INIT_FROM_JSON, bindings);
+
+    return engine.eval(TOUCH_ELEMENTS, bindings);
+  }
+
+  @Benchmark
+  public Object bridge() throws ScriptException {
+    Bindings bindings = engine.createBindings();
+    runtime.eval(bindings);
+
+    bindings.put("_jsCollection", JSCollection.of(collection));
+    bindings.put("_objectMapper", objectMapper);
+    engine.eval("_initCollection()", bindings);
+
+    return engine.eval(TOUCH_ELEMENTS, bindings);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(CollectionExposureBenchmark.class.getSimpleName()).build()).run();
+  }
+}
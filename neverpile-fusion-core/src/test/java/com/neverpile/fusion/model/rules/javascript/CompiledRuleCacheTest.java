@@ -0,0 +1,109 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.View;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CompiledRuleCacheTest {
+  private SimpleMeterRegistry registry;
+
+  private CompiledRuleCache<CompiledScript> cache;
+
+  @BeforeEach
+  public void init() {
+    registry = new SimpleMeterRegistry();
+    Compilable compiler = (Compilable) new ScriptEngineManager().getEngineByName("JavaScript");
+    cache = new CompiledRuleCache<>(rule -> compiler.compile(rule.getScriptCode()), registry);
+  }
+
+  @Test
+  public void testThat_compiledRulesAreReused() throws ScriptException {
+    JavascriptRule rule = rule("aRule", "var x = 1;");
+    CollectionType type = type("aType", rule);
+
+    cache.validate(type);
+    CompiledScript first = cache.get(type, rule);
+    CompiledScript second = cache.get(type, rule("aRule", "var x = 1;"));
+
+    assertThat(second).isSameAs(first);
+    assertThat(count("miss")).isEqualTo(1);
+    assertThat(count("hit")).isEqualTo(1);
+  }
+
+  @Test
+  public void testThat_rulesWithSameNameButDifferentCodeAreDistinguished() throws ScriptException {
+    JavascriptRule r1 = rule("aRule", "var x = 1;");
+    JavascriptRule r2 = rule("aRule", "var x = 2;");
+    CollectionType type = type("aType", r1, r2);
+
+    cache.validate(type);
+
+    assertThat(cache.get(type, r1)).isNotSameAs(cache.get(type, r2));
+    assertThat(count("miss")).isEqualTo(2);
+  }
+
+  @Test
+  public void testThat_changedTypeEvictsCompiledRules() throws ScriptException {
+    JavascriptRule rule = rule("aRule", "var x = 1;");
+    CollectionType type = type("aType", rule);
+
+    cache.validate(type);
+    CompiledScript first = cache.get(type, rule);
+
+    // unchanged type: no eviction
+    cache.validate(type("aType", rule("aRule", "var x = 1;")));
+    assertThat(cache.get(type, rule)).isSameAs(first);
+
+    // changed type: evicted
+    CollectionType changed = type("aType", rule, rule("anotherRule", "var y = 1;"));
+    cache.validate(changed);
+    assertThat(cache.get(changed, rule)).isNotSameAs(first);
+    assertThat(registry.get("fusion.collection.layout.script-cache.evictions").counter().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void testThat_explicitEvictionDropsCompiledRules() throws ScriptException {
+    JavascriptRule rule = rule("aRule", "var x = 1;");
+    CollectionType type = type("aType", rule);
+
+    CompiledScript first = cache.get(type, rule);
+    cache.evict("aType");
+
+    assertThat(cache.get(type, rule)).isNotSameAs(first);
+  }
+
+  private double count(final String result) {
+    return registry.get("fusion.collection.layout.script-cache").tag("result", result).counter().count();
+  }
+
+  private static JavascriptRule rule(final String name, final String code) {
+    JavascriptRule rule = new JavascriptRule();
+    rule.setName(name);
+    rule.setScriptCode(code);
+    return rule;
+  }
+
+  private static CollectionType type(final String id, final JavascriptRule... elementRules) {
+    CollectionType type = new CollectionType();
+    type.setId(id);
+
+    View view = new View();
+    view.setName("Default");
+    for (JavascriptRule rule : elementRules)
+      view.getElementRules().add(rule);
+    type.getViews().add(view);
+
+    return type;
+  }
+}
@@ -0,0 +1,136 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutConfiguration;
+import com.neverpile.fusion.configuration.LayoutConfiguration.EngineType;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.Node;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GraalLayoutEngineTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private JavascriptViewLayoutEngine engine;
+
+  @BeforeEach
+  public void init() {
+    LayoutConfiguration config = new LayoutConfiguration();
+    config.setEngine(EngineType.GRAAL);
+    engine = new JavascriptViewLayoutEngine(objectMapper, config, new SimpleMeterRegistry());
+  }
+
+  @AfterEach
+  public void shutdown() {
+    engine.shutdown();
+  }
+
+  @Test
+  public void testThat_rulesAreApplied() throws JSONException, IOException {
+    CollectionType t = type(
+        "createElementNode(element, 'By tag', element.tags[0]).withVisualization('html', greet(element.metadata.foo));",
+        "titleVisualization('html', collection.metadata.title + ' (' + collection.createdBy + ')');");
+
+    CollectionLayout layout = engine.layoutTree(collection(), t);
+
+    //@formatter:off
+    JSONAssert.assertEquals("{"
+        + "  \"collectionTypeId\" : \"aCollectionType\","
+        + "  \"titleVisualization\" : { \"html\" : \"Hello (user)\" },"
+        + "  \"viewLayouts\" : {"
+        + "    \"Default\" : {"
+        + "      \"structureTree\" : {"
+        + "        \"name\" : \"root\","
+        + "        \"children\" : [ {"
+        + "          \"name\" : \"By tag\","
+        + "          \"children\" : [ {"
+        + "            \"name\" : \"foo\","
+        + "            \"children\" : [ {"
+        + "              \"name\" : \"anElementId\","
+        + "              \"elementId\" : \"anElementId\","
+        + "              \"visualization\" : { \"html\" : \"Hello, bar1\" }"
+        + "            } ]"
+        + "          } ]"
+        + "        } ]"
+        + "      }"
+        + "    }"
+        + "  }"
+        + "}", objectMapper.writeValueAsString(layout), JSONCompareMode.LENIENT);
+    //@formatter:on
+  }
+
+  @Test
+  public void testThat_scriptObjectsAreDetachedFromTheContext() throws IOException {
+    CollectionType t = type("createNode('a').withProperty('p', { s: 'x', n: 1, l: [1, 'two'], o: { b: true } });");
+
+    CollectionLayout layout = engine.layoutTree(collection(), t);
+
+    Node a = layout.getViewLayouts().get("Default").getStructureTree().findChild("a");
+    assertThat(a.getProperties().get("p")).isEqualTo(objectMapper.readValue(
+        "{\"s\":\"x\",\"n\":1,\"l\":[1,\"two\"],\"o\":{\"b\":true}}", Object.class));
+  }
+
+  @Test
+  public void testThat_globalsDoNotLeakBetweenLayouts() {
+    CollectionType t = type("createNode(typeof leaked);", "leaked = true;");
+
+    engine.layoutTree(collection(), t);
+    CollectionLayout layout = engine.layoutTree(collection(), t);
+
+    assertThat(layout.getViewLayouts().get("Default").getStructureTree().findChild("undefined")).isNotNull();
+  }
+
+  private CollectionType type(final String... elementRules) {
+    CollectionType t = new CollectionType();
+    t.setId("aCollectionType");
+
+    JavascriptRule greeter = new JavascriptRule();
+    greeter.setName("define greeter");
+    greeter.setScriptCode("function greet(x) { return 'Hello, ' + x; }");
+    t.getGlobalRules().add(greeter);
+
+    View v = new View();
+    v.setName("Default");
+    for (int i = 0; i < elementRules.length; i++) {
+      JavascriptRule r = new JavascriptRule();
+      r.setName("rule " + i);
+      r.setScriptCode(elementRules[i]);
+      v.getElementRules().add(r);
+    }
+    t.getViews().add(v);
+
+    return t;
+  }
+
+  private Collection collection() {
+    Collection c = new Collection();
+    c.setId("anId");
+    c.setTypeId("aCollectionType");
+    c.setCreatedBy("user");
+    c.setMetadata(objectMapper.createObjectNode().put("title", "Hello"));
+
+    Element e = new Element();
+    e.setId("anElementId");
+    e.setTags(Arrays.asList("foo", "bar"));
+    e.setMetadata(objectMapper.createObjectNode().put("foo", "bar1"));
+    c.getElements().add(e);
+
+    return c;
+  }
+}
@@ -0,0 +1,110 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Lays out large collections through a collection type with several views, each of which maps
+ * every element to a node. Before elements were looked up in constant time, the layout time grew
+ * quadratically with the number of elements.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LargeCollectionLayoutBenchmark {
+  @Param({
+      "1000", "10000"
+  })
+  public int elements;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private JavascriptViewLayoutEngine engine;
+
+  private CollectionType type;
+
+  private Collection collection;
+
+  @Setup
+  public void setup() {
+    engine = new JavascriptViewLayoutEngine(objectMapper, new LayoutConfiguration(), new SimpleMeterRegistry());
+
+    type = new CollectionType();
+    type.setId("aType");
+    type.getViews().add(view("By element", "createElementNode(element);"));
+    type.getViews().add(view("By tag",
+        "tags.forEach(function (t) { createNode('By tag', t).createElementNode(element); });"));
+    type.getViews().add(view("By group",
+        "createNode('Group ' + element.metadata.group).withElement(element);"));
+
+    collection = new Collection();
+    collection.setId("aCollection");
+    collection.setTypeId("aType");
+    for (int i = 0; i < elements; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      e.setDateCreated(Instant.now());
+      e.setDateModified(Instant.now());
+      e.setTags(Arrays.asList("tag-" + i % 10, "tag-" + i % 7));
+      e.setMetadata(objectMapper.createObjectNode().put("group", i % 100));
+      collection.getElements().add(e);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    engine.shutdown();
+  }
+
+  @Benchmark
+  public CollectionLayout layout() {
+    return engine.layoutTree(collection, type);
+  }
+
+  private static View view(final String name, final String elementRule) {
+    JavascriptRule rule = new JavascriptRule();
+    rule.setName(name);
+    rule.setScriptCode(elementRule);
+
+    View view = new View();
+    view.setName(name);
+    view.getElementRules().add(rule);
+    return view;
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(LargeCollectionLayoutBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -1,9 +1,14 @@
 package com.neverpile.fusion.model.rules.javascript;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.json.JSONException;
 import org.junit.jupiter.api.Test;
@@ -20,17 +25,22 @@ import org.springframework.util.StreamUtils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.configuration.LayoutConfiguration;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.Collection.State;
 import com.neverpile.fusion.model.CollectionType;
 import com.neverpile.fusion.model.Element;
 import com.neverpile.fusion.model.View;
 import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.LayoutState;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.ViewLayout;
 import com.neverpile.fusion.model.spec.Artifact;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest(webEnvironment = WebEnvironment.NONE, classes = {
-    JacksonAutoConfiguration.class, JacksonConfiguration.class, JavascriptViewLayoutEngine.class
+    JacksonAutoConfiguration.class, JacksonConfiguration.class, LayoutConfiguration.class,
+    JavascriptViewLayoutEngine.class
 })
 public class LayoutEngineTest {
   @Autowired
@@ -122,6 +132,253 @@ public class LayoutEngineTest {
         JSONCompareMode.LENIENT);
   }
 
+  @Test
+  public void testThat_collectionIsExposedLikeItsJsonRepresentation() throws JSONException, IOException {
+    CollectionType t = new CollectionType();
+    t.setId("aCollectionType");
+
+    View v1 = new View();
+    v1.setName("Default");
+    t.getViews().add(v1);
+
+    JavascriptRule r1 = new JavascriptRule();
+    r1.setName("expose collection properties");
+    r1.setScriptCode("titleVisualization('collection', [collection.id, collection.typeId, collection.versionTimestamp, "
+        + "collection.state, collection.createdBy, collection.dateCreated.getTime(), collection.metadata.foo].join('|'));");
+    t.getGlobalRules().add(r1);
+
+    JavascriptRule r2 = new JavascriptRule();
+    r2.setName("expose element properties");
+    r2.setScriptCode("if (element.id == 'anElementId') createElementNode(element)"
+        + ".withProperty('spec', element.specification.type + '|' + element.specification.contentURI)"
+        + ".withProperty('tags', tags.join(','))"
+        + ".withProperty('modified', element.dateModified.toISOString())"
+        + ".withProperty('metadata', JSON.stringify(element.metadata));");
+    v1.getElementRules().add(r2);
+
+    Collection c = createTestCollection();
+    c.getElements().get(0).setMetadata(objectMapper.createObjectNode().put("s", "x").put("i", 1).put("d", 1.5)
+        .put("b", true).putNull("n").set("a", objectMapper.createArrayNode().add(1).add("two")));
+
+    CollectionLayout root = engine.layoutTree(c, t);
+
+    String s = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+
+    //@formatter:off
+    JSONAssert.assertEquals("{"
+        + "  \"titleVisualization\" : {"
+        + "    \"collection\" : \"anId|aCollectionType|1970-01-01T00:00:00.001Z|Active|user|1|bar\""
+        + "  },"
+        + "  \"viewLayouts\" : {"
+        + "    \"Default\" : {"
+        + "      \"structureTree\" : {"
+        + "        \"children\" : [ {"
+        + "          \"name\" : \"anElementId\","
+        + "          \"properties\" : {"
+        + "            \"spec\" : \"artifact|text:collection:from://some/where1\","
+        + "            \"tags\" : \"foo,bar\","
+        + "            \"modified\" : \"1970-01-01T00:00:04.711Z\","
+        + "            \"metadata\" : \"{\\\"s\\\":\\\"x\\\",\\\"i\\\":1,\\\"d\\\":1.5,\\\"b\\\":true,\\\"n\\\":null,\\\"a\\\":[1,\\\"two\\\"]}\""
+        + "          }"
+        + "        } ]"
+        + "      }"
+        + "    }"
+        + "  }"
+        + "}", s, JSONCompareMode.LENIENT);
+    //@formatter:on
+  }
+
+  @Test
+  public void testThat_viewsAreLaidOutInIsolatedScopesSeededByGlobalRules() throws JSONException, IOException {
+    CollectionType t = new CollectionType();
+    t.setId("aCollectionType");
+
+    JavascriptRule g = new JavascriptRule();
+    g.setName("init counter");
+    g.setScriptCode("var counter = 0;");
+    t.getGlobalRules().add(g);
+
+    for (String name : Arrays.asList("A", "B", "C", "D")) {
+      View v = new View();
+      v.setName(name);
+
+      JavascriptRule r = new JavascriptRule();
+      r.setName("count");
+      r.setScriptCode("createNode('n' + (++counter)); titleVisualization('last', '" + name + "');");
+      v.getElementRules().add(r);
+
+      t.getViews().add(v);
+    }
+
+    CollectionLayout root = engine.layoutTree(createTestCollection(), t);
+
+    String s = objectMapper.writeValueAsString(root);
+
+    String view = "{ \"structureTree\" : { \"children\" : [ { \"name\" : \"n1\" }, { \"name\" : \"n2\" }, "
+        + "{ \"name\" : \"n3\" } ] } }";
+
+    JSONAssert.assertEquals("{"
+        + "  \"titleVisualization\" : { \"last\" : \"D\" },"
+        + "  \"viewLayouts\" : { \"A\" : " + view + ", \"B\" : " + view + ", \"C\" : " + view + ", \"D\" : " + view + " }"
+        + "}", s, JSONCompareMode.LENIENT);
+  }
+
+  @Test
+  public void testThat_viewsCanBeStreamed() {
+    CollectionType t = makeTestType();
+
+    List<ViewLayout> streamed = new ArrayList<>();
+    CollectionLayout rest = engine.layoutTree(createTestCollection(), t, streamed::add);
+    CollectionLayout full = engine.layoutTree(createTestCollection(), t);
+
+    assertThat(streamed).extracting(ViewLayout::getView).containsExactly("Default", "Error");
+    assertThat(rest.getViewLayouts()).isEmpty();
+    assertThat(rest.getTitleVisualization()).isEqualTo(full.getTitleVisualization());
+  }
+
+  @Test
+  public void testThat_incrementalLayoutEqualsFullLayout() throws JSONException, IOException {
+    CollectionType t = makeTestType();
+
+    AtomicReference<LayoutState> state = new AtomicReference<>();
+    engine.layoutIncrementally(createTestCollection(), t, null, state::set);
+
+    Collection changed = createTestCollection();
+    changed.setVersionTimestamp(Instant.ofEpochMilli(2));
+    changed.getElements().get(0).setDateModified(Instant.ofEpochMilli(4712));
+    changed.getElements().get(0).setTags(Arrays.asList("yada"));
+    changed.getElements().remove(1);
+
+    String incremental = objectMapper.writeValueAsString(engine.layoutIncrementally(changed, t, state.get(), s -> {
+    }));
+    String full = objectMapper.writeValueAsString(engine.layoutTree(changed, t));
+
+    JSONAssert.assertEquals(full, incremental, JSONCompareMode.STRICT);
+  }
+
+  @Test
+  public void testThat_incrementalLayoutOnlyRerunsChangedElements() {
+    CollectionType t = new CollectionType();
+    t.setId("aCollectionType");
+
+    View v1 = new View();
+    v1.setName("Default");
+    t.getViews().add(v1);
+
+    JavascriptRule r = new JavascriptRule();
+    r.setName("mark each run");
+    r.setScriptCode(
+        "createNode(element.id + '@' + element.dateModified.getTime()).withProperty('run', Math.random());");
+    v1.getElementRules().add(r);
+
+    // the first layout creates the fragments, the second one reuses all of them
+    AtomicReference<LayoutState> state = new AtomicReference<>();
+    engine.layoutIncrementally(createTestCollection(), t, null, state::set);
+    Node before = engine.layoutIncrementally(createTestCollection(), t, state.get(), state::set) //
+        .getViewLayouts().get("Default").getStructureTree();
+
+    Collection changed = createTestCollection();
+    changed.setVersionTimestamp(Instant.ofEpochMilli(2));
+    changed.getElements().get(0).setDateModified(Instant.ofEpochMilli(4712));
+
+    Node after = engine.layoutIncrementally(changed, t, state.get(), state::set) //
+        .getViewLayouts().get("Default").getStructureTree();
+
+    assertThat(after.getChildren()).extracting(Node::getName) //
+        .containsExactly("anElementId@4712", "anotherElementId@815", "anotherElementId@42");
+    assertThat(run(after, "anotherElementId@815")).isEqualTo(run(before, "anotherElementId@815"));
+    assertThat(run(after, "anotherElementId@42")).isEqualTo(run(before, "anotherElementId@42"));
+
+    // opting out forces all elements to be laid out again
+    r.setIncremental(false);
+    Node optedOut = engine.layoutIncrementally(changed, t, state.get(), s -> {
+    }).getViewLayouts().get("Default").getStructureTree();
+
+    assertThat(run(optedOut, "anotherElementId@815")).isNotEqualTo(run(after, "anotherElementId@815"));
+
+    // changed collection metadata invalidates the state
+    r.setIncremental(true);
+    changed.setMetadata(objectMapper.createObjectNode().put("foo", "baz"));
+    Node rerun = engine.layoutIncrementally(changed, t, state.get(), s -> {
+    }).getViewLayouts().get("Default").getStructureTree();
+
+    assertThat(run(rerun, "anotherElementId@815")).isNotEqualTo(run(after, "anotherElementId@815"));
+  }
+
+  @Test
+  public void testThat_incrementalLayoutEqualsFullLayoutForRulesReadingTheTree() throws JSONException, IOException {
+    CollectionType t = new CollectionType();
+    t.setId("aCollectionType");
+
+    View v1 = new View();
+    v1.setName("Default");
+    t.getViews().add(v1);
+
+    JavascriptRule r = new JavascriptRule();
+    r.setName("number the elements and toggle the expansion");
+    r.setScriptCode("var all = createNode('All');" //
+        + "all.createNode('Element ' + all.children.size()).withElement(element);" //
+        + "if (all.children.size() % 2 == 1) all.initiallyExpanded(); else all.initiallyCollapsed();");
+    v1.getElementRules().add(r);
+
+    // without a previous state, the tree is built just like by a full layout
+    AtomicReference<LayoutState> state = new AtomicReference<>();
+    String incremental = objectMapper.writeValueAsString(
+        engine.layoutIncrementally(createTestCollection(), t, null, state::set));
+    String full = objectMapper.writeValueAsString(engine.layoutTree(createTestCollection(), t));
+
+    JSONAssert.assertEquals(full, incremental, JSONCompareMode.STRICT);
+
+    // the rule depends on the tree built so far, so it must opt out of reusing fragments
+    r.setIncremental(false);
+
+    Collection changed = createTestCollection();
+    changed.setVersionTimestamp(Instant.ofEpochMilli(2));
+    changed.getElements().remove(1);
+
+    incremental = objectMapper.writeValueAsString(engine.layoutIncrementally(changed, t, state.get(), s -> {
+    }));
+    full = objectMapper.writeValueAsString(engine.layoutTree(changed, t));
+
+    JSONAssert.assertEquals(full, incremental, JSONCompareMode.STRICT);
+  }
+
+  @Test
+  public void testThat_mergedFragmentsKeepTheLastExpansion() throws JSONException, IOException {
+    CollectionType t = new CollectionType();
+    t.setId("aCollectionType");
+
+    View v1 = new View();
+    v1.setName("Default");
+    t.getViews().add(v1);
+
+    JavascriptRule r = new JavascriptRule();
+    r.setName("expand for the first element only");
+    r.setScriptCode("var all = createNode('All');" //
+        + "if (element.id == 'anElementId') all.initiallyExpanded(); else all.initiallyCollapsed();");
+    v1.getElementRules().add(r);
+
+    AtomicReference<LayoutState> state = new AtomicReference<>();
+    engine.layoutIncrementally(createTestCollection(), t, null, state::set);
+
+    Collection changed = createTestCollection();
+    changed.setVersionTimestamp(Instant.ofEpochMilli(2));
+    changed.getElements().get(0).setDateModified(Instant.ofEpochMilli(4712));
+
+    CollectionLayout incremental = engine.layoutIncrementally(changed, t, state.get(), s -> {
+    });
+    CollectionLayout full = engine.layoutTree(changed, t);
+
+    assertThat(incremental.getViewLayouts().get("Default").getStructureTree().findChild("All") //
+        .isInitiallyExpanded()).isFalse();
+    JSONAssert.assertEquals(objectMapper.writeValueAsString(full), objectMapper.writeValueAsString(incremental),
+        JSONCompareMode.STRICT);
+  }
+
+  private static Object run(final Node root, final String name) {
+    return root.findChild(name).getProperties().get("run");
+  }
+
   private CollectionType makeTestType() {
     CollectionType t = new CollectionType();
 
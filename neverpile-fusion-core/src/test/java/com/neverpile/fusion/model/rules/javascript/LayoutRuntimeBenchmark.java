@@ -0,0 +1,81 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the per-layout cost of setting up the scripting support library
+ * <code>LayoutEngine.js</code>: evaluating it from source (as done before) vs. instantiating the
+ * version compiled at engine startup.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutRuntimeBenchmark {
+  private ScriptEngine engine;
+
+  private CompiledScript runtime;
+
+  @Setup
+  public void setup() throws ScriptException, IOException {
+    engine = new ScriptEngineManager().getEngineByName("JavaScript");
+
+    try (Reader r = openRuntime()) {
+      runtime = ((Compilable) engine).compile(r);
+    }
+  }
+
+  @Benchmark
+  public Bindings evaluateFromSource() throws ScriptException, IOException {
+    Bindings bindings = engine.createBindings();
+    try (Reader r = openRuntime()) {
+      engine.eval(r, bindings);
+    }
+    return bindings;
+  }
+
+  @Benchmark
+  public Bindings instantiateCompiled() throws ScriptException {
+    Bindings bindings = engine.createBindings();
+    runtime.eval(bindings);
+    return bindings;
+  }
+
+  private Reader openRuntime() {
+    return new InputStreamReader(JavascriptViewLayoutEngine.class.getResourceAsStream("LayoutEngine.js"),
+        StandardCharsets.UTF_8);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(LayoutRuntimeBenchmark.class.getSimpleName()).build()).run();
+  }
+}
@@ -0,0 +1,151 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutConfiguration;
+import com.neverpile.fusion.configuration.LayoutConfiguration.EngineType;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.javascript.RuleProfile.RuleCost;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RuleBudgetTest {
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private JavascriptViewLayoutEngine engine;
+
+  @AfterEach
+  public void shutdown() {
+    if (null != engine)
+      engine.shutdown();
+  }
+
+  @Test
+  public void testThat_ruleExecutionsAreTimed() {
+    engine = engine(new LayoutConfiguration());
+
+    engine.layoutTree(collection(3), type("createElementNode(element);"));
+
+    Timer timer = registry.find("fusion.collection.layout.rule") //
+        .tags("rule", "aRule", "view", "Default", "type", "aCollectionType") //
+        .timer();
+    assertThat(timer).isNotNull();
+    assertThat(timer.count()).isEqualTo(3);
+  }
+
+  @Test
+  public void testThat_profileBreaksDownCostPerRule() {
+    engine = engine(new LayoutConfiguration());
+
+    CollectionType type = type("createElementNode(element);");
+    JavascriptRule global = new JavascriptRule();
+    global.setName("aGlobalRule");
+    global.setScriptCode("var x = 1;");
+    type.getGlobalRules().add(global);
+
+    RuleProfile profile = engine.profile(collection(5), type);
+
+    assertThat(profile.getRules()).extracting(RuleCost::getRule, RuleCost::getPhase, RuleCost::getExecutions) //
+        .containsExactlyInAnyOrder( //
+            tuple("aRule", "element", 5L),
+            tuple("aGlobalRule", "global", 1L));
+    assertThat(profile.getErrors()).isEmpty();
+  }
+
+  @Test
+  public void testThat_runawayRulesAreCancelledByGraal() {
+    LayoutConfiguration config = new LayoutConfiguration();
+    config.setEngine(EngineType.GRAAL);
+    config.getBudget().setCpuTime(Duration.ofMillis(100));
+    engine = engine(config);
+
+    CollectionLayout layout = engine.layoutTree(collection(1), type("while (true) {}"));
+
+    assertThat(layout.getViewLayouts().get("Default").getError()).contains("CPU time budget of 100ms exceeded");
+  }
+
+  @Test
+  public void testThat_statementBudgetIsEnforcedByGraal() {
+    LayoutConfiguration config = new LayoutConfiguration();
+    config.setEngine(EngineType.GRAAL);
+    config.getBudget().setStatements(1000);
+    engine = engine(config);
+
+    CollectionLayout cheap = engine.layoutTree(collection(3), type("for (var i = 0; i < 10; i++) {}"));
+    assertThat(cheap.getViewLayouts().get("Default").getError()).isNull();
+
+    CollectionLayout expensive = engine.layoutTree(collection(1), type("for (var i = 0; i < 100000; i++) {}"));
+    assertThat(expensive.getViewLayouts().get("Default").getError()).contains("Statement budget of 1000 exceeded");
+  }
+
+  @Test
+  public void testThat_runawayRulesAreCancelledByDefaultEngine() {
+    LayoutConfiguration config = new LayoutConfiguration();
+    config.getBudget().setCpuTime(Duration.ofMillis(100));
+    engine = engine(config);
+
+    CollectionLayout layout = engine.layoutTree(collection(1), type("while (true) {}"));
+
+    assertThat(layout.getViewLayouts().get("Default").getError()).contains("CPU time budget of 100ms exceeded");
+  }
+
+  @Test
+  public void testThat_jsr223EngineRejectsBudgets() {
+    LayoutConfiguration cpuTime = new LayoutConfiguration();
+    cpuTime.setEngine(EngineType.JSR223);
+    cpuTime.getBudget().setCpuTime(Duration.ofMillis(100));
+    assertThrows(IllegalStateException.class, () -> engine(cpuTime));
+
+    LayoutConfiguration statements = new LayoutConfiguration();
+    statements.setEngine(EngineType.JSR223);
+    statements.getBudget().setStatements(1000);
+    assertThrows(IllegalStateException.class, () -> engine(statements));
+  }
+
+  private JavascriptViewLayoutEngine engine(final LayoutConfiguration config) {
+    return new JavascriptViewLayoutEngine(objectMapper, config, registry);
+  }
+
+  private static CollectionType type(final String elementRule) {
+    CollectionType t = new CollectionType();
+    t.setId("aCollectionType");
+
+    View v = new View();
+    v.setName("Default");
+    t.getViews().add(v);
+
+    JavascriptRule r = new JavascriptRule();
+    r.setName("aRule");
+    r.setScriptCode(elementRule);
+    v.getElementRules().add(r);
+
+    return t;
+  }
+
+  private static Collection collection(final int elements) {
+    Collection c = new Collection();
+    c.setId("anId");
+    c.setTypeId("aCollectionType");
+    for (int i = 0; i < elements; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      c.getElements().add(e);
+    }
+    return c;
+  }
+}
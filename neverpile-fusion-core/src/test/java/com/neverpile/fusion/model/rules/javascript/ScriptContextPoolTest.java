@@ -0,0 +1,131 @@
+package com.neverpile.fusion.model.rules.javascript;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.neverpile.fusion.model.rules.LayoutEngineSaturatedException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ScriptContextPoolTest {
+  private SimpleMeterRegistry registry;
+
+  private AtomicInteger created;
+
+  private ScriptContextPool<Integer> pool;
+
+  @BeforeEach
+  public void init() {
+    registry = new SimpleMeterRegistry();
+    created = new AtomicInteger();
+    pool = new ScriptContextPool<>(2, Duration.ofMillis(50), created::incrementAndGet, registry);
+  }
+
+  @Test
+  public void testThat_contextsAreReused() {
+    Integer first;
+    try (ScriptContextPool.Lease<Integer> lease = pool.checkout()) {
+      first = lease.get();
+    }
+    try (ScriptContextPool.Lease<Integer> lease = pool.checkout()) {
+      assertThat(lease.get()).isEqualTo(first);
+    }
+
+    assertThat(created.get()).isEqualTo(1);
+    assertThat(registry.get("fusion.collection.layout.pool.checkout").timer().count()).isEqualTo(2);
+    assertThat(registry.get("fusion.collection.layout.pool.usage").timer().count()).isEqualTo(2);
+  }
+
+  @Test
+  public void testThat_poolIsBounded() {
+    try (ScriptContextPool.Lease<Integer> l1 = pool.checkout();
+        ScriptContextPool.Lease<Integer> l2 = pool.checkout()) {
+      assertThat(l1.get()).isNotEqualTo(l2.get());
+      assertThat(registry.get("fusion.collection.layout.pool.active").gauge().value()).isEqualTo(2);
+
+      assertThatThrownBy(pool::checkout).isInstanceOf(LayoutEngineSaturatedException.class);
+      assertThat(registry.get("fusion.collection.layout.pool.timeouts").counter().count()).isEqualTo(1);
+    }
+
+    assertThat(created.get()).isEqualTo(2);
+    assertThat(registry.get("fusion.collection.layout.pool.active").gauge().value()).isEqualTo(0);
+    assertThat(registry.get("fusion.collection.layout.pool.waiting").gauge().value()).isEqualTo(0);
+  }
+
+  @Test
+  public void testThat_leaseIsReturnedOnlyOnce() {
+    ScriptContextPool.Lease<Integer> lease = pool.checkout();
+    lease.close();
+    lease.close();
+
+    assertThat(registry.get("fusion.collection.layout.pool.active").gauge().value()).isEqualTo(0);
+    assertThat(registry.get("fusion.collection.layout.pool.usage").timer().count()).isEqualTo(1);
+  }
+
+  @Test
+  public void testThat_discardedContextsAreDisposedAndReplaced() {
+    List<Integer> disposed = new ArrayList<>();
+    pool = new ScriptContextPool<>(1, Duration.ofMillis(50), created::incrementAndGet, disposed::add, registry);
+
+    try (ScriptContextPool.Lease<Integer> lease = pool.checkout()) {
+      lease.discard();
+    }
+    try (ScriptContextPool.Lease<Integer> lease = pool.checkout()) {
+      assertThat(lease.get()).isEqualTo(2);
+    }
+
+    assertThat(disposed).containsExactly(1);
+  }
+
+  @Test
+  public void testThat_waitersGetFreshContextsForDiscardedOnes() throws Exception {
+    List<Integer> disposed = new CopyOnWriteArrayList<>();
+    pool = new ScriptContextPool<>(1, Duration.ofSeconds(30), created::incrementAndGet, disposed::add, registry);
+
+    CountDownLatch firstCheckedOut = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Integer> first = executor.submit(() -> {
+        try (ScriptContextPool.Lease<Integer> lease = pool.checkout()) {
+          lease.discard();
+          firstCheckedOut.countDown();
+          Thread.sleep(100);
+          return lease.get();
+        }
+      });
+      assertThat(firstCheckedOut.await(5, TimeUnit.SECONDS)).isTrue();
+
+      // the second checkout waits for the first one, which discards its context
+      long start = System.nanoTime();
+      Future<Integer> second = executor.submit(() -> {
+        try (ScriptContextPool.Lease<Integer> lease = pool.checkout()) {
+          lease.discard();
+          return lease.get();
+        }
+      });
+
+      assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+      assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(2);
+      assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertThat(disposed).containsExactly(1, 2);
+    assertThat(registry.get("fusion.collection.layout.pool.timeouts").counter().count()).isEqualTo(0);
+  }
+}
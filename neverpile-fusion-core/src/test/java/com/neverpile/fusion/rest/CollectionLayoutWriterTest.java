@@ -0,0 +1,99 @@
+package com.neverpile.fusion.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+import org.skyscreamer.jsonassert.JSONCompareMode;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.model.rules.CollectionLayout;
+import com.neverpile.fusion.model.rules.Node;
+import com.neverpile.fusion.model.rules.RuleExecutionException;
+import com.neverpile.fusion.model.rules.ViewLayout;
+
+public class CollectionLayoutWriterTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  public void testThat_streamedLayoutEqualsSerializedLayout() throws Exception {
+    CollectionLayout layout = new CollectionLayout();
+    layout.setCollectionTypeId("aType");
+    layout.getTitleVisualization().put("html", "<b>title</b>");
+
+    Node root = new Node();
+    root.createPath("a", "b").withProperty("foo", 1);
+    layout.getViewLayouts().put("A", new ViewLayout("A", root));
+    layout.getViewLayouts().put("B", new ViewLayout("B", "Failed to lay out view: barf"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new CollectionLayoutWriter(objectMapper, () -> out, "aType").write(layout);
+
+    assertJsonEquals(objectMapper.writeValueAsString(layout), out);
+  }
+
+  @Test
+  public void testThat_viewsAreWrittenAsTheyArrive() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CollectionLayoutWriter writer = new CollectionLayoutWriter(objectMapper, () -> out, "aType");
+
+    ViewLayout view = new ViewLayout("A", new Node());
+    writer.writeView(view);
+    assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).contains("\"A\"");
+
+    // views are not retained by the writer, so the final layout only carries the titles
+    CollectionLayout rest = new CollectionLayout();
+    rest.getTitleVisualization().put("html", "title");
+    writer.finish(rest);
+
+    CollectionLayout expected = new CollectionLayout();
+    expected.setCollectionTypeId("aType");
+    expected.getTitleVisualization().put("html", "title");
+    expected.getViewLayouts().put("A", view);
+
+    assertJsonEquals(objectMapper.writeValueAsString(expected), out);
+  }
+
+  @Test
+  public void testThat_failuresAfterTheFirstViewCompleteTheLayout() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CollectionLayoutWriter writer = new CollectionLayoutWriter(objectMapper, () -> out, "aType");
+
+    ViewLayout view = new ViewLayout("A", new Node());
+    writer.stream(Arrays.asList("A", "B", "C"), viewConsumer -> {
+      viewConsumer.accept(view);
+      throw new RuleExecutionException("global", "barf");
+    });
+
+    CollectionLayout expected = new CollectionLayout();
+    expected.setCollectionTypeId("aType");
+    expected.getViewLayouts().put("A", view);
+    expected.getViewLayouts().put("B", new ViewLayout("B", "Failed to lay out view: barf"));
+    expected.getViewLayouts().put("C", new ViewLayout("C", "Failed to lay out view: barf"));
+
+    assertJsonEquals(objectMapper.writeValueAsString(expected), out);
+  }
+
+  @Test
+  public void testThat_failuresBeforeTheFirstViewArePassedOn() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CollectionLayoutWriter writer = new CollectionLayoutWriter(objectMapper, () -> out, "aType");
+
+    assertThrows(RuleExecutionException.class, () -> writer.stream(Arrays.asList("A"), viewConsumer -> {
+      throw new RuleExecutionException("global", "barf");
+    }));
+    assertThat(out.size()).isZero();
+  }
+
+  private static void assertJsonEquals(final String expected, final ByteArrayOutputStream actual)
+      throws JSONException {
+    JSONAssert.assertEquals(expected, new String(actual.toByteArray(), StandardCharsets.UTF_8),
+        JSONCompareMode.STRICT);
+  }
+}
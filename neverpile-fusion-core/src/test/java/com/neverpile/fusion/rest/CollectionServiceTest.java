@@ -4,8 +4,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -30,6 +32,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neverpile.fusion.api.CollectionIdStrategy;
 import com.neverpile.fusion.api.CollectionService;
 import com.neverpile.fusion.api.CollectionTypeService;
+import com.neverpile.fusion.api.VersionQuery;
+import com.neverpile.fusion.api.VersionQuery.Direction;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.CollectionType;
 import com.neverpile.fusion.model.Element;
@@ -399,4 +403,73 @@ public class CollectionServiceTest extends AbstractRestAssuredTest {
     // verify returned document
     assertThat(returnedDoss.getId()).isEqualTo(F);
   }
+
+  @Test
+  public void testThat_versionListCanBePaged() throws Exception {
+    // @formatter:off
+    Instant then = Instant.ofEpochMilli(1000);
+    ArgumentCaptor<VersionQuery> queryC = ArgumentCaptor.forClass(VersionQuery.class);
+
+    BDDMockito
+      .given(mockCollectionService.getCurrentHeader(F))
+        .willAnswer((a) -> {
+          Collection f = createTestCollection();
+          f.setId(F);
+          return Optional.of(f);
+        });
+    BDDMockito
+      .given(mockCollectionService.getVersions(eq(F), queryC.capture()))
+        .willReturn(Arrays.asList(then.minusMillis(1), then.minusMillis(2)));
+
+    RestAssured
+      .given()
+        .accept(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+        .queryParam("before", then.toString())
+        .queryParam("limit", 2)
+        .queryParam("direction", "DESCENDING")
+      .when()
+        .log().all()
+        .get("/api/v1/collections/{id}/history", F)
+      .then()
+        .log().all()
+        .statusCode(200)
+        .contentType(ContentType.JSON)
+        .body("size()", equalTo(2));
+    // @formatter:on
+
+    // authorization requires the header only
+    BDDMockito.verify(mockCollectionService, BDDMockito.never()).getCurrent(F);
+
+    VersionQuery query = queryC.getValue();
+    assertThat(query.getAfter()).isNull();
+    assertThat(query.getBefore()).isEqualTo(then);
+    assertThat(query.getLimit()).isEqualTo(2);
+    assertThat(query.getDirection()).isEqualTo(Direction.DESCENDING);
+  }
+
+  @Test
+  public void testThat_invalidVersionListLimitIsRejected() throws Exception {
+    // @formatter:off
+    BDDMockito
+      .given(mockCollectionService.getCurrentHeader(F))
+        .willAnswer((a) -> {
+          Collection f = createTestCollection();
+          f.setId(F);
+          return Optional.of(f);
+        });
+
+    RestAssured
+      .given()
+        .accept(ContentType.JSON)
+        .auth().preemptive().basic("user", "password")
+        .queryParam("limit", 0)
+      .when()
+        .log().all()
+        .get("/api/v1/collections/{id}/history", F)
+      .then()
+        .log().all()
+        .statusCode(HttpStatus.NOT_ACCEPTABLE.value());
+    // @formatter:on
+  }
 }
@@ -0,0 +1,154 @@
+package com.neverpile.fusion.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.LayoutConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.CollectionType;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.View;
+import com.neverpile.fusion.model.rules.javascript.JavascriptRule;
+import com.neverpile.fusion.model.rules.javascript.JavascriptViewLayoutEngine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Compares writing a large layout after materializing it as a whole with writing it view by view as
+ * the views complete. Besides the time per layout, the peak heap usage of each iteration is printed
+ * at the end of the iteration. Run with a small heap (e.g. <code>-Xmx512m</code>) and a
+ * <code>viewParallelism</code> of 1 to see the difference most clearly: in this case the streamed
+ * variant only ever holds a single view tree.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class LayoutStreamingBenchmark {
+  @Param({
+      "20000"
+  })
+  public int elements;
+
+  @Param({
+      "1", "4"
+  })
+  public int viewParallelism;
+
+  private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+  private JavascriptViewLayoutEngine engine;
+
+  private CollectionType type;
+
+  private Collection collection;
+
+  @Setup
+  public void setup() {
+    LayoutConfiguration config = new LayoutConfiguration();
+    config.setViewParallelism(viewParallelism);
+    engine = new JavascriptViewLayoutEngine(objectMapper, config, new SimpleMeterRegistry());
+
+    type = new CollectionType();
+    type.setId("aType");
+    for (int i = 0; i < 8; i++)
+      type.getViews().add(view("View " + i,
+          "createNode('Group ' + element.metadata.group, 'Sub ' + element.metadata.sub).createElementNode(element)"
+              + ".withProperty('created', element.dateCreated.getTime());"));
+
+    collection = new Collection();
+    collection.setId("aCollection");
+    collection.setTypeId("aType");
+    for (int i = 0; i < elements; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      e.setDateCreated(Instant.now());
+      e.setDateModified(Instant.now());
+      e.setTags(Arrays.asList("tag-" + i % 10));
+      e.setMetadata(objectMapper.createObjectNode().put("group", i % 100).put("sub", i % 7));
+      collection.getElements().add(e);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    engine.shutdown();
+  }
+
+  @Setup(Level.Iteration)
+  public void resetPeakUsage() {
+    System.gc();
+    heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+  }
+
+  @TearDown(Level.Iteration)
+  public void reportPeakUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heapPools())
+      peak += pool.getPeakUsage().getUsed();
+    System.out.printf("%n  peak heap usage: %d MB%n", peak / (1024 * 1024));
+  }
+
+  @Benchmark
+  public void materialized() throws IOException {
+    new CollectionLayoutWriter(objectMapper, OutputStream::nullOutputStream, type.getId()) //
+        .write(engine.layoutTree(collection, type));
+  }
+
+  @Benchmark
+  public void streamed() throws IOException {
+    new CollectionLayoutWriter(objectMapper, OutputStream::nullOutputStream, type.getId()) //
+        .stream(type.getViews().stream().map(View::getName).collect(Collectors.toList()),
+            viewConsumer -> engine.layoutTree(collection, type, viewConsumer));
+  }
+
+  private static Iterable<MemoryPoolMXBean> heapPools() {
+    return () -> ManagementFactory.getMemoryPoolMXBeans().stream() //
+        .filter(p -> p.getType() == MemoryType.HEAP) //
+        .iterator();
+  }
+
+  private static View view(final String name, final String elementRule) {
+    JavascriptRule rule = new JavascriptRule();
+    rule.setName(name);
+    rule.setScriptCode(elementRule);
+
+    View view = new View();
+    view.setName(name);
+    view.getElementRules().add(rule);
+    return view;
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(LayoutStreamingBenchmark.class.getSimpleName()).build()).run();
+  }
+}
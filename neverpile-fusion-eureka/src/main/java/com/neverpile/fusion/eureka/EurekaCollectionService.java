@@ -3,20 +3,40 @@ package com.neverpile.fusion.eureka;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neverpile.eureka.client.content.ContentElementFacet;
@@ -28,8 +48,10 @@ import com.neverpile.eureka.client.core.NeverpileEurekaClient;
 import com.neverpile.eureka.client.core.NotFoundException;
 import com.neverpile.eureka.client.metadata.MetadataFacetBuilder;
 import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.VersionQuery;
 import com.neverpile.fusion.api.exception.NeverpileException;
 import com.neverpile.fusion.api.exception.VersionMismatchException;
+import com.neverpile.fusion.impl.CollectionHeaderReader;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.VersionMetadata;
 
@@ -41,18 +63,67 @@ import com.neverpile.fusion.model.VersionMetadata;
 public class EurekaCollectionService implements CollectionService {
   private static final String COLLECTION_ROLE_NAME = "neverpile-fusion-collection";
 
+  private static final int DEFAULT_METADATA_PARALLELISM = 8;
+
+  static final int MAX_WRITE_ATTEMPTS = 3;
+
+  private static final Duration WRITE_RETRY_BACKOFF = Duration.ofMillis(100);
+
   private static final Logger LOGGER = LoggerFactory.getLogger(EurekaCollectionService.class);
 
   private final NeverpileEurekaClient client;
   private final ObjectMapper objectMapper;
   private final Clock clock;
 
-  @Autowired
+  /**
+   * The maximum number of version metadata retrievals in flight for a single version listing.
+   */
+  private final int metadataParallelism;
+
+  private final ExecutorService metadataExecutor;
+
   public EurekaCollectionService(final ObjectMapper objectMapper, final NeverpileEurekaClient client,
       final Clock clock) {
+    this(objectMapper, client, clock, DEFAULT_METADATA_PARALLELISM);
+  }
+
+  @Autowired
+  public EurekaCollectionService(final ObjectMapper objectMapper, final NeverpileEurekaClient client,
+      final Clock clock,
+      @Value("${neverpile-fusion.eureka.metadata-parallelism:" + DEFAULT_METADATA_PARALLELISM
+          + "}") final int metadataParallelism) {
     this.objectMapper = objectMapper;
     this.client = client;
     this.clock = clock;
+    this.metadataParallelism = Math.max(1, metadataParallelism);
+    this.metadataExecutor = createMetadataExecutor(metadataParallelism);
+  }
+
+  /**
+   * Create the executor used to retrieve version metadata in parallel. If all of its threads are
+   * busy, metadata is retrieved by the calling thread.
+   * 
+   * @param parallelism the maximum number of threads
+   * @return the executor or <code>null</code> if metadata is to be retrieved sequentially
+   */
+  private static ExecutorService createMetadataExecutor(final int parallelism) {
+    if (parallelism <= 1)
+      return null;
+
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("fusion-eureka-metadata-");
+    threadFactory.setDaemon(true);
+
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+        new SynchronousQueue<>(), threadFactory, (task, e) -> task.run());
+    executor.allowCoreThreadTimeOut(true);
+
+    return executor;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (null != metadataExecutor)
+      metadataExecutor.shutdown();
   }
 
   @Override
@@ -106,59 +177,277 @@ public class EurekaCollectionService implements CollectionService {
     }
   }
 
+  @Override
+  public Optional<Collection> getCurrentHeader(final String id) {
+    try {
+      ContentElementResponse contentElement = client.documentService().queryContent(id).withRole(
+          COLLECTION_ROLE_NAME).getOnly();
+
+      return Optional.of(readHeader(contentElement));
+    } catch (JsonMappingException | JsonParseException e) {
+      LOGGER.error("Failed to unmarshal collection", e);
+      throw new NeverpileException("Failed to unmarshal collection", e);
+    } catch (ClientException e) {
+      // see getCurrent()
+      if (e.getCode() == 400)
+        return Optional.empty();
+      throw e;
+    } catch (NotFoundException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      LOGGER.error("Failed to retrieve collection", e);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public Optional<Collection> getVersionHeader(final String id, final Instant versionTimestamp) {
+    try {
+      ContentElementResponse contentElement = client.documentService().queryContent(id, versionTimestamp).withRole(
+          COLLECTION_ROLE_NAME).getOnly();
+
+      return Optional.of(readHeader(contentElement));
+    } catch (JsonMappingException | JsonParseException e) {
+      LOGGER.error("Failed to unmarshal collection", e);
+      throw new NeverpileException("Failed to unmarshal collection", e);
+    } catch (NotFoundException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      LOGGER.error("Failed to retrieve collection version", e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Read the collection without its elements, so that the content is read no further than up to the
+   * elements.
+   */
+  private Collection readHeader(final ContentElementResponse contentElement) throws IOException {
+    Collection header = CollectionHeaderReader.readHeader(objectMapper,
+        objectMapper.getFactory().createParser(contentElement.getContent()));
+
+    // the version timestamp isn't persisted but derived from the eureka version
+    header.setVersionTimestamp(contentElement.getVersionTimestamp());
+
+    return header;
+  }
+
   @Override
   public List<Instant> getVersions(final String id) {
     return client.documentService().getVersions(id);
   }
 
+  @Override
+  public List<Instant> getVersions(final String id, final VersionQuery query) {
+    // the version listing is cheap compared to the retrieval of versions: select from it
+    return query.apply(getVersions(id), Function.identity());
+  }
+
   @Override
   public List<VersionMetadata> getVersionsWithMetadata(final String id) {
-    return getVersions(id).stream() 
-        // retrieve metadata for all versions - this is going to be slow...
-        .map(ts -> getVersion(id, ts) //
-            .map(v -> new VersionMetadata(v.getVersionTimestamp(), v.getTypeId(), v.getCreatedBy())).orElse(null)) //
-        .filter(Objects::nonNull) //
-        .collect(Collectors.toList());
+    // eureka can't list versions with their metadata: retrieve it for each version in parallel
+    List<VersionMetadata> result = new ArrayList<>();
+    new VersionMetadataIterator(id, getVersions(id)).forEachRemaining(result::add);
+    return result;
+  }
+
+  @Override
+  public List<VersionMetadata> getVersionsWithMetadata(final String id, final VersionQuery query) {
+    // select from the cheap version listing first; the limit applies to groups, though
+    List<Instant> selected = new VersionQuery(query.getAfter(), query.getBefore(), null, query.getDirection()) //
+        .apply(getVersions(id), Function.identity());
+
+    // retrieve metadata lazily, so that hardly more than the versions making up the result are retrieved
+    VersionMetadataIterator metadata = new VersionMetadataIterator(id, selected);
+    try {
+      return query.collect(metadata);
+    } finally {
+      metadata.cancel();
+    }
+  }
+
+  /**
+   * Retrieve the metadata of the given versions in order, keeping up to
+   * {@link EurekaCollectionService#metadataParallelism} retrievals in flight ahead of the consumer.
+   * Versions which can't be found are skipped.
+   */
+  private class VersionMetadataIterator implements Iterator<VersionMetadata> {
+    private final String id;
+
+    private final Iterator<Instant> versions;
+
+    private final Deque<Future<VersionMetadata>> pending = new ArrayDeque<>();
+
+    private VersionMetadata next;
+
+    VersionMetadataIterator(final String id, final List<Instant> versions) {
+      this.id = id;
+      this.versions = versions.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (null == next) {
+        while (pending.size() < metadataParallelism && versions.hasNext()) {
+          Instant versionTimestamp = versions.next();
+          pending.add(null != metadataExecutor
+              ? metadataExecutor.submit(() -> getVersionMetadata(id, versionTimestamp))
+              : CompletableFuture.completedFuture(getVersionMetadata(id, versionTimestamp)));
+        }
+        if (pending.isEmpty())
+          return false;
+        next = join(pending.removeFirst());
+      }
+      return true;
+    }
+
+    @Override
+    public VersionMetadata next() {
+      if (!hasNext())
+        throw new NoSuchElementException();
+      VersionMetadata result = next;
+      next = null;
+      return result;
+    }
+
+    void cancel() {
+      pending.forEach(f -> f.cancel(false));
+      pending.clear();
+    }
+  }
+
+  private static VersionMetadata join(final Future<VersionMetadata> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NeverpileException("Interrupted while retrieving version metadata", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new NeverpileException("Failed to retrieve version metadata", e.getCause());
+    }
+  }
+
+  private VersionMetadata getVersionMetadata(final String id, final Instant versionTimestamp) {
+    try {
+      ContentElementResponse contentElement = client.documentService().queryContent(id, versionTimestamp).withRole(
+          COLLECTION_ROLE_NAME).getOnly();
+
+      return readVersionMetadata(contentElement);
+    } catch (NotFoundException e) {
+      return null;
+    } catch (IOException e) {
+      LOGGER.error("Failed to retrieve collection version", e);
+      return null;
+    }
+  }
+
+  /**
+   * Read the version metadata from the properties preceding the collection's metadata and elements,
+   * without reading the rest of the content. Collections written before the type id was moved ahead
+   * of the metadata and elements are read further, skipping the metadata and elements.
+   * 
+   * @return the version metadata
+   */
+  private VersionMetadata readVersionMetadata(final ContentElementResponse contentElement) throws IOException {
+    try (JsonParser parser = objectMapper.getFactory().createParser(contentElement.getContent())) {
+      if (parser.nextToken() != JsonToken.START_OBJECT)
+        throw new JsonParseException(parser, "Expected the start of a collection");
+
+      boolean hasTypeId = false;
+      String typeId = null;
+      String createdBy = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        switch (name) {
+          case "typeId":
+            hasTypeId = true;
+            typeId = parser.getValueAsString();
+            break;
+          case "createdBy":
+            createdBy = parser.getValueAsString();
+            break;
+          case "metadata":
+          case "elements":
+            if (hasTypeId)
+              return new VersionMetadata(contentElement.getVersionTimestamp(), typeId, createdBy);
+            parser.skipChildren();
+            break;
+          default:
+            parser.skipChildren();
+            break;
+        }
+      }
+
+      return new VersionMetadata(contentElement.getVersionTimestamp(), typeId, createdBy);
+    }
   }
 
   @Override
   public Collection save(final Collection collection) {
     Objects.requireNonNull(collection.getId(), "Collection id");
 
+    Instant vts = collection.getVersionTimestamp();
+    byte[] serialized;
     try {
-      Instant vts = collection.getVersionTimestamp();
-
       // don't persist the version timestamp - it is identical to the document version timestamp
       // which we do not know yet.
       collection.setVersionTimestamp(null);
-      byte[] serialized = objectMapper.writeValueAsBytes(collection);
-
+      serialized = objectMapper.writeValueAsBytes(collection);
+    } catch (JsonProcessingException e) {
+      throw new NeverpileException("Can't marshal to JSON", e);
+    } finally {
       // restore timestamp
       collection.setVersionTimestamp(vts);
+    }
 
-      // does the document already exist?
-      Optional<Document> currentVersion = client.documentService().getDocument(collection.getId());
-      if (currentVersion.isPresent()) {
-        ContentElement addedOrUpdated = addOrUpdateForExistingDocument(collection, serialized, currentVersion.get());
+    // a new collection is created without checking for an existing one first: eureka refuses to
+    // create a document which already exists
+    Instant saved = withRetries(() -> null == vts
+        ? createNewDocumentWithCollection(collection, serialized)
+        : updateExistingDocument(collection, serialized));
 
-        collection.setVersionTimestamp(addedOrUpdated.getVersionTimestamp());
-      } else {
-        if (null != vts)
-          throw new VersionMismatchException("Saving a new collection requires a null version timestamp", "null",
-              vts.toString());
+    collection.setVersionTimestamp(saved);
+    return collection;
+  }
 
-        Document doc = createNewDocumentWithCollection(collection, serialized);
+  /**
+   * Perform the given write, retrying it after transient failures. A version conflict is final,
+   * though. Retrying an update is safe, because it verifies the version it is based on: if a failed
+   * update did succeed after all, the retry fails with a version conflict instead of writing again.
+   * Saves without a version timestamp overwrite unconditionally anyway, so repeating one at worst
+   * leaves an additional identical version.
+   */
+  Instant withRetries(final Supplier<Instant> write) {
+    for (int attempt = 1;; attempt++) {
+      try {
+        return write.get();
+      } catch (ClientException e) {
+        if (!isTransient(e) || attempt >= MAX_WRITE_ATTEMPTS)
+          throw e;
 
-        collection.setVersionTimestamp(doc.getVersionTimestamp());
+        LOGGER.warn("Failed to save collection (attempt {} of {}), retrying", attempt, MAX_WRITE_ATTEMPTS, e);
+        try {
+          Thread.sleep(WRITE_RETRY_BACKOFF.toMillis() * attempt);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
       }
-
-      return collection;
-    } catch (JsonProcessingException e) {
-      throw new NeverpileException("Can't marshal to JSON", e);
     }
   }
 
-  private Document createNewDocumentWithCollection(final Collection collection, final byte[] serialized) {
+  private static boolean isTransient(final ClientException e) {
+    return e.getCode() >= 500 || e.getCode() == 408 || e.getCode() == 429;
+  }
+
+  private static boolean isConflict(final ClientException e) {
+    return e.getCode() == 409 || e.getCode() == 412;
+  }
+
+  private Document createDocument(final Collection collection, final byte[] serialized) {
     // @formatter:off
     Document doc = client.documentService()
       .newDocument() //
@@ -179,8 +468,26 @@ public class EurekaCollectionService implements CollectionService {
     return doc;
   }
 
-  private ContentElement addOrUpdateForExistingDocument(final Collection collection, final byte[] serialized,
-      final Document currentVersion) {
+  private Instant createNewDocumentWithCollection(final Collection collection, final byte[] serialized) {
+    try {
+      return createDocument(collection, serialized).getVersionTimestamp();
+    } catch (ClientException e) {
+      // the response to creating an existing document isn't specific enough to rely on
+      if (!isConflict(e) && !client.documentService().getDocument(collection.getId()).isPresent())
+        throw e;
+
+      // saving without a version timestamp overwrites an existing collection
+      return updateExistingDocument(collection, serialized);
+    }
+  }
+
+  private Instant updateExistingDocument(final Collection collection, final byte[] serialized) {
+    Optional<Document> document = client.documentService().getDocument(collection.getId());
+    if (!document.isPresent())
+      throw new VersionMismatchException("Saving a new collection requires a null version timestamp", "null",
+          String.valueOf(collection.getVersionTimestamp()));
+
+    Document currentVersion = document.get();
     Optional<ContentElement> existingCollectionElement = currentVersion.facet(ContentElementFacet.class).flatMap(
         l -> l.stream().filter(ce -> ce.getRole().equals(COLLECTION_ROLE_NAME)).findFirst());
 
@@ -199,16 +506,21 @@ public class EurekaCollectionService implements CollectionService {
             now.toString());
     }
 
-    ContentElement addedOrUpdated;
-    if (existingCollectionElement.isPresent()) {
-      addedOrUpdated = client.documentService().updateContentElement(currentVersion.getDocumentId(),
-          existingCollectionElement.get().getId(), serialized, MediaType.APPLICATION_JSON_VALUE);
-    } else {
+    try {
+      if (existingCollectionElement.isPresent())
+        return client.documentService().updateContentElement(currentVersion.getDocumentId(),
+            existingCollectionElement.get().getId(), serialized, MediaType.APPLICATION_JSON_VALUE) //
+            .getVersionTimestamp();
+
       // should not happen, but we support it anyway
-      addedOrUpdated = client.documentService().addContentElement(currentVersion.getDocumentId(),
+      return client.documentService().addContentElement(currentVersion.getDocumentId(),
           new ByteArrayInputStream(serialized), MediaType.APPLICATION_JSON_VALUE, COLLECTION_ROLE_NAME,
-          "collection.json");
+          "collection.json").getVersionTimestamp();
+    } catch (ClientException e) {
+      if (isConflict(e))
+        throw new VersionMismatchException("Failed to update collection: version is not the current one",
+            "<newer>", String.valueOf(collection.getVersionTimestamp()));
+      throw e;
     }
-    return addedOrUpdated;
   }
 }
@@ -0,0 +1,93 @@
+package com.neverpile.fusion.eureka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.eureka.client.core.ClientException;
+import com.neverpile.eureka.client.core.NeverpileEurekaClient;
+import com.neverpile.fusion.api.exception.VersionMismatchException;
+
+public class EurekaCollectionServiceRetryTest {
+  private final EurekaCollectionService collectionService = new EurekaCollectionService(new ObjectMapper(),
+      mock(NeverpileEurekaClient.class), Clock.systemUTC());
+
+  @AfterEach
+  public void shutdown() {
+    collectionService.shutdown();
+  }
+
+  @Test
+  public void testThat_transientFailuresAreRetried() {
+    for (int code : new int[]{500, 502, 503, 408, 429}) {
+      ClientException failure = clientException(code);
+      AtomicInteger attempts = new AtomicInteger();
+      Instant saved = Instant.ofEpochMilli(code);
+
+      // fail all but the last attempt
+      assertThat(collectionService.withRetries(() -> {
+        if (attempts.incrementAndGet() < EurekaCollectionService.MAX_WRITE_ATTEMPTS)
+          throw failure;
+        return saved;
+      })).isEqualTo(saved);
+
+      assertThat(attempts).hasValue(EurekaCollectionService.MAX_WRITE_ATTEMPTS);
+    }
+  }
+
+  @Test
+  public void testThat_retriesAreLimited() {
+    ClientException failure = clientException(503);
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertSame(failure, assertThrows(ClientException.class, () -> collectionService.withRetries(() -> {
+      attempts.incrementAndGet();
+      throw failure;
+    })));
+
+    assertThat(attempts).hasValue(EurekaCollectionService.MAX_WRITE_ATTEMPTS);
+  }
+
+  @Test
+  public void testThat_conflictsAreNotRetried() {
+    for (int code : new int[]{409, 412}) {
+      ClientException failure = clientException(code);
+      AtomicInteger attempts = new AtomicInteger();
+
+      assertSame(failure, assertThrows(ClientException.class, () -> collectionService.withRetries(() -> {
+        attempts.incrementAndGet();
+        throw failure;
+      })));
+
+      assertThat(attempts).hasValue(1);
+    }
+  }
+
+  @Test
+  public void testThat_versionMismatchesAreNotRetried() {
+    AtomicInteger attempts = new AtomicInteger();
+
+    assertThrows(VersionMismatchException.class, () -> collectionService.withRetries(() -> {
+      attempts.incrementAndGet();
+      throw new VersionMismatchException("Failed to update collection: version is not the current one", "2", "1");
+    }));
+
+    assertThat(attempts).hasValue(1);
+  }
+
+  private static ClientException clientException(final int code) {
+    ClientException e = mock(ClientException.class);
+    when(e.getCode()).thenReturn(code);
+    return e;
+  }
+}
@@ -1,6 +1,7 @@
 package com.neverpile.fusion.eureka;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
@@ -37,10 +38,13 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.neverpile.common.authorization.policy.impl.AuthorityAuthenticationMatcher;
 import com.neverpile.eureka.client.EurekaClient;
 import com.neverpile.eureka.client.core.NeverpileEurekaClient;
 import com.neverpile.eureka.util.EnableNeverpileEurekaSpringApplication;
+import com.neverpile.fusion.api.VersionQuery;
+import com.neverpile.fusion.api.VersionQuery.Direction;
 import com.neverpile.fusion.api.exception.VersionMismatchException;
 import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
 import com.neverpile.fusion.configuration.JacksonConfiguration;
@@ -48,6 +52,7 @@ import com.neverpile.fusion.eureka.EurekaCollectionServiceTest.TestSecurityConfi
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.Collection.State;
 import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.VersionMetadata;
 import com.neverpile.fusion.model.spec.Artifact;
 import com.neverpile.fusion.model.spec.CompositePaged;
 import com.neverpile.fusion.model.spec.CompositePaged.PageSequence;
@@ -180,6 +185,96 @@ public class EurekaCollectionServiceTest {
     assertThat(versions).containsExactly(v1, v2);
   }
 
+  @Test
+  public void testThat_versionListCanBePaged() {
+    Collection tf = createTestCollection();
+    tf.setId(UUID.randomUUID().toString());
+
+    tf.setVersionTimestamp(null);
+    for (int i = 1; i <= 4; i++) {
+      when(clock.instant()).thenReturn(Instant.ofEpochMilli(i));
+      tf.setVersionTimestamp(collectionService.save(tf).getVersionTimestamp());
+    }
+
+    VersionQuery query = new VersionQuery(null, Instant.ofEpochMilli(4), 2, Direction.DESCENDING);
+    assertThat(collectionService.getVersions(tf.getId(), query)) //
+        .containsExactly(Instant.ofEpochMilli(3), Instant.ofEpochMilli(2));
+    assertThat(collectionService.getVersionsWithMetadata(tf.getId(), query)) //
+        .flatExtracting(VersionMetadata::getVersionTimestamps) //
+        .containsExactly(Instant.ofEpochMilli(3), Instant.ofEpochMilli(2));
+  }
+
+  @Test
+  public void testThat_collectionHeaderCanBeRetrieved() {
+    Collection tf = createTestCollection();
+    tf.setId(UUID.randomUUID().toString());
+
+    Instant v1 = Instant.ofEpochMilli(1);
+    when(clock.instant()).thenReturn(v1);
+    tf.setVersionTimestamp(null);
+    collectionService.save(tf);
+
+    Collection header = collectionService.getCurrentHeader(tf.getId()).get();
+    assertThat(header.getId()).isEqualTo(tf.getId());
+    assertThat(header.getVersionTimestamp()).isEqualTo(v1);
+    assertThat(header.getTypeId()).isEqualTo("aCollectionType");
+    assertThat(header.getCreatedBy()).isEqualTo("user");
+    assertThat(header.getMetadata().path("foo").asText()).isEqualTo("bar");
+    assertThat(header.getElements()).isEmpty();
+
+    assertThat(collectionService.getVersionHeader(tf.getId(), v1)).isNotEmpty();
+    assertThat(collectionService.getCurrentHeader(UUID.randomUUID().toString())).isEmpty();
+  }
+
+  @Test
+  public void testThat_versionMetadataCanBeRetrieved() {
+    Collection tf = createTestCollection();
+    tf.setId(UUID.randomUUID().toString());
+
+    tf.setVersionTimestamp(null);
+    for (int i = 1; i <= 3; i++) {
+      tf.setCreatedBy("user-" + i);
+      when(clock.instant()).thenReturn(Instant.ofEpochMilli(i));
+      tf.setVersionTimestamp(collectionService.save(tf).getVersionTimestamp());
+    }
+
+    assertThat(collectionService.getVersionsWithMetadata(tf.getId())) //
+        .extracting(v -> v.getVersionTimestamps().get(0), VersionMetadata::getTypeId, VersionMetadata::getCreatedBy) //
+        .containsExactly( //
+            tuple(Instant.ofEpochMilli(1), "aCollectionType", "user-1"), //
+            tuple(Instant.ofEpochMilli(2), "aCollectionType", "user-2"), //
+            tuple(Instant.ofEpochMilli(3), "aCollectionType", "user-3"));
+  }
+
+  @Test
+  public void testThat_versionMetadataOfCollectionsWithTrailingTypeIdCanBeRetrieved() throws Exception {
+    Collection tf = createTestCollection();
+    tf.setId(UUID.randomUUID().toString());
+
+    // collections used to be written with the type id following the elements
+    ObjectNode serialized = objectMapper.valueToTree(tf);
+    serialized.remove("versionTimestamp");
+    serialized.set("typeId", serialized.remove("typeId"));
+
+    when(clock.instant()).thenReturn(Instant.ofEpochMilli(1));
+    // @formatter:off
+    client.documentService()
+      .newDocument() //
+        .id(tf.getId()) //
+        .contentElement()
+          .content(objectMapper.writeValueAsBytes(serialized))
+          .role("neverpile-fusion-collection")
+          .mediaType(MediaType.APPLICATION_JSON_VALUE)
+          .fileName("neverpile-fusion-collection.json")
+          .attach()
+        .save();
+    // @formatter:on
+
+    assertThat(collectionService.getVersionsWithMetadata(tf.getId())) //
+        .extracting(v -> v.getVersionTimestamps().get(0), VersionMetadata::getTypeId, VersionMetadata::getCreatedBy) //
+        .containsExactly(tuple(Instant.ofEpochMilli(1), "aCollectionType", "user"));
+  }
+
   @Test
   public void testThat_newCollectionRequiresNullVersion() {
     Collection tf = createTestCollection();
@@ -193,6 +288,26 @@ public class EurekaCollectionServiceTest {
     assertThrows(VersionMismatchException.class, () -> collectionService.save(tf));
   }
 
+  @Test
+  public void testThat_savingWithoutVersionOverwritesAnExistingCollection() {
+    Collection tf = createTestCollection();
+    tf.setId(UUID.randomUUID().toString());
+
+    Instant v1 = Instant.ofEpochMilli(1);
+    Instant v2 = Instant.ofEpochMilli(2);
+    when(clock.instant()).thenReturn(v1);
+    tf.setVersionTimestamp(null);
+    collectionService.save(tf);
+
+    // saving with a null version timestamp again skips the version check
+    tf.setVersionTimestamp(null);
+    when(clock.instant()).thenReturn(v2);
+    collectionService.save(tf);
+    assertThat(tf.getVersionTimestamp()).isEqualTo(v2);
+
+    assertThat(collectionService.getVersions(tf.getId())).containsExactly(v1, v2);
+  }
+
   @Test
   public void testThat_savingPreventsLostUpdates() {
     Collection tf = createTestCollection();
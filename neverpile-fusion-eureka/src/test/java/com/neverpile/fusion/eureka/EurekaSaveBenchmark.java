@@ -0,0 +1,206 @@
+package com.neverpile.fusion.eureka;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Filter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.eureka.client.EurekaClient;
+import com.neverpile.eureka.util.EnableNeverpileEurekaSpringApplication;
+import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.eureka.EurekaCollectionServiceTest.TestSecurityConfig;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+
+/**
+ * Measures the latency of creating collections and of saving new versions of them to a local
+ * eureka server. Every request to the server is delayed by the given latency to simulate the
+ * network, so that the cost of round trips becomes visible. The number of requests per save is
+ * printed at the end of each iteration.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EurekaSaveBenchmark {
+  private static final AtomicLong REQUESTS = new AtomicLong();
+
+  private static volatile long latencyMillis;
+
+  @Configuration
+  @EnableAutoConfiguration
+  @EnableNeverpileEurekaSpringApplication
+  @EnableTransactionManagement
+  @Import({
+      JacksonAutoConfiguration.class, JacksonConfiguration.class, FusionModelMapperConfiguration.class,
+      TestSecurityConfig.class
+  })
+  static class BenchmarkConfiguration {
+    /**
+     * A clock advancing by a millisecond on every call, so that consecutive saves always get
+     * distinct version timestamps.
+     */
+    @Bean
+    Clock tickingClock() {
+      AtomicLong millis = new AtomicLong(System.currentTimeMillis());
+      return new Clock() {
+        @Override
+        public Instant instant() {
+          return Instant.ofEpochMilli(millis.incrementAndGet());
+        }
+
+        @Override
+        public ZoneId getZone() {
+          return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+          return this;
+        }
+      };
+    }
+
+    @Bean
+    FilterRegistrationBean<Filter> simulatedLatency() {
+      Filter filter = (request, response, chain) -> {
+        REQUESTS.incrementAndGet();
+        if (latencyMillis > 0) {
+          try {
+            Thread.sleep(latencyMillis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        chain.doFilter(request, response);
+      };
+      return new FilterRegistrationBean<>(filter);
+    }
+  }
+
+  @Param({
+      "0", "5"
+  })
+  public long latency;
+
+  private ConfigurableApplicationContext context;
+
+  private EurekaCollectionService collectionService;
+
+  private ObjectMapper objectMapper;
+
+  private Collection collection;
+
+  private long saves;
+
+  @Setup
+  public void setup() {
+    latencyMillis = latency;
+    context = new SpringApplicationBuilder(BenchmarkConfiguration.class) //
+        .properties( //
+            "server.port=0", //
+            "neverpile-eureka.document-service.enable-multi-versioning=true") //
+        .run();
+
+    objectMapper = context.getBean(ObjectMapper.class);
+    collectionService = new EurekaCollectionService(objectMapper, EurekaClient.builder() //
+        .baseURL("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/") //
+        .build(), context.getBean(Clock.class));
+
+    collection = createCollection();
+    collectionService.save(collection);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    context.close();
+
+    Files.walk(Path.of("./neverpile-eureka_default")).sorted(Comparator.reverseOrder()).map(Path::toFile).filter(
+        f -> !f.getName().endsWith("neverpile-eureka_default")).forEach(File::delete);
+  }
+
+  @Setup(Level.Iteration)
+  public void resetStatistics() {
+    REQUESTS.set(0);
+    saves = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void reportStatistics() {
+    System.out.printf("%n  Requests per save: %.1f%n", (double) REQUESTS.get() / saves);
+  }
+
+  @Benchmark
+  public Collection create() {
+    saves++;
+    return collectionService.save(createCollection());
+  }
+
+  @Benchmark
+  public Collection update() {
+    // the version timestamp of the previous save is the expected current version
+    saves++;
+    return collectionService.save(collection);
+  }
+
+  private Collection createCollection() {
+    Collection c = new Collection();
+    c.setId(UUID.randomUUID().toString());
+    c.setTypeId("aCollectionType");
+    c.setCreatedBy("user");
+    c.setMetadata(objectMapper.createObjectNode().put("foo", "bar"));
+    for (int i = 0; i < 10; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      e.setMetadata(objectMapper.createObjectNode().put("index", i));
+      c.getElements().add(e);
+    }
+    return c;
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(EurekaSaveBenchmark.class.getSimpleName()).build()).run();
+  }
+}
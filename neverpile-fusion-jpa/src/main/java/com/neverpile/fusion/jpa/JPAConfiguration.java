@@ -1,5 +1,6 @@
 package com.neverpile.fusion.jpa;
 
+import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -8,8 +9,82 @@ import org.springframework.stereotype.Component;
 @Component
 @ConfigurationProperties("neverpile-fusion.jpa")
 public class JPAConfiguration {
+  /**
+   * The way collection versions are stored.
+   */
+  public enum StorageMode {
+    /**
+     * Store every version with all its elements in full.
+     */
+    FULL,
+    /**
+     * Store full snapshots every {@link JPAConfiguration#getSnapshotInterval()} versions. The
+     * versions in between store only elements which changed since the previous version in full and
+     * refer to the version holding the content of unchanged ones.
+     */
+    DELTA
+  }
+
+  /**
+   * The encoding of JSON columns. The binary encodings are stored Base64 encoded, which adds a third
+   * to their size, so they usually only pay off combined with a compression.
+   */
+  public enum JsonEncoding {
+    /**
+     * Plain JSON text.
+     */
+    TEXT,
+    /**
+     * The binary Smile format.
+     */
+    SMILE,
+    /**
+     * The binary CBOR format.
+     */
+    CBOR
+  }
+
+  /**
+   * The compression of JSON columns.
+   */
+  public enum JsonCompression {
+    NONE,
+    /**
+     * Deflate as provided by the JDK.
+     */
+    DEFLATE,
+    /**
+     * LZ4, requires <code>org.lz4:lz4-java</code> on the class path.
+     */
+    LZ4
+  }
+
   private ChronoUnit timestampResolution = ChronoUnit.MILLIS;
 
+  private boolean initializeCurrentVersions = true;
+
+  private StorageMode storageMode = StorageMode.FULL;
+
+  private int snapshotInterval = 20;
+
+  private boolean deduplicateElementContent = false;
+
+  private Duration blobGracePeriod = Duration.ofHours(1);
+
+  private boolean migrateElementContent = false;
+
+  private JsonEncoding jsonEncoding = JsonEncoding.TEXT;
+
+  private JsonCompression jsonCompression = JsonCompression.NONE;
+
+  private int jdbcBatchSize = 50;
+
+  private boolean invalidationBus = false;
+
+  private Duration invalidationOverlap = Duration.ofSeconds(30);
+
+  private Duration invalidationRetention = Duration.ofHours(1);
+
   public ChronoUnit getTimestampResolution() {
     return timestampResolution;
   }
@@ -17,4 +92,172 @@ public class JPAConfiguration {
   public void setTimestampResolution(final ChronoUnit timestampResolution) {
     this.timestampResolution = timestampResolution;
   }
+
+  /**
+   * Whether to create the missing current version pointers of collections saved before the
+   * <code>collection_current</code> table was introduced during startup. Collections without a
+   * pointer can neither be found nor updated. The initialization is a single
+   * <code>insert ... select</code> which only scans the versions table, so it may be disabled for
+   * very large databases once all pointers have been created. If it is disabled while pointers are
+   * missing, an error is logged at startup.
+   *
+   * @return whether to initialize missing current version pointers
+   */
+  public boolean isInitializeCurrentVersions() {
+    return initializeCurrentVersions;
+  }
+
+  public void setInitializeCurrentVersions(final boolean initializeCurrentVersions) {
+    this.initializeCurrentVersions = initializeCurrentVersions;
+  }
+
+  public StorageMode getStorageMode() {
+    return storageMode;
+  }
+
+  public void setStorageMode(final StorageMode storageMode) {
+    this.storageMode = storageMode;
+  }
+
+  /**
+   * The number of versions after which a full snapshot is stored in storage mode
+   * {@link StorageMode#DELTA}. Reconstructing a version needs to look at most at this many versions.
+   *
+   * @return the snapshot interval
+   */
+  public int getSnapshotInterval() {
+    return snapshotInterval;
+  }
+
+  public void setSnapshotInterval(final int snapshotInterval) {
+    this.snapshotInterval = snapshotInterval;
+  }
+
+  /**
+   * Whether to store element metadata and specifications in a content-addressed blob table, so that
+   * identical payloads are stored only once.
+   *
+   * @return whether to deduplicate element content
+   */
+  public boolean isDeduplicateElementContent() {
+    return deduplicateElementContent;
+  }
+
+  public void setDeduplicateElementContent(final boolean deduplicateElementContent) {
+    this.deduplicateElementContent = deduplicateElementContent;
+  }
+
+  /**
+   * The time for which blobs are protected from garbage collection after they were last referenced
+   * by a new element. Must exceed the duration of the longest save transaction.
+   *
+   * @return the grace period
+   */
+  public Duration getBlobGracePeriod() {
+    return blobGracePeriod;
+  }
+
+  public void setBlobGracePeriod(final Duration blobGracePeriod) {
+    this.blobGracePeriod = blobGracePeriod;
+  }
+
+  /**
+   * Whether to move the inline element content of all stored versions to the blob table during
+   * startup. Requires {@link #isDeduplicateElementContent()}.
+   *
+   * @return whether to migrate element content
+   */
+  public boolean isMigrateElementContent() {
+    return migrateElementContent;
+  }
+
+  public void setMigrateElementContent(final boolean migrateElementContent) {
+    this.migrateElementContent = migrateElementContent;
+  }
+
+  /**
+   * The encoding used when writing JSON columns. Values written with any encoding remain readable
+   * after changing it. Binary encodings without a compression (see {@link #getJsonCompression()})
+   * usually take more space than plain text and are reported at startup.
+   *
+   * @return the JSON encoding
+   */
+  public JsonEncoding getJsonEncoding() {
+    return jsonEncoding;
+  }
+
+  public void setJsonEncoding(final JsonEncoding jsonEncoding) {
+    this.jsonEncoding = jsonEncoding;
+  }
+
+  /**
+   * The compression used when writing JSON columns. Values written with any compression remain
+   * readable after changing it.
+   *
+   * @return the JSON compression
+   */
+  public JsonCompression getJsonCompression() {
+    return jsonCompression;
+  }
+
+  public void setJsonCompression(final JsonCompression jsonCompression) {
+    this.jsonCompression = jsonCompression;
+  }
+
+  /**
+   * The JDBC batch size used by Hibernate, unless <code>hibernate.jdbc.batch_size</code> is
+   * configured explicitly. Batching mostly affects the insertion of element rows when saving.
+   *
+   * @return the JDBC batch size
+   */
+  public int getJdbcBatchSize() {
+    return jdbcBatchSize;
+  }
+
+  public void setJdbcBatchSize(final int jdbcBatchSize) {
+    this.jdbcBatchSize = jdbcBatchSize;
+  }
+
+  /**
+   * Whether to distribute invalidation events among the nodes of a deployment via the
+   * <code>collection_invalidations</code> table. Each node polls the table at the interval given by
+   * <code>neverpile-fusion.jpa.invalidation-poll-interval</code> (default one second).
+   *
+   * @return whether to use the database invalidation bus
+   */
+  public boolean isInvalidationBus() {
+    return invalidationBus;
+  }
+
+  public void setInvalidationBus(final boolean invalidationBus) {
+    this.invalidationBus = invalidationBus;
+  }
+
+  /**
+   * The time by which each poll of the invalidation table reaches back before the most recent event
+   * seen so far. Events of transactions committing later than this after the event was written are
+   * missed.
+   *
+   * @return the invalidation overlap
+   */
+  public Duration getInvalidationOverlap() {
+    return invalidationOverlap;
+  }
+
+  public void setInvalidationOverlap(final Duration invalidationOverlap) {
+    this.invalidationOverlap = invalidationOverlap;
+  }
+
+  /**
+   * The time after which invalidation events are deleted from the invalidation table.
+   *
+   * @return the invalidation retention
+   */
+  public Duration getInvalidationRetention() {
+    return invalidationRetention;
+  }
+
+  public void setInvalidationRetention(final Duration invalidationRetention) {
+    this.invalidationRetention = invalidationRetention;
+  }
 }
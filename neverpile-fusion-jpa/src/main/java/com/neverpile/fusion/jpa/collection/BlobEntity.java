@@ -0,0 +1,57 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The entity definition representing a JSON payload of collection elements in the database. Blobs
+ * are keyed by the hash of their canonical JSON representation, so identical payloads are stored
+ * only once.
+ */
+@Entity
+@Table(name = "collection_blobs")
+public class BlobEntity {
+  @Id
+  private String hash;
+
+  @Convert(converter = JsonNodeConverter.class)
+  @Lob
+  private JsonNode content;
+
+  /**
+   * The last time a new element referring to this blob was saved. Maintained with a resolution of
+   * half the garbage collection grace period.
+   */
+  private Instant lastReferenced;
+
+  public String getHash() {
+    return hash;
+  }
+
+  public void setHash(final String hash) {
+    this.hash = hash;
+  }
+
+  public JsonNode getContent() {
+    return content;
+  }
+
+  public void setContent(final JsonNode content) {
+    this.content = content;
+  }
+
+  public Instant getLastReferenced() {
+    return lastReferenced;
+  }
+
+  public void setLastReferenced(final Instant lastReferenced) {
+    this.lastReferenced = lastReferenced;
+  }
+}
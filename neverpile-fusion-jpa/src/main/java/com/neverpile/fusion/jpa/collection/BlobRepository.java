@@ -0,0 +1,49 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * A spring CRUD repository for the content-addressed element payloads.
+ */
+public interface BlobRepository extends CrudRepository<BlobEntity, String> {
+
+  @Query("select b.hash from BlobEntity b where b.hash in ?1")
+  List<String> findExistingHashes(Set<String> hashes);
+
+  /**
+   * Mark the given blobs as referenced, if they were last marked before the given threshold. The
+   * update locks the marked rows until the end of the transaction, so that they cannot be collected
+   * concurrently.
+   */
+  @Modifying
+  @Query("update BlobEntity b set b.lastReferenced = ?2 where b.hash in ?1 and b.lastReferenced < ?3")
+  int markReferenced(Set<String> hashes, Instant now, Instant threshold);
+
+  /**
+   * Find blobs last marked as referenced before the given time which are no longer referenced by any
+   * element.
+   */
+  @Query("select b.hash from BlobEntity b where b.lastReferenced < ?1 "
+      + "and not exists (select 1 from CollectionEntity c join c.elements e where e.metadataHash = b.hash) "
+      + "and not exists (select 1 from CollectionEntity c join c.elements e where e.specificationHash = b.hash)")
+  List<String> findUnreferenced(Instant referencedBefore, Pageable page);
+
+  /**
+   * Delete those of the given blobs which are still unreferenced, i.e. which haven't been referenced
+   * since they were found by {@link #findUnreferenced(Instant, Pageable)}.
+   *
+   * @return the number of deleted blobs
+   */
+  @Modifying
+  @Query("delete from BlobEntity b where b.hash in ?1 and b.lastReferenced < ?2 "
+      + "and not exists (select 1 from CollectionEntity c join c.elements e where e.metadataHash = b.hash) "
+      + "and not exists (select 1 from CollectionEntity c join c.elements e where e.specificationHash = b.hash)")
+  int deleteUnreferenced(List<String> hashes, Instant referencedBefore);
+}
@@ -4,12 +4,14 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.persistence.CollectionTable;
 import javax.persistence.Convert;
 import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.IdClass;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.OrderColumn;
 import javax.persistence.Table;
@@ -41,7 +43,17 @@ public class CollectionEntity {
   
   private String createdBy;
 
+  /**
+   * The number of versions since the last full snapshot, zero or <code>null</code> if this version
+   * is stored in full.
+   */
+  private Integer deltaDepth;
+
   @ElementCollection(fetch = FetchType.EAGER)
+  // keeps the implicit table name; the indexes serve the garbage collection of unreferenced blobs
+  @CollectionTable(name = "collection_entity_elements", indexes = {
+      @Index(columnList = "metadataHash"), @Index(columnList = "specificationHash")
+  })
   @OrderColumn(name="sequence")
   private List<ElementEntity> elements = new ArrayList<>();
 
@@ -108,4 +120,12 @@ public class CollectionEntity {
   public void setCreatedBy(final String createdBy) {
     this.createdBy = createdBy;
   }
+
+  public Integer getDeltaDepth() {
+    return deltaDepth;
+  }
+
+  public void setDeltaDepth(final Integer deltaDepth) {
+    this.deltaDepth = deltaDepth;
+  }
 }
@@ -0,0 +1,115 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.spec.Specification;
+
+/**
+ * Maps between {@link Collection} and {@link CollectionEntity} (and dependent objects). This is the
+ * explicit equivalent of the ModelMapper configuration in {@link EntityMapperConfigurer}, which is
+ * too slow for the mapping of large collections on every read and write: specifications are
+ * converted to and from JSON trees, all other properties are copied as they are.
+ */
+@Component
+public class CollectionEntityMapper {
+  private final ObjectMapper objectMapper;
+
+  @Autowired
+  public CollectionEntityMapper(final ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  public CollectionEntity toEntity(final Collection collection) {
+    CollectionEntity entity = new CollectionEntity();
+    entity.setId(collection.getId());
+    entity.setVersionTimestamp(collection.getVersionTimestamp());
+    entity.setTypeId(collection.getTypeId());
+    entity.setMetadata(collection.getMetadata());
+    entity.setDateCreated(collection.getDateCreated());
+    entity.setDateModified(collection.getDateModified());
+    entity.setCreatedBy(collection.getCreatedBy());
+
+    if (null != collection.getElements()) {
+      List<ElementEntity> elements = new ArrayList<>(collection.getElements().size());
+      for (Element e : collection.getElements())
+        elements.add(toEntity(e));
+      entity.setElements(elements);
+    }
+
+    return entity;
+  }
+
+  public ElementEntity toEntity(final Element element) {
+    ElementEntity entity = new ElementEntity();
+    entity.setId(element.getId());
+    entity.setDateCreated(element.getDateCreated());
+    entity.setDateModified(element.getDateModified());
+    entity.setTags(null != element.getTags() ? new ArrayList<>(element.getTags()) : null);
+    entity.setMetadata(element.getMetadata());
+    entity.setSpecification(toTree(element.getSpecification()));
+    return entity;
+  }
+
+  public Collection toCollection(final CollectionEntity entity) {
+    Collection collection = toHeader(entity);
+
+    if (null != entity.getElements()) {
+      List<Element> elements = new ArrayList<>(entity.getElements().size());
+      for (ElementEntity e : entity.getElements())
+        elements.add(toElement(e));
+      collection.setElements(elements);
+    }
+
+    return collection;
+  }
+
+  /**
+   * Map the given entity to a collection without elements.
+   */
+  public Collection toHeader(final CollectionEntity entity) {
+    Collection collection = new Collection();
+    collection.setId(entity.getId());
+    collection.setVersionTimestamp(entity.getVersionTimestamp());
+    collection.setTypeId(entity.getTypeId());
+    collection.setMetadata(entity.getMetadata());
+    collection.setDateCreated(entity.getDateCreated());
+    collection.setDateModified(entity.getDateModified());
+    collection.setCreatedBy(entity.getCreatedBy());
+    return collection;
+  }
+
+  public Element toElement(final ElementEntity entity) {
+    Element element = new Element();
+    element.setId(entity.getId());
+    element.setDateCreated(entity.getDateCreated());
+    element.setDateModified(entity.getDateModified());
+    element.setTags(null != entity.getTags() ? new ArrayList<>(entity.getTags()) : null);
+    element.setMetadata(entity.getMetadata());
+    element.setSpecification(toSpecification(entity.getSpecification()));
+    return element;
+  }
+
+  JsonNode toTree(final Specification specification) {
+    return null != specification ? objectMapper.valueToTree(specification) : null;
+  }
+
+  Specification toSpecification(final JsonNode tree) {
+    if (null == tree || tree.isNull())
+      return null;
+
+    try {
+      return objectMapper.treeToValue(tree, Specification.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Can't convert tree to Specification", e);
+    }
+  }
+}
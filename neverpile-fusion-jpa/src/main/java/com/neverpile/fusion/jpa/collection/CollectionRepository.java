@@ -3,8 +3,15 @@ package com.neverpile.fusion.jpa.collection;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
 /**
@@ -15,16 +22,58 @@ public interface CollectionRepository extends CrudRepository<CollectionEntity, I
   Optional<CollectionEntity> findByIdAndVersionTimestampBetween(String id,
       Instant versionTimestampStart, Instant versionTimestampEnd);
 
-  @Query("select f from CollectionEntity f where f.id = ?1 and f.versionTimestamp = "
-      + "(select max(m.versionTimestamp) from CollectionEntity m where m.id = ?1 group by m.id)")
+  @Query("select f from CollectionEntity f, CurrentVersionEntity c "
+      + "where c.id = ?1 and f.id = c.id and f.versionTimestamp = c.versionTimestamp")
   Optional<CollectionEntity> findCurrent(String id);
 
+  /**
+   * Find the elements with the given ids which are stored in full in the given versions.
+   *
+   * @return pairs of version timestamp and element
+   */
+  @Query("select c.versionTimestamp, e from CollectionEntity c join c.elements e "
+      + "where c.id = ?1 and c.versionTimestamp in ?2 and e.id in ?3 and e.baseVersion is null")
+  List<Object[]> findStoredElements(String id, Set<Instant> versionTimestamps, Set<String> elementIds);
+
+  /**
+   * Find the keys of all versions following the given key in key order.
+   */
+  @Query("select new com.neverpile.fusion.jpa.collection.IdAndVersionTimestamp(c.id, c.versionTimestamp) "
+      + "from CollectionEntity c where c.id > ?1 or (c.id = ?1 and c.versionTimestamp > ?2) "
+      + "order by c.id, c.versionTimestamp")
+  List<IdAndVersionTimestamp> findKeysAfter(String id, Instant versionTimestamp, Pageable pageable);
+
   @Query("select f.versionTimestamp from CollectionEntity f where f.id = ?1 order by versionTimestamp asc")
   List<Instant> findVersions(String id);
   
   @Query("select f.versionTimestamp as versionTimestamp, f.typeId as typeId, f.createdBy as createdBy from CollectionEntity f where f.id = ?1 order by versionTimestamp asc")
   List<VersionMetadataProjection> findVersionsWithMetadata(String id);
 
-  @Query("select max(m.versionTimestamp) from CollectionEntity m where m.id = ?1 group by m.id")
-  Optional<Instant> findCurrentVersion(String id);
+  /**
+   * Find the version timestamps strictly between the given bounds. The order and the maximum number
+   * of results are taken from the given pageable, so that the selection is an index range scan.
+   */
+  @Query("select f.versionTimestamp from CollectionEntity f "
+      + "where f.id = ?1 and f.versionTimestamp > ?2 and f.versionTimestamp < ?3")
+  List<Instant> findVersionsBetween(String id, Instant after, Instant before, Pageable pageable);
+
+  /**
+   * Find the version metadata strictly between the given bounds. The order and the maximum number
+   * of results are taken from the given pageable.
+   */
+  @Query("select f.versionTimestamp as versionTimestamp, f.typeId as typeId, f.createdBy as createdBy "
+      + "from CollectionEntity f where f.id = ?1 and f.versionTimestamp > ?2 and f.versionTimestamp < ?3")
+  List<VersionMetadataProjection> findVersionsWithMetadataBetween(String id, Instant after, Instant before,
+      Pageable pageable);
+
+  /**
+   * Stream the version metadata strictly between the given bounds in the given order. The stream
+   * must be consumed within a transaction and closed afterwards. Rows are fetched in batches, so that
+   * only the consumed part of the result is transferred.
+   */
+  @Query("select f.versionTimestamp as versionTimestamp, f.typeId as typeId, f.createdBy as createdBy "
+      + "from CollectionEntity f where f.id = ?1 and f.versionTimestamp > ?2 and f.versionTimestamp < ?3")
+  @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "50"))
+  Stream<VersionMetadataProjection> streamVersionsWithMetadataBetween(String id, Instant after, Instant before,
+      Sort sort);
 }
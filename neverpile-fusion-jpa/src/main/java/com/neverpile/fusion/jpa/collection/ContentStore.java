@@ -0,0 +1,278 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.exception.ConstraintViolationException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+
+/**
+ * Stores the metadata and specification payloads of elements in a content-addressed table of
+ * {@link BlobEntity blobs} instead of inline in the element rows. Payloads are keyed by the SHA-256
+ * hash of their canonical JSON representation (object fields sorted by name, no whitespace), so
+ * identical payloads across versions and collections are stored once.
+ * <p>
+ * Blobs are inserted in the transaction of the save, so that a save needs a single connection only.
+ * If a concurrent save inserted the same payload first, the insert fails with a
+ * {@link ConcurrencyFailureException}, upon which {@link JPACollectionService} retries the save.
+ * Blobs no longer referenced by any element are deleted by
+ * {@link #collectGarbage()}, unless they were referenced by a new element within the grace period
+ * (see {@link JPAConfiguration#getBlobGracePeriod()}).
+ */
+@Component
+public class ContentStore {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ContentStore.class);
+
+  static final int GARBAGE_COLLECTION_BATCH_SIZE = 500;
+
+  private final BlobRepository repository;
+  private final ObjectMapper objectMapper;
+  private final ObjectWriter canonicalWriter;
+  private final TransactionTemplate transaction;
+  private final Clock clock;
+  private final JPAConfiguration config;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Autowired
+  public ContentStore(final BlobRepository repository, final ObjectMapper objectMapper,
+      final PlatformTransactionManager transactionManager, final Clock clock, final JPAConfiguration config) {
+    this.repository = repository;
+    this.objectMapper = objectMapper;
+    this.canonicalWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.clock = clock;
+    this.config = config;
+  }
+
+  /**
+   * Move the inline payloads of the given elements to blobs and replace them by their hashes.
+   *
+   * @param elements the elements to process
+   * @return whether any payload was moved
+   */
+  public boolean store(final List<ElementEntity> elements) {
+    Map<String, JsonNode> contents = new HashMap<>();
+    for (ElementEntity e : elements) {
+      if (isPresent(e.getMetadata())) {
+        e.setMetadataHash(put(contents, e.getMetadata()));
+        e.setMetadata(null);
+      }
+      if (isPresent(e.getSpecification())) {
+        e.setSpecificationHash(put(contents, e.getSpecification()));
+        e.setSpecification(null);
+      }
+    }
+
+    if (contents.isEmpty())
+      return false;
+
+    // mark existing blobs first: this protects them from being collected until we are done
+    Instant now = clock.instant();
+    repository.markReferenced(contents.keySet(), now, now.minus(config.getBlobGracePeriod().dividedBy(2)));
+
+    Set<String> missing = new HashSet<>(contents.keySet());
+    missing.removeAll(repository.findExistingHashes(contents.keySet()));
+    if (!missing.isEmpty()) {
+      List<BlobEntity> blobs = new ArrayList<>(missing.size());
+      for (String hash : missing)
+        blobs.add(blob(hash, contents.get(hash), now));
+      insert(blobs);
+    }
+
+    return true;
+  }
+
+  /**
+   * Return the given elements with payload hashes replaced by the payloads. Elements referring to
+   * blobs are replaced by copies, the given elements are not modified.
+   *
+   * @param elements the elements to resolve
+   * @return the resolved elements
+   */
+  public List<ElementEntity> resolve(final List<ElementEntity> elements) {
+    Set<String> hashes = new HashSet<>();
+    for (ElementEntity e : elements) {
+      if (null != e.getMetadataHash())
+        hashes.add(e.getMetadataHash());
+      if (null != e.getSpecificationHash())
+        hashes.add(e.getSpecificationHash());
+    }
+
+    if (hashes.isEmpty())
+      return elements;
+
+    Map<String, JsonNode> contents = new HashMap<>();
+    for (BlobEntity blob : repository.findAllById(hashes))
+      contents.put(blob.getHash(), blob.getContent());
+
+    List<ElementEntity> resolved = new ArrayList<>(elements.size());
+    for (ElementEntity e : elements) {
+      if (null == e.getMetadataHash() && null == e.getSpecificationHash()) {
+        resolved.add(e);
+        continue;
+      }
+
+      ElementEntity copy = new ElementEntity();
+      copy.setId(e.getId());
+      copy.setDateCreated(e.getDateCreated());
+      copy.setDateModified(e.getDateModified());
+      copy.setTags(e.getTags());
+      copy.setBaseVersion(e.getBaseVersion());
+      copy.setMetadata(null != e.getMetadataHash() ? get(contents, e.getMetadataHash()) : e.getMetadata());
+      copy.setSpecification(
+          null != e.getSpecificationHash() ? get(contents, e.getSpecificationHash()) : e.getSpecification());
+      resolved.add(copy);
+    }
+    return resolved;
+  }
+
+  /**
+   * Delete blobs which are no longer referenced by any element and haven't been referenced by a new
+   * element within the grace period. Blobs are deleted in batches of one transaction each, so that
+   * saves are never blocked for long.
+   *
+   * @return the number of deleted blobs
+   */
+  @Scheduled(fixedDelayString = "${neverpile-fusion.jpa.blob-collection-interval:PT1H}")
+  public int collectGarbage() {
+    if (!config.isDeduplicateElementContent())
+      return 0;
+
+    Instant referencedBefore = clock.instant().minus(config.getBlobGracePeriod());
+    int deleted = 0;
+
+    List<String> batch;
+    do {
+      batch = repository.findUnreferenced(referencedBefore, PageRequest.of(0, GARBAGE_COLLECTION_BATCH_SIZE));
+      if (batch.isEmpty())
+        break;
+
+      List<String> hashes = batch;
+      int batchDeleted = transaction.execute(s -> repository.deleteUnreferenced(hashes, referencedBefore));
+      deleted += batchDeleted;
+
+      // all of them have been referenced again in the meantime: don't spin on them
+      if (batchDeleted == 0)
+        break;
+    } while (batch.size() == GARBAGE_COLLECTION_BATCH_SIZE);
+
+    if (deleted > 0)
+      LOGGER.info("Deleted {} unreferenced blobs", deleted);
+    return deleted;
+  }
+
+  private String put(final Map<String, JsonNode> contents, final JsonNode node) {
+    JsonNode sorted = sorted(node);
+    String hash = hash(canonicalize(sorted));
+    contents.putIfAbsent(hash, sorted);
+    return hash;
+  }
+
+  private void insert(final List<BlobEntity> blobs) {
+    blobs.forEach(entityManager::persist);
+    try {
+      // flush right away, so that a conflict is recognizable as such
+      entityManager.flush();
+    } catch (PersistenceException e) {
+      if (!(e.getCause() instanceof ConstraintViolationException))
+        throw e;
+
+      // a concurrent save inserted some of them and the transaction can't recover from that
+      throw new ConcurrencyFailureException("Element payload inserted concurrently", e);
+    }
+  }
+
+  private static BlobEntity blob(final String hash, final JsonNode content, final Instant now) {
+    BlobEntity blob = new BlobEntity();
+    blob.setHash(hash);
+    blob.setContent(content);
+    blob.setLastReferenced(now);
+    return blob;
+  }
+
+  private static boolean isPresent(final JsonNode node) {
+    return null != node && !node.isNull();
+  }
+
+  private static JsonNode get(final Map<String, JsonNode> contents, final String hash) {
+    JsonNode content = contents.get(hash);
+    if (null == content)
+      throw new IllegalStateException("Missing blob " + hash);
+
+    // elements must not share mutable nodes
+    return content.deepCopy();
+  }
+
+  private String canonicalize(final JsonNode sorted) {
+    try {
+      return canonicalWriter.writeValueAsString(sorted);
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Can't convert to JSON string", e);
+    }
+  }
+
+  private JsonNode sorted(final JsonNode node) {
+    if (node.isObject()) {
+      List<String> names = new ArrayList<>(node.size());
+      node.fieldNames().forEachRemaining(names::add);
+      Collections.sort(names);
+
+      ObjectNode sorted = objectMapper.createObjectNode();
+      for (String name : names)
+        sorted.set(name, sorted(node.get(name)));
+      return sorted;
+    }
+
+    if (node.isArray()) {
+      ArrayNode sorted = objectMapper.createArrayNode();
+      node.forEach(child -> sorted.add(sorted(child)));
+      return sorted;
+    }
+
+    return node;
+  }
+
+  private static String hash(final String canonical) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+      return String.format("%064x", new BigInteger(1, digest));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not supported", e);
+    }
+  }
+}
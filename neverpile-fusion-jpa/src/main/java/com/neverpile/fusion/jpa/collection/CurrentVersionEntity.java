@@ -0,0 +1,36 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * The entity definition representing the pointer from a collection to its current version in the
+ * database. There is exactly one row per collection, which is updated by every save.
+ */
+@Entity
+@Table(name = "collection_current")
+public class CurrentVersionEntity {
+  @Id
+  private String id;
+
+  private Instant versionTimestamp;
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(final String id) {
+    this.id = id;
+  }
+
+  public Instant getVersionTimestamp() {
+    return versionTimestamp;
+  }
+
+  public void setVersionTimestamp(final Instant versionTimestamp) {
+    this.versionTimestamp = versionTimestamp;
+  }
+}
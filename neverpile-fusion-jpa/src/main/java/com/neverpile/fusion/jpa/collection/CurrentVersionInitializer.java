@@ -0,0 +1,69 @@
+package com.neverpile.fusion.jpa.collection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.neverpile.fusion.jpa.JPAConfiguration;
+
+/**
+ * Creates the current version pointers of collections which were saved before the
+ * <code>collection_current</code> table was introduced. If enabled (see
+ * {@link JPAConfiguration#isInitializeCurrentVersions()}, the default), this happens once all
+ * singletons have been created, i.e. before the web server accepts requests: until then, the
+ * affected collections can neither be found nor updated. If disabled, missing pointers are only
+ * reported.
+ */
+@Component
+public class CurrentVersionInitializer implements SmartInitializingSingleton {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CurrentVersionInitializer.class);
+
+  private final CurrentVersionRepository currentVersions;
+  private final JPAConfiguration config;
+  private final TransactionTemplate transaction;
+
+  @Autowired
+  public CurrentVersionInitializer(final CurrentVersionRepository currentVersions, final JPAConfiguration config,
+      final PlatformTransactionManager transactionManager) {
+    this.currentVersions = currentVersions;
+    this.config = config;
+    this.transaction = new TransactionTemplate(transactionManager);
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    if (config.isInitializeCurrentVersions())
+      initialize();
+    else
+      checkMissing();
+  }
+
+  /**
+   * Create the missing current version pointers.
+   *
+   * @return the number of created pointers
+   */
+  public int initialize() {
+    int created = transaction.execute(s -> currentVersions.initializeMissing());
+    if (created > 0)
+      LOGGER.info("Created {} missing current version pointers", created);
+    return created;
+  }
+
+  /**
+   * Log an error if current version pointers are missing.
+   *
+   * @return the number of collections without a pointer
+   */
+  public long checkMissing() {
+    long missing = transaction.execute(s -> currentVersions.countMissing());
+    if (missing > 0)
+      LOGGER.error("{} collections have no current version pointer and can neither be found nor updated - "
+          + "enable neverpile-fusion.jpa.initialize-current-versions to create them", missing);
+    return missing;
+  }
+}
@@ -0,0 +1,58 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * A spring CRUD repository for the current version pointers of collections.
+ */
+public interface CurrentVersionRepository extends CrudRepository<CurrentVersionEntity, String> {
+
+  @Query("select c.versionTimestamp from CurrentVersionEntity c where c.id = ?1")
+  Optional<Instant> findCurrentVersion(String id);
+
+  /**
+   * Insert the pointer for a new collection. Fails with a
+   * {@link org.springframework.dao.DataIntegrityViolationException} if the collection already
+   * exists.
+   */
+  @Modifying
+  @Query(value = "insert into collection_current (id, version_timestamp) values (?1, ?2)", nativeQuery = true)
+  int insert(String id, Instant versionTimestamp);
+
+  /**
+   * Move the pointer from the expected current version to a newer one. The update locks the row
+   * until the end of the transaction, so concurrent saves of the same collection are serialized.
+   *
+   * @return the number of updated rows: zero if the current version is not the expected one or not
+   *         older than the new one
+   */
+  @Modifying
+  @Query("update CurrentVersionEntity c set c.versionTimestamp = ?3 "
+      + "where c.id = ?1 and c.versionTimestamp = ?2 and c.versionTimestamp < ?3")
+  int compareAndSet(String id, Instant expectedVersionTimestamp, Instant newVersionTimestamp);
+
+  /**
+   * Create the pointers of all collections that don't have one yet from the versions table.
+   *
+   * @return the number of created pointers
+   */
+  @Modifying
+  @Query(value = "insert into collection_current (id, version_timestamp) "
+      + "select v.id, max(v.version_timestamp) from collection_versions v "
+      + "where not exists (select 1 from collection_current c where c.id = v.id) group by v.id", nativeQuery = true)
+  int initializeMissing();
+
+  /**
+   * Count the collections that don't have a pointer yet.
+   *
+   * @return the number of collections without a pointer
+   */
+  @Query(value = "select count(distinct v.id) from collection_versions v "
+      + "where not exists (select 1 from collection_current c where c.id = v.id)", nativeQuery = true)
+  long countMissing();
+}
@@ -0,0 +1,134 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.neverpile.fusion.jpa.JPAConfiguration;
+
+/**
+ * Moves the inline element content of stored versions to the {@link ContentStore}. The migration
+ * walks all versions in key order, in batches of one transaction each, and can be interrupted and
+ * restarted at any time. Versions without inline content are left untouched.
+ * <p>
+ * If enabled, the migration runs on a background thread once the application is ready, i.e. while
+ * saves are being served. A batch which fails because a concurrent save inserted the same element
+ * payload is retried. Other failures are logged and abort the migration until the next startup.
+ */
+@Component
+public class ElementContentMigration {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ElementContentMigration.class);
+
+  private static final int BATCH_SIZE = 100;
+
+  private static final int MAX_BATCH_ATTEMPTS = 3;
+
+  private final CollectionRepository repository;
+  private final ContentStore contentStore;
+  private final TransactionTemplate transaction;
+  private final JPAConfiguration config;
+
+  private ExecutorService executor;
+
+  @Autowired
+  public ElementContentMigration(final CollectionRepository repository, final ContentStore contentStore,
+      final PlatformTransactionManager transactionManager, final JPAConfiguration config) {
+    this.repository = repository;
+    this.contentStore = contentStore;
+    this.transaction = new TransactionTemplate(transactionManager);
+    this.config = config;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void migrateOnStartup() {
+    if (!config.isDeduplicateElementContent() || !config.isMigrateElementContent() || null != executor)
+      return;
+
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("fusion-content-migration-");
+    threadFactory.setDaemon(true);
+    executor = Executors.newSingleThreadExecutor(threadFactory);
+    executor.execute(() -> {
+      try {
+        int migrated = migrate();
+        if (Thread.currentThread().isInterrupted())
+          LOGGER.info("Element content migration interrupted after {} versions", migrated);
+        else
+          LOGGER.info("Element content migration complete: migrated {} versions", migrated);
+      } catch (RuntimeException e) {
+        LOGGER.error("Element content migration failed - it will be restarted on the next startup", e);
+      }
+    });
+  }
+
+  @PreDestroy
+  public synchronized void shutdown() {
+    if (null != executor)
+      executor.shutdownNow();
+  }
+
+  /**
+   * Migrate all versions.
+   *
+   * @return the number of migrated versions
+   */
+  public int migrate() {
+    IdAndVersionTimestamp last = new IdAndVersionTimestamp("", Instant.EPOCH);
+    int migrated = 0;
+
+    List<IdAndVersionTimestamp> batch;
+    do {
+      batch = repository.findKeysAfter(last.getId(), last.getVersionTimestamp(), PageRequest.of(0, BATCH_SIZE));
+      if (batch.isEmpty())
+        break;
+
+      migrated += migrateBatch(batch);
+      last = batch.get(batch.size() - 1);
+
+      LOGGER.info("Migrated element content of {} versions up to {}@{}", migrated, last.getId(),
+          last.getVersionTimestamp());
+    } while (batch.size() == BATCH_SIZE && !Thread.currentThread().isInterrupted());
+
+    return migrated;
+  }
+
+  private int migrateBatch(final List<IdAndVersionTimestamp> keys) {
+    for (int attempt = 1;; attempt++) {
+      try {
+        return transaction.execute(s -> migrate(keys));
+      } catch (ConcurrencyFailureException e) {
+        // a concurrent save inserted the same element payload, which the retry will find
+        if (attempt >= MAX_BATCH_ATTEMPTS)
+          throw e;
+
+        LOGGER.debug("Concurrent save while migrating element content - retrying the batch", e);
+      }
+    }
+  }
+
+  private int migrate(final List<IdAndVersionTimestamp> keys) {
+    int migrated = 0;
+    for (IdAndVersionTimestamp key : keys) {
+      CollectionEntity entity = repository.findById(key).orElse(null);
+      if (null != entity && contentStore.store(entity.getElements())) {
+        repository.save(entity);
+        migrated++;
+      }
+    }
+    return migrated;
+  }
+}
@@ -35,6 +35,22 @@ public class ElementEntity {
   @Lob
   private JsonNode specification;
 
+  /**
+   * If set, this element is unchanged since the version with the given timestamp which holds its
+   * content. All other fields except the id are empty in this case.
+   */
+  private Instant baseVersion;
+
+  /**
+   * If set, the metadata is stored in the {@link BlobEntity} with this hash.
+   */
+  private String metadataHash;
+
+  /**
+   * If set, the specification is stored in the {@link BlobEntity} with this hash.
+   */
+  private String specificationHash;
+
   public String getId() {
     return id;
   }
@@ -82,4 +98,28 @@ public class ElementEntity {
   public void setTags(final List<String> tags) {
     this.tags = tags;
   }
+
+  public Instant getBaseVersion() {
+    return baseVersion;
+  }
+
+  public void setBaseVersion(final Instant baseVersion) {
+    this.baseVersion = baseVersion;
+  }
+
+  public String getMetadataHash() {
+    return metadataHash;
+  }
+
+  public void setMetadataHash(final String metadataHash) {
+    this.metadataHash = metadataHash;
+  }
+
+  public String getSpecificationHash() {
+    return specificationHash;
+  }
+
+  public void setSpecificationHash(final String specificationHash) {
+    this.specificationHash = specificationHash;
+  }
 }
@@ -10,25 +10,24 @@ import org.modelmapper.spi.MappingContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.neverpile.fusion.configuration.FusionModelMapperConfiguration.ModelMapperConfigurer;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.spec.Specification;
 
 /**
  * ModelMapper configuration facilitating the mapping between {@link Collection} and
- * {@link CollectionEntity} (and dependent objects).
+ * {@link CollectionEntity} (and dependent objects). The JPA services themselves use the
+ * {@link CollectionEntityMapper}, to which the specification conversion is delegated.
  */
 @Component
 public class EntityMapperConfigurer implements ModelMapperConfigurer {
 
-  private final ObjectMapper objectMapper;
+  private final CollectionEntityMapper entityMapper;
 
   @Autowired
-  public EntityMapperConfigurer(final ObjectMapper objectMapper) {
-    this.objectMapper = objectMapper;
+  public EntityMapperConfigurer(final CollectionEntityMapper entityMapper) {
+    this.entityMapper = entityMapper;
   }
 
   @Override
@@ -36,16 +35,16 @@ public class EntityMapperConfigurer implements ModelMapperConfigurer {
     mapper.addConverter(new Converter<Specification, JsonNode>() {
       @Override
       public JsonNode convert(final MappingContext<Specification, JsonNode> context) {
-        return objectMapper.valueToTree(context.getSource());
+        return entityMapper.toTree(context.getSource());
       }
     });
     mapper.addConverter(new Converter<JsonNode, Specification>() {
       @Override
       public Specification convert(final MappingContext<JsonNode, Specification> context) {
         try {
-          return objectMapper.treeToValue(context.getSource(), Specification.class);
-        } catch (JsonProcessingException e) {
-          throw new MappingException(Arrays.asList(new ErrorMessage("Can't convert tree to Specification", e)));
+          return entityMapper.toSpecification(context.getSource());
+        } catch (IllegalArgumentException e) {
+          throw new MappingException(Arrays.asList(new ErrorMessage(e.getMessage(), e.getCause())));
         }
       }
     });
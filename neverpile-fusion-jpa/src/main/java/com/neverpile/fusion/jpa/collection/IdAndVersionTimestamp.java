@@ -12,7 +12,15 @@ public class IdAndVersionTimestamp implements Serializable {
   private String id;
 
   private Instant versionTimestamp;
-  
+
+  public IdAndVersionTimestamp() {
+  }
+
+  public IdAndVersionTimestamp(final String id, final Instant versionTimestamp) {
+    this.id = id;
+    this.versionTimestamp = versionTimestamp;
+  }
+
   public String getId() {
     return id;
   }
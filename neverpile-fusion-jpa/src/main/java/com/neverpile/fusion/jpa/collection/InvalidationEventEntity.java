@@ -0,0 +1,60 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * The entity definition representing an invalidation event in the database. Events are written with
+ * the database's time, so that the clocks of the nodes don't matter.
+ */
+@Entity
+@Table(name = "collection_invalidations", indexes = @Index(columnList = "createdAt"))
+public class InvalidationEventEntity {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  private String collectionId;
+
+  private Instant versionTimestamp;
+
+  private Instant createdAt;
+
+  public Long getId() {
+    return id;
+  }
+
+  public void setId(final Long id) {
+    this.id = id;
+  }
+
+  public String getCollectionId() {
+    return collectionId;
+  }
+
+  public void setCollectionId(final String collectionId) {
+    this.collectionId = collectionId;
+  }
+
+  public Instant getVersionTimestamp() {
+    return versionTimestamp;
+  }
+
+  public void setVersionTimestamp(final Instant versionTimestamp) {
+    this.versionTimestamp = versionTimestamp;
+  }
+
+  public Instant getCreatedAt() {
+    return createdAt;
+  }
+
+  public void setCreatedAt(final Instant createdAt) {
+    this.createdAt = createdAt;
+  }
+}
@@ -0,0 +1,33 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+/**
+ * A spring CRUD repository for invalidation events.
+ */
+public interface InvalidationEventRepository extends CrudRepository<InvalidationEventEntity, Long> {
+
+  /**
+   * Insert an event stamped with the database's current time.
+   */
+  @Modifying
+  @Query(value = "insert into collection_invalidations (collection_id, version_timestamp, created_at) "
+      + "values (?1, ?2, current_timestamp)", nativeQuery = true)
+  int insert(String collectionId, Instant versionTimestamp);
+
+  @Query("select max(e.createdAt) from InvalidationEventEntity e")
+  Optional<Instant> findLatestCreatedAt();
+
+  @Query("select e from InvalidationEventEntity e where e.createdAt >= ?1 order by e.createdAt")
+  List<InvalidationEventEntity> findCreatedSince(Instant since);
+
+  @Modifying
+  @Query("delete from InvalidationEventEntity e where e.createdAt < ?1")
+  int deleteCreatedBefore(Instant before);
+}
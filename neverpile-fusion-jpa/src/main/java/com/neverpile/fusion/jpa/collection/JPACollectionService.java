@@ -3,53 +3,103 @@ package com.neverpile.fusion.jpa.collection;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
 
-import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.neverpile.fusion.api.CollectionService;
+import com.neverpile.fusion.api.VersionQuery;
 import com.neverpile.fusion.api.exception.VersionMismatchException;
-import com.neverpile.fusion.api.exception.VersionNotFoundException;
 import com.neverpile.fusion.jpa.JPAConfiguration;
+import com.neverpile.fusion.jpa.JPAConfiguration.StorageMode;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.VersionMetadata;
 
 /**
  * An implementation of {@link CollectionService} which persists collections to a SQL database via
- * JPA.
+ * JPA. Besides the versions themselves, a pointer to the current version of each collection is
+ * maintained in a table of its own, so that the current version can be found by primary key.
+ * <p>
+ * In storage mode {@link StorageMode#DELTA} unchanged elements are not copied into new versions but
+ * stored as references to the version holding their content (see
+ * {@link ElementEntity#getBaseVersion()}). These references are resolved transparently when
+ * versions are loaded. Likewise, element payloads stored in the {@link ContentStore} are resolved
+ * when versions are loaded.
  */
 @Component
 public class JPACollectionService implements CollectionService {
+  private static final Instant MIN_VERSION_TIMESTAMP = Instant.EPOCH.minusSeconds(1);
+  private static final Instant MAX_VERSION_TIMESTAMP = Instant.parse("9999-12-31T00:00:00Z");
+
+  private static final int MAX_SAVE_ATTEMPTS = 3;
+
   private final CollectionRepository repository;
-  private final ModelMapper modelMapper;
+  private final CurrentVersionRepository currentVersions;
+  private final ContentStore contentStore;
+  private final CollectionEntityMapper mapper;
   private final Clock clock;
   private final JPAConfiguration config;
+  private final TransactionTemplate saveTransaction;
+
+  @PersistenceContext
+  private EntityManager entityManager;
 
   @Autowired
-  public JPACollectionService(final CollectionRepository repository, final ModelMapper modelMapper, final Clock clock,
-      final JPAConfiguration config) {
+  public JPACollectionService(final CollectionRepository repository, final CurrentVersionRepository currentVersions,
+      final ContentStore contentStore, final CollectionEntityMapper mapper, final Clock clock,
+      final JPAConfiguration config, final PlatformTransactionManager transactionManager) {
     this.repository = repository;
-    this.modelMapper = modelMapper;
+    this.currentVersions = currentVersions;
+    this.contentStore = contentStore;
+    this.mapper = mapper;
     this.clock = clock;
     this.config = config;
+    this.saveTransaction = new TransactionTemplate(transactionManager);
+    this.saveTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
   }
 
   @Override
   public Optional<Collection> getCurrent(final String id) {
-    return repository.findCurrent(id).map(e -> modelMapper.map(e, Collection.class));
+    return repository.findCurrent(id).map(this::toCollection);
   }
 
   @Override
   public Optional<Collection> getVersion(final String id, final Instant versionTimestamp) {
-    return findByIdAndVersionTimestamp(id, versionTimestamp) //
-        .map(e -> modelMapper.map(e, Collection.class));
+    return findByIdAndVersionTimestamp(id, versionTimestamp).map(this::toCollection);
+  }
+
+  @Override
+  public Optional<Collection> getCurrentHeader(final String id) {
+    // skip resolving the elements' content
+    return repository.findCurrent(id).map(mapper::toHeader);
+  }
+
+  @Override
+  public Optional<Collection> getVersionHeader(final String id, final Instant versionTimestamp) {
+    return findByIdAndVersionTimestamp(id, versionTimestamp).map(mapper::toHeader);
   }
 
   @Override
@@ -65,53 +115,265 @@ public class JPACollectionService implements CollectionService {
   }
 
   @Override
-  @Transactional(isolation = Isolation.READ_COMMITTED)
+  public List<Instant> getVersions(final String id, final VersionQuery query) {
+    return repository.findVersionsBetween(id, lowerBound(query), upperBound(query), pageable(query));
+  }
+
+  @Override
+  @Transactional(readOnly = true)
+  public List<VersionMetadata> getVersionsWithMetadata(final String id, final VersionQuery query) {
+    if (null == query.getGroupingWindow())
+      return repository.findVersionsWithMetadataBetween(id, lowerBound(query), upperBound(query), pageable(query)) //
+          .stream().map(JPACollectionService::toVersionMetadata) //
+          .collect(Collectors.toList());
+
+    /*
+     * The number of versions making up the requested groups is unknown up front: stream the
+     * versions in query order and stop reading as soon as the last requested group is complete.
+     */
+    try (Stream<VersionMetadataProjection> versions = repository.streamVersionsWithMetadataBetween(id,
+        lowerBound(query), upperBound(query), sort(query))) {
+      return query.collect(versions.map(JPACollectionService::toVersionMetadata).iterator());
+    }
+  }
+
+  private static VersionMetadata toVersionMetadata(final VersionMetadataProjection p) {
+    return new VersionMetadata(p.getVersionTimestamp(), p.getTypeId(), p.getCreatedBy());
+  }
+
+  /*
+   * Open bounds are replaced by timestamps outside of the range of version timestamps so that the
+   * same range query can be used for all queries.
+   */
+  private static Instant lowerBound(final VersionQuery query) {
+    return null != query.getAfter() ? query.getAfter() : MIN_VERSION_TIMESTAMP;
+  }
+
+  private static Instant upperBound(final VersionQuery query) {
+    return null != query.getBefore() ? query.getBefore() : MAX_VERSION_TIMESTAMP;
+  }
+
+  private static Pageable pageable(final VersionQuery query) {
+    return PageRequest.of(0, null != query.getLimit() ? query.getLimit() : Integer.MAX_VALUE, sort(query));
+  }
+
+  private static Sort sort(final VersionQuery query) {
+    return Sort.by(query.getDirection() == VersionQuery.Direction.DESCENDING
+        ? Sort.Direction.DESC
+        : Sort.Direction.ASC, "versionTimestamp");
+  }
+
+  @Override
   public Collection save(final Collection collection) {
     Objects.requireNonNull(collection.getId(), "Collection id");
 
-    Optional<Instant> currentVersion = repository.findCurrentVersion(collection.getId());
-    if (collection.getVersionTimestamp() != null) {
-      if (currentVersion.isPresent()) {
-        // saving new version with version timestamp set to the current one
-        Instant currentTimestamp = currentVersion.get();
-        if (!equalsWithinPrecision(currentTimestamp, collection.getVersionTimestamp()))
-          throw new VersionMismatchException("Failed to update collection: version is not the current one",
-              currentTimestamp.toString(), collection.getVersionTimestamp().toString());
-      } else {
-        // saving a new collection requires a version timestamp of null
-        throw new VersionMismatchException("Failed to save new collection: no existing version", "<null>",
-            collection.getVersionTimestamp().toString());
+    Instant presentedVersion = collection.getVersionTimestamp();
+    for (int attempt = 1;; attempt++) {
+      try {
+        return saveTransaction.execute(s -> save(collection, presentedVersion));
+      } catch (ConcurrencyFailureException e) {
+        // e.g. a concurrent save inserted the same element payload, which the retry will find. A
+        // surrounding transaction can't be retried, though.
+        if (attempt >= MAX_SAVE_ATTEMPTS || TransactionSynchronizationManager.isActualTransactionActive())
+          throw e;
+
+        collection.setVersionTimestamp(presentedVersion);
       }
+    }
+  }
+
+  private Collection save(final Collection collection, final Instant presentedVersion) {
+
+    // invent a version time stamp now and truncate it to a resolution the database can handle
+    Instant newVersionTimestamp = clock.instant().truncatedTo(config.getTimestampResolution());
+
+    /*
+     * Move the current version pointer with a compare-and-set update. The update locks the pointer
+     * row until the transaction completes, so concurrent saves of the same collection are serialized
+     * without requiring isolation SERIALIZABLE.
+     */
+    Instant previousVersion = null;
+    if (presentedVersion != null) {
+      // saving new version with version timestamp set to the current one
+      Instant expectedVersion = presentedVersion.truncatedTo(config.getTimestampResolution());
+      if (currentVersions.compareAndSet(collection.getId(), expectedVersion, newVersionTimestamp) == 0)
+        throw versionConflict(collection.getId(), presentedVersion, newVersionTimestamp);
+      previousVersion = expectedVersion;
     } else {
       // provided collection does not have a version timestamp
+      Optional<Instant> currentVersion = currentVersions.findCurrentVersion(collection.getId());
       if (currentVersion.isPresent()) {
         /*
          * FIXME: Saving new version without version checking - we may want to deny that.
          */
+        if (currentVersions.compareAndSet(collection.getId(), currentVersion.get(), newVersionTimestamp) == 0)
+          throw versionConflict(collection.getId(), currentVersion.get(), newVersionTimestamp);
+        previousVersion = currentVersion.get();
+      } else {
+        try {
+          currentVersions.insert(collection.getId(), newVersionTimestamp);
+        } catch (DataIntegrityViolationException e) {
+          throw new VersionMismatchException("Version conflict saving new collection", newVersionTimestamp.toString(),
+              "<null>");
+        }
       }
     }
 
-    // invent a version time stamp now and truncate it to a resolution the database can handle
-    Instant newVersionTimestamp = clock.instant().truncatedTo(config.getTimestampResolution());
     collection.setVersionTimestamp(newVersionTimestamp);
 
+    CollectionEntity entity = mapper.toEntity(collection);
+
+    if (config.isDeduplicateElementContent())
+      contentStore.store(entity.getElements());
+
+    if (config.getStorageMode() == StorageMode.DELTA) {
+      entity.setDeltaDepth(0);
+      if (null != previousVersion)
+        repository.findById(key(collection.getId(), previousVersion)).ifPresent(p -> encodeDelta(entity, p));
+    }
+
+    /*
+     * Perform save. The version is new by construction, so persist it right away: merging it via the
+     * repository would first try to load it, including its elements. The element rows are written
+     * in JDBC batches (see JPAConfiguration#getJdbcBatchSize()). The saved collection is the given one
+     * - there is no need to read the entity back.
+     */
+    entityManager.persist(entity);
+
+    return collection;
+  }
+
+  /**
+   * Replace the elements of the given new version which are unchanged since the previous version by
+   * references to the version holding their content. Every {@link JPAConfiguration#getSnapshotInterval()}
+   * versions the new version is left untouched, i.e. stored as a full snapshot. This bounds the
+   * number of versions that need to be looked at when reconstructing a version.
+   */
+  private void encodeDelta(final CollectionEntity entity, final CollectionEntity previous) {
+    int depth = (null != previous.getDeltaDepth() ? previous.getDeltaDepth() : 0) + 1;
+    if (depth >= config.getSnapshotInterval())
+      return;
+
+    // only elements with unique ids can be referenced unambiguously
+    Map<String, Integer> previousIndices = uniqueIndices(previous.getElements());
+    Map<String, Integer> indices = uniqueIndices(entity.getElements());
+    List<ElementEntity> previousElements = resolveElements(previous);
+
+    for (Map.Entry<String, Integer> e : indices.entrySet()) {
+      Integer previousIndex = previousIndices.get(e.getKey());
+      if (null == previousIndex || !sameContent(entity.getElements().get(e.getValue()),
+          previousElements.get(previousIndex)))
+        continue;
+
+      Instant baseVersion = previous.getElements().get(previousIndex).getBaseVersion();
+
+      ElementEntity reference = new ElementEntity();
+      reference.setId(e.getKey());
+      reference.setBaseVersion(null != baseVersion ? baseVersion : previous.getVersionTimestamp());
+      entity.getElements().set(e.getValue(), reference);
+    }
+
+    entity.setDeltaDepth(depth);
+  }
+
+  private static Map<String, Integer> uniqueIndices(final List<ElementEntity> elements) {
+    Map<String, Integer> indices = new HashMap<>();
+    Set<String> duplicates = new HashSet<>();
+    for (int i = 0; i < elements.size(); i++)
+      if (null != indices.put(elements.get(i).getId(), i))
+        duplicates.add(elements.get(i).getId());
+    indices.keySet().removeAll(duplicates);
+    return indices;
+  }
+
+  private static boolean sameContent(final ElementEntity e1, final ElementEntity e2) {
+    return Objects.equals(e1.getId(), e2.getId()) //
+        && Objects.equals(e1.getDateCreated(), e2.getDateCreated()) //
+        && Objects.equals(e1.getDateModified(), e2.getDateModified()) //
+        && Objects.equals(e1.getTags(), e2.getTags()) //
+        && Objects.equals(e1.getMetadata(), e2.getMetadata()) //
+        && Objects.equals(e1.getMetadataHash(), e2.getMetadataHash()) //
+        && Objects.equals(e1.getSpecification(), e2.getSpecification()) //
+        && Objects.equals(e1.getSpecificationHash(), e2.getSpecificationHash());
+  }
+
+  /**
+   * Return the elements of the given version with references to other versions replaced by the
+   * referenced elements. All referenced elements are fetched with a single query.
+   */
+  private List<ElementEntity> resolveElements(final CollectionEntity entity) {
+    Set<Instant> baseVersions = new HashSet<>();
+    Set<String> ids = new HashSet<>();
+    for (ElementEntity e : entity.getElements())
+      if (null != e.getBaseVersion()) {
+        baseVersions.add(e.getBaseVersion());
+        ids.add(e.getId());
+      }
+
+    if (baseVersions.isEmpty())
+      return entity.getElements();
+
+    Map<IdAndVersionTimestamp, ElementEntity> stored = new HashMap<>();
+    for (Object[] row : repository.findStoredElements(entity.getId(), baseVersions, ids)) {
+      ElementEntity e = (ElementEntity) row[1];
+      stored.put(key(e.getId(), (Instant) row[0]), e);
+    }
+
+    List<ElementEntity> resolved = new ArrayList<>(entity.getElements().size());
+    for (ElementEntity e : entity.getElements()) {
+      if (null == e.getBaseVersion()) {
+        resolved.add(e);
+        continue;
+      }
+
+      ElementEntity base = stored.get(key(e.getId(), e.getBaseVersion()));
+      if (null == base)
+        throw new IllegalStateException("Element " + e.getId() + " of collection " + entity.getId() + " version "
+            + entity.getVersionTimestamp() + " refers to missing version " + e.getBaseVersion());
+      resolved.add(base);
+    }
+    return resolved;
+  }
+
+  private Collection toCollection(final CollectionEntity entity) {
+    Collection collection = mapper.toCollection(entity);
+
+    List<ElementEntity> resolved = contentStore.resolve(resolveElements(entity));
+    for (int i = 0; i < resolved.size(); i++)
+      if (resolved.get(i) != entity.getElements().get(i))
+        collection.getElements().set(i, mapper.toElement(resolved.get(i)));
+
+    return collection;
+  }
+
+  private static IdAndVersionTimestamp key(final String id, final Instant versionTimestamp) {
+    return new IdAndVersionTimestamp(id, versionTimestamp);
+  }
+
+  /**
+   * Determine why moving the current version pointer from the presented version to the new one
+   * failed.
+   */
+  private VersionMismatchException versionConflict(final String id, final Instant presentedVersion,
+      final Instant newVersionTimestamp) {
+    Optional<Instant> currentVersion = currentVersions.findCurrentVersion(id);
+    if (!currentVersion.isPresent())
+      // saving a new collection requires a version timestamp of null
+      return new VersionMismatchException("Failed to save new collection: no existing version", "<null>",
+          presentedVersion.toString());
+
+    Instant currentTimestamp = currentVersion.get();
+    if (!equalsWithinPrecision(currentTimestamp, presentedVersion))
+      return new VersionMismatchException("Failed to update collection: version is not the current one",
+          currentTimestamp.toString(), presentedVersion.toString());
+
     // detect backwards-running clock
-    if (currentVersion.isPresent() && !isBeforeWithinPrecision(currentVersion.get(), newVersionTimestamp))
-      throw new VersionMismatchException("Detected clock running backwards during save", newVersionTimestamp.toString(),
-          currentVersion.get().toString());
-
-    // perform save
-    Collection saved = modelMapper.map(repository.save(modelMapper.map(collection, CollectionEntity.class)),
-        Collection.class);
-
-    // Verify version after save, so we don't have to specify isolation SERIALIZABLE
-    Instant mostRecentVersionAfterSave = repository.findCurrentVersion(collection.getId()).orElseThrow(
-        () -> new VersionNotFoundException("Did not find saved version", newVersionTimestamp.toString()));
-    if (!mostRecentVersionAfterSave.equals(newVersionTimestamp))
-      throw new VersionMismatchException("Version conflict saving new Version", newVersionTimestamp.toString(),
-          mostRecentVersionAfterSave.toString());
-
-    return saved;
+    if (!isBeforeWithinPrecision(currentTimestamp, newVersionTimestamp))
+      return new VersionMismatchException("Detected clock running backwards during save",
+          newVersionTimestamp.toString(), currentTimestamp.toString());
+
+    return new VersionMismatchException("Version conflict saving new Version", newVersionTimestamp.toString(),
+        currentTimestamp.toString());
   }
 
   private boolean isBeforeWithinPrecision(final Instant time1, final Instant time2) {
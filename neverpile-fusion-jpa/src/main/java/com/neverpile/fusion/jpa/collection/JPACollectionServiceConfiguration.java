@@ -1,10 +1,14 @@
 package com.neverpile.fusion.jpa.collection;
 
+import org.hibernate.cfg.AvailableSettings;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import com.neverpile.fusion.jpa.JPAConfiguration;
 
@@ -13,6 +17,13 @@ import com.neverpile.fusion.jpa.JPAConfiguration;
 @EnableJpaRepositories
 @EntityScan(basePackageClasses = CollectionEntity.class)
 @Import(JPAConfiguration.class)
+@EnableScheduling
 public class JPACollectionServiceConfiguration {
-
+  @Bean
+  HibernatePropertiesCustomizer fusionJdbcBatchingCustomizer(final JPAConfiguration config) {
+    return properties -> {
+      properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, config.getJdbcBatchSize());
+      properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+    };
+  }
 }
@@ -0,0 +1,111 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.neverpile.fusion.api.InvalidationBus;
+import com.neverpile.fusion.api.InvalidationEvent;
+import com.neverpile.fusion.impl.LocalInvalidationBus;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+
+/**
+ * An {@link InvalidationBus} distributing events via a database table which is polled by all nodes,
+ * so that no external message broker is needed.
+ * <p>
+ * Events are stamped with the database's time when they are written. Each poll reads the events
+ * written since the most recent event seen so far, reaching back by the configured overlap to
+ * catch the events of transactions which committed late. Events seen before are skipped. Events
+ * are deleted once they are older than the configured retention.
+ */
+@Component
+@ConditionalOnProperty(name = "neverpile-fusion.jpa.invalidation-bus", havingValue = "true")
+public class JPAInvalidationBus implements InvalidationBus {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JPAInvalidationBus.class);
+
+  private final InvalidationEventRepository repository;
+
+  private final JPAConfiguration config;
+
+  private final List<Consumer<InvalidationEvent>> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * The write time of the most recent event seen so far or <code>null</code> before the first poll.
+   */
+  private Instant horizon;
+
+  /**
+   * The ids and write times of the events seen within the overlap.
+   */
+  private final Map<Long, Instant> seen = new HashMap<>();
+
+  @Autowired
+  public JPAInvalidationBus(final InvalidationEventRepository repository, final JPAConfiguration config) {
+    this.repository = repository;
+    this.config = config;
+  }
+
+  @Override
+  @Transactional
+  public void publish(final InvalidationEvent event) {
+    repository.insert(event.getCollectionId(), event.getVersionTimestamp());
+  }
+
+  @Override
+  public void subscribe(final Consumer<InvalidationEvent> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Deliver the events written since the last poll to the listeners.
+   *
+   * @return the number of delivered events
+   */
+  @Scheduled(fixedDelayString = "${neverpile-fusion.jpa.invalidation-poll-interval:PT1S}")
+  public synchronized int poll() {
+    // start with the events written from now on
+    boolean initial = null == horizon;
+    if (initial)
+      horizon = repository.findLatestCreatedAt().orElse(Instant.EPOCH);
+
+    int delivered = 0;
+    for (InvalidationEventEntity e : repository.findCreatedSince(horizon.minus(config.getInvalidationOverlap()))) {
+      if (null == seen.putIfAbsent(e.getId(), e.getCreatedAt()) && !initial) {
+        LocalInvalidationBus.deliver(listeners, new InvalidationEvent(e.getCollectionId(), e.getVersionTimestamp()));
+        delivered++;
+      }
+      if (e.getCreatedAt().isAfter(horizon))
+        horizon = e.getCreatedAt();
+    }
+
+    Instant threshold = horizon.minus(config.getInvalidationOverlap());
+    seen.values().removeIf(createdAt -> createdAt.isBefore(threshold));
+
+    return delivered;
+  }
+
+  /**
+   * Delete the events older than the retention.
+   */
+  @Transactional
+  @Scheduled(fixedDelayString = "${neverpile-fusion.jpa.invalidation-cleanup-interval:PT10M}")
+  public void deleteExpired() {
+    // measured against the database's time, like the events themselves
+    repository.findLatestCreatedAt().ifPresent(latest -> {
+      int deleted = repository.deleteCreatedBefore(latest.minus(config.getInvalidationRetention()));
+      if (deleted > 0)
+        LOGGER.debug("Deleted {} expired invalidation events", deleted);
+    });
+  }
+}
@@ -1,47 +1,160 @@
 package com.neverpile.fusion.jpa.collection;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import javax.persistence.AttributeConverter;
 import javax.persistence.Converter;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+import com.neverpile.fusion.jpa.JPAConfiguration.JsonCompression;
+import com.neverpile.fusion.jpa.JPAConfiguration.JsonEncoding;
+
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
 
 /**
  * An {@link AttributeConverter} used to map fields typed {@link JsonNode} to LOB database columns.
+ * <p>
+ * By default, values are stored as plain JSON text. If a binary encoding or a compression is
+ * configured (see {@link JPAConfiguration#getJsonEncoding()} and
+ * {@link JPAConfiguration#getJsonCompression()}), values are stored as a tag followed by the Base64
+ * encoded bytes, e.g. <code>$smile+lz4:...</code>. JSON text never starts with <code>$</code>, so
+ * values in all formats can be read regardless of the current configuration.
+ * <p>
+ * As the Base64 encoding adds a third to the size, the binary encodings only pay off combined with a
+ * compression. Configuring one without a compression is reported at startup.
  */
 @Converter(autoApply = true)
 @Component
 public class JsonNodeConverter implements AttributeConverter<JsonNode, String> {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JsonNodeConverter.class);
+
+  private static final char TAG = '$';
 
   private final ObjectMapper objectMapper;
-  
+  private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+  private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+  private final JPAConfiguration config;
+
   @Autowired
-  public JsonNodeConverter(final ObjectMapper objectMapper) {
+  public JsonNodeConverter(final ObjectMapper objectMapper, final JPAConfiguration config) {
     this.objectMapper = objectMapper;
+    this.config = config;
+
+    if (config.getJsonEncoding() != JsonEncoding.TEXT && config.getJsonCompression() == JsonCompression.NONE)
+      LOGGER.warn("JSON columns are written as Base64 encoded {} without compression, which usually takes more "
+          + "space than plain text - configure a JSON compression as well", config.getJsonEncoding());
   }
 
   @Override
   public String convertToDatabaseColumn(final JsonNode meta) {
+    JsonEncoding encoding = config.getJsonEncoding();
+    JsonCompression compression = config.getJsonCompression();
+
     try {
-      return objectMapper.writeValueAsString(meta);
-    } catch (JsonProcessingException e) {
+      if (encoding == JsonEncoding.TEXT && compression == JsonCompression.NONE)
+        return objectMapper.writeValueAsString(meta);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (OutputStream os = compress(bytes, compression)) {
+        mapper(encoding).writeValue(os, meta);
+      }
+
+      StringBuilder sb = new StringBuilder().append(TAG).append(encoding.name().toLowerCase(Locale.ROOT));
+      if (compression != JsonCompression.NONE)
+        sb.append('+').append(compression.name().toLowerCase(Locale.ROOT));
+      return sb.append(':').append(Base64.getEncoder().encodeToString(bytes.toByteArray())).toString();
+    } catch (IOException e) {
       throw new IllegalArgumentException("Can't convert to JSON string", e);
     }
   }
 
   @Override
   public JsonNode convertToEntityAttribute(final String dbData) {
+    if (null == dbData)
+      return null;
+
     try {
-      return objectMapper.readTree(dbData);
+      if (dbData.isEmpty() || dbData.charAt(0) != TAG)
+        return objectMapper.readTree(dbData);
+
+      int colon = dbData.indexOf(':');
+      if (colon < 0)
+        throw new IllegalArgumentException("Can't convert from JSON string: missing end of tag");
+
+      String[] tag = dbData.substring(1, colon).toUpperCase(Locale.ROOT).split("\\+");
+      JsonEncoding encoding = JsonEncoding.valueOf(tag[0]);
+      JsonCompression compression = tag.length > 1 ? JsonCompression.valueOf(tag[1]) : JsonCompression.NONE;
+
+      byte[] bytes = Base64.getDecoder().decode(dbData.substring(colon + 1));
+      try (InputStream is = decompress(new ByteArrayInputStream(bytes), compression)) {
+        return mapper(encoding).readTree(is);
+      }
     } catch (IOException e) {
       throw new IllegalArgumentException("Can't convert from JSON string", e);
     }
   }
 
-}
\ No newline at end of file
+  private ObjectMapper mapper(final JsonEncoding encoding) {
+    switch (encoding) {
+      case SMILE:
+        return smileMapper;
+      case CBOR:
+        return cborMapper;
+      default:
+        return objectMapper;
+    }
+  }
+
+  private static OutputStream compress(final OutputStream os, final JsonCompression compression) {
+    switch (compression) {
+      case DEFLATE:
+        return new DeflaterOutputStream(os);
+      case LZ4:
+        return Lz4.compress(os);
+      default:
+        return os;
+    }
+  }
+
+  private static InputStream decompress(final InputStream is, final JsonCompression compression) {
+    switch (compression) {
+      case DEFLATE:
+        return new InflaterInputStream(is);
+      case LZ4:
+        return Lz4.decompress(is);
+      default:
+        return is;
+    }
+  }
+
+  /**
+   * Keeps the optional LZ4 classes from being loaded unless LZ4 is actually used.
+   */
+  private static class Lz4 {
+    static OutputStream compress(final OutputStream os) {
+      return new LZ4BlockOutputStream(os);
+    }
+
+    static InputStream decompress(final InputStream is) {
+      return new LZ4BlockInputStream(is);
+    }
+  }
+}
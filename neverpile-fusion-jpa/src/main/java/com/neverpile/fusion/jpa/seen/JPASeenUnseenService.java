@@ -1,6 +1,7 @@
 package com.neverpile.fusion.jpa.seen;
 
-import org.modelmapper.ModelMapper;
+import java.util.HashSet;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -14,27 +15,30 @@ import com.neverpile.fusion.model.seen.SeenUnseenInfo;
 @Component
 public class JPASeenUnseenService implements SeenUnseenService {
   private final SeenUnseenInfoRepository repository;
-  private final ModelMapper modelMapper;
 
   @Autowired
-  public JPASeenUnseenService(final SeenUnseenInfoRepository repository, final ModelMapper modelMapper) {
+  public JPASeenUnseenService(final SeenUnseenInfoRepository repository) {
     this.repository = repository;
-    this.modelMapper = modelMapper;
   }
 
   @Override
   public SeenUnseenInfo get(final String contextKey, final String principalKey) {
     return repository //
         .findById(new ContextKeyAndPrincipal(contextKey, principalKey)) //
-        .map(e -> modelMapper.map(e, SeenUnseenInfo.class)) //
+        .map(JPASeenUnseenService::toInfo) //
         .orElseGet(() -> new SeenUnseenInfo());
   }
 
   @Override
   public void save(final String contextKey, final String principalKey, final SeenUnseenInfo info) {
-    SeenUnseenInfoEntity e = modelMapper.map(info, SeenUnseenInfoEntity.class);
+    SeenUnseenInfoEntity e = new SeenUnseenInfoEntity();
     e.setContextKey(contextKey);
     e.setPrincipalKey(principalKey);
+    e.setSeenAllBefore(info.getSeenAllBefore());
+    if (null != info.getSeenKeys())
+      e.setSeenKeys(new HashSet<>(info.getSeenKeys()));
+    if (null != info.getUnseenKeys())
+      e.setUnseenKeys(new HashSet<>(info.getUnseenKeys()));
 
     repository.save(e);
   }
@@ -44,4 +48,14 @@ public class JPASeenUnseenService implements SeenUnseenService {
     repository.deleteById(new ContextKeyAndPrincipal(contextKey, principalKey));
   }
 
+  private static SeenUnseenInfo toInfo(final SeenUnseenInfoEntity e) {
+    SeenUnseenInfo info = new SeenUnseenInfo();
+    info.setSeenAllBefore(e.getSeenAllBefore());
+    if (null != e.getSeenKeys())
+      info.setSeenKeys(new HashSet<>(e.getSeenKeys()));
+    if (null != e.getUnseenKeys())
+      info.setUnseenKeys(new HashSet<>(e.getUnseenKeys()));
+    return info;
+  }
+
 }
@@ -0,0 +1,83 @@
+package com.neverpile.fusion.jpa.collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.spec.Artifact;
+
+public class CollectionEntityMapperTest {
+  private final ObjectMapper objectMapper = new ObjectMapper() //
+      .registerModule(new JavaTimeModule()) //
+      .registerModule(new SimpleModule().addSerializer(MediaType.class, ToStringSerializer.instance));
+
+  private final CollectionEntityMapper mapper = new CollectionEntityMapper(objectMapper);
+
+  @Test
+  public void testThat_collectionSurvivesRoundtrip() throws Exception {
+    Collection c = new Collection();
+    c.setId("aCollection");
+    c.setVersionTimestamp(Instant.ofEpochMilli(20));
+    c.setTypeId("aCollectionType");
+    c.setDateCreated(Instant.ofEpochMilli(10));
+    c.setDateModified(Instant.ofEpochMilli(20));
+    c.setCreatedBy("user");
+    c.setMetadata(objectMapper.createObjectNode().put("foo", "bar"));
+
+    Element e = new Element();
+    e.setId("anElement");
+    e.setDateCreated(Instant.ofEpochMilli(10));
+    e.setDateModified(Instant.ofEpochMilli(20));
+    e.setTags(new ArrayList<>(Arrays.asList("foo", "bar")));
+    e.setMetadata(objectMapper.createObjectNode().put("baz", 1));
+
+    Artifact a = new Artifact();
+    a.setContentURI("text:from://some/where");
+    a.setMediaType(MediaType.TEXT_PLAIN);
+    e.setSpecification(a);
+    c.getElements().add(e);
+
+    CollectionEntity entity = mapper.toEntity(c);
+    assertThat(entity.getElements()).hasSize(1);
+    assertThat(entity.getElements().get(0).getSpecification().get("contentURI").asText()) //
+        .isEqualTo("text:from://some/where");
+
+    Collection mapped = mapper.toCollection(entity);
+    assertThat(objectMapper.writeValueAsString(mapped)).isEqualTo(objectMapper.writeValueAsString(c));
+
+    // tags are copied, not shared
+    entity.getElements().get(0).getTags().add("changed");
+    assertThat(mapped.getElements().get(0).getTags()).containsExactly("foo", "bar");
+  }
+
+  @Test
+  public void testThat_missingSpecificationMapsToNull() {
+    Element e = new Element();
+    e.setId("anElement");
+
+    ElementEntity entity = mapper.toEntity(e);
+    assertThat(entity.getSpecification()).isNull();
+    assertThat(mapper.toElement(entity).getSpecification()).isNull();
+  }
+
+  @Test
+  public void testThat_invalidSpecificationIsRejected() {
+    ElementEntity entity = new ElementEntity();
+    entity.setSpecification(objectMapper.createObjectNode().put("type", "noSuchType"));
+
+    assertThatThrownBy(() -> mapper.toElement(entity)).isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Can't convert tree to Specification");
+  }
+}
@@ -0,0 +1,214 @@
+package com.neverpile.fusion.jpa.collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.transaction.TestTransaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.spec.Artifact;
+
+@DataJpaTest
+@EnableAutoConfiguration
+@ContextConfiguration(classes = {
+    JacksonAutoConfiguration.class, JacksonConfiguration.class, FusionModelMapperConfiguration.class,
+    JPACollectionServiceConfiguration.class
+})
+public class ContentStoreTest {
+  @Autowired
+  private JPACollectionService collectionService;
+
+  @Autowired
+  private CollectionRepository collectionRepository;
+
+  @Autowired
+  private BlobRepository blobRepository;
+
+  @Autowired
+  private ContentStore contentStore;
+
+  @Autowired
+  private ElementContentMigration migration;
+
+  @Autowired
+  private JPAConfiguration config;
+
+  @Autowired
+  private TestEntityManager entityManager;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @MockBean
+  private Clock clock;
+
+  @BeforeEach
+  public void enableDeduplication() {
+    config.setDeduplicateElementContent(true);
+    when(clock.instant()).thenReturn(Instant.ofEpochMilli(10));
+  }
+
+  @AfterEach
+  public void disableDeduplication() {
+    config.setDeduplicateElementContent(false);
+  }
+
+  @Test
+  public void testThat_identicalPayloadsAreStoredOnce() throws Exception {
+    Collection c1 = createTestCollection("{\"foo\":\"bar\",\"baz\":[1,{\"b\":2,\"a\":1}]}");
+    Collection c2 = createTestCollection("{\"baz\":[1,{\"a\":1,\"b\":2}],\"foo\":\"bar\"}");
+
+    collectionService.save(c1);
+    collectionService.save(c2);
+
+    ElementEntity e1 = load(c1).getElements().get(0);
+    ElementEntity e2 = load(c2).getElements().get(0);
+
+    // field order does not matter
+    assertThat(e1.getMetadataHash()).isNotNull().isEqualTo(e2.getMetadataHash());
+    assertThat(e1.getSpecificationHash()).isNotNull().isEqualTo(e2.getSpecificationHash());
+    assertThat(e1.getMetadata()).isNull();
+    assertThat(e1.getSpecification()).isNull();
+
+    assertThat(blobRepository.findExistingHashes(Set.of(e1.getMetadataHash(), e1.getSpecificationHash()))) //
+        .hasSize(2);
+
+    Element reloaded = collectionService.getCurrent(c2.getId()).get().getElements().get(0);
+    assertThat(reloaded.getMetadata()).isEqualTo(c1.getElements().get(0).getMetadata());
+    assertThat(reloaded.getSpecification()).isInstanceOf(Artifact.class);
+    assertThat(((Artifact) reloaded.getSpecification()).getContentURI()).isEqualTo("text:from://some/where");
+  }
+
+  @Test
+  public void testThat_blobsAreInsertedInTheTransactionOfTheSave() throws Exception {
+    Collection c = createTestCollection("{\"foo\":\"rolled back\"}");
+    collectionService.save(c);
+
+    String hash = load(c).getElements().get(0).getMetadataHash();
+    assertThat(blobRepository.existsById(hash)).isTrue();
+
+    // the blob goes away with the save
+    TestTransaction.end();
+    TestTransaction.start();
+
+    assertThat(blobRepository.existsById(hash)).isFalse();
+  }
+
+  @Test
+  public void testThat_unreferencedBlobsAreCollected() throws Exception {
+    Collection c = createTestCollection("{\"foo\":\"bar\"}");
+    collectionService.save(c);
+
+    String referenced = load(c).getElements().get(0).getMetadataHash();
+
+    BlobEntity orphan = new BlobEntity();
+    orphan.setHash("orphan");
+    orphan.setContent(objectMapper.createObjectNode());
+    orphan.setLastReferenced(Instant.ofEpochMilli(10));
+    entityManager.persist(orphan);
+
+    BlobEntity recent = new BlobEntity();
+    recent.setHash("recent");
+    recent.setContent(objectMapper.createObjectNode());
+    recent.setLastReferenced(Instant.ofEpochMilli(10).plus(config.getBlobGracePeriod()));
+    entityManager.persist(recent);
+    entityManager.flush();
+
+    when(clock.instant()).thenReturn(Instant.ofEpochMilli(20).plus(config.getBlobGracePeriod()));
+    contentStore.collectGarbage();
+    entityManager.clear();
+
+    assertThat(blobRepository.existsById("orphan")).isFalse();
+    assertThat(blobRepository.existsById("recent")).isTrue();
+    assertThat(blobRepository.existsById(referenced)).isTrue();
+  }
+
+  @Test
+  public void testThat_unreferencedBlobsAreCollectedInBatches() throws Exception {
+    Set<String> orphans = new HashSet<>();
+    for (int i = 0; i < ContentStore.GARBAGE_COLLECTION_BATCH_SIZE * 2 + 1; i++) {
+      BlobEntity orphan = new BlobEntity();
+      orphan.setHash("orphan-" + i);
+      orphans.add(orphan.getHash());
+      orphan.setContent(objectMapper.createObjectNode());
+      orphan.setLastReferenced(Instant.ofEpochMilli(10));
+      entityManager.persist(orphan);
+    }
+    entityManager.flush();
+
+    when(clock.instant()).thenReturn(Instant.ofEpochMilli(20).plus(config.getBlobGracePeriod()));
+    assertThat(contentStore.collectGarbage()).isGreaterThanOrEqualTo(orphans.size());
+    entityManager.clear();
+
+    assertThat(blobRepository.findExistingHashes(orphans)).isEmpty();
+  }
+
+  @Test
+  public void testThat_inlineContentIsMigrated() throws Exception {
+    config.setDeduplicateElementContent(false);
+    Collection c = createTestCollection("{\"foo\":\"bar\"}");
+    collectionService.save(c);
+    entityManager.flush();
+    entityManager.clear();
+
+    assertThat(load(c).getElements().get(0).getMetadataHash()).isNull();
+
+    config.setDeduplicateElementContent(true);
+    assertThat(migration.migrate()).isGreaterThanOrEqualTo(1);
+    entityManager.flush();
+    entityManager.clear();
+
+    ElementEntity migrated = load(c).getElements().get(0);
+    assertThat(migrated.getMetadataHash()).isNotNull();
+    assertThat(migrated.getMetadata()).isNull();
+
+    assertThat(collectionService.getCurrent(c.getId()).get().getElements().get(0).getMetadata())
+        .isEqualTo(objectMapper.readTree("{\"foo\":\"bar\"}"));
+  }
+
+  private CollectionEntity load(final Collection c) {
+    return collectionRepository.findById(new IdAndVersionTimestamp(c.getId(), c.getVersionTimestamp())).get();
+  }
+
+  private Collection createTestCollection(final String metadata) throws Exception {
+    Collection c = new Collection();
+    c.setId(UUID.randomUUID().toString());
+    c.setTypeId("aCollectionType");
+
+    Element e = new Element();
+    e.setId("anElementId");
+    e.setDateCreated(Instant.ofEpochMilli(10));
+    e.setDateModified(Instant.ofEpochMilli(10));
+    e.setMetadata(objectMapper.readTree(metadata));
+
+    Artifact a = new Artifact();
+    a.setContentURI("text:from://some/where");
+    a.setMediaType(MediaType.TEXT_PLAIN);
+    e.setSpecification(a);
+
+    c.getElements().add(e);
+    return c;
+  }
+}
@@ -0,0 +1,119 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.spec.Artifact;
+
+/**
+ * Compares the {@link CollectionEntityMapper} with the formerly used, reflective ModelMapper
+ * configured by the {@link EntityMapperConfigurer}, in both directions and for collections of
+ * different sizes.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityMappingBenchmark {
+  @Param({
+      "10", "100", "1000"
+  })
+  public int elements;
+
+  private final ObjectMapper objectMapper = new ObjectMapper() //
+      .registerModule(new JavaTimeModule()) //
+      .registerModule(new SimpleModule().addSerializer(MediaType.class, ToStringSerializer.instance));
+
+  private final CollectionEntityMapper entityMapper = new CollectionEntityMapper(objectMapper);
+
+  private final ModelMapper modelMapper = new ModelMapper();
+
+  private Collection collection;
+
+  private CollectionEntity entity;
+
+  @Setup
+  public void setup() {
+    new EntityMapperConfigurer(entityMapper).configure(modelMapper);
+
+    collection = new Collection();
+    collection.setId("aCollection");
+    collection.setVersionTimestamp(Instant.ofEpochMilli(10));
+    collection.setTypeId("aCollectionType");
+    collection.setDateCreated(Instant.ofEpochMilli(10));
+    collection.setDateModified(Instant.ofEpochMilli(10));
+    collection.setCreatedBy("user");
+    collection.setMetadata(objectMapper.createObjectNode().put("foo", "bar"));
+
+    for (int i = 0; i < elements; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      e.setDateCreated(Instant.ofEpochMilli(10));
+      e.setDateModified(Instant.ofEpochMilli(10));
+      e.setTags(new ArrayList<>(Arrays.asList("foo", "bar")));
+      e.setMetadata(objectMapper.createObjectNode().put("title", "Element " + i).put("pages", i));
+
+      Artifact a = new Artifact();
+      a.setContentURI("text:collection:from://some/where/" + i);
+      a.setMediaType(MediaType.TEXT_PLAIN);
+      e.setSpecification(a);
+
+      collection.getElements().add(e);
+    }
+
+    entity = entityMapper.toEntity(collection);
+  }
+
+  @Benchmark
+  public CollectionEntity toEntity_modelMapper() {
+    return modelMapper.map(collection, CollectionEntity.class);
+  }
+
+  @Benchmark
+  public CollectionEntity toEntity_entityMapper() {
+    return entityMapper.toEntity(collection);
+  }
+
+  @Benchmark
+  public Collection toCollection_modelMapper() {
+    return modelMapper.map(entity, Collection.class);
+  }
+
+  @Benchmark
+  public Collection toCollection_entityMapper() {
+    return entityMapper.toCollection(entity);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(EntityMappingBenchmark.class.getSimpleName()).build()).run();
+  }
+}
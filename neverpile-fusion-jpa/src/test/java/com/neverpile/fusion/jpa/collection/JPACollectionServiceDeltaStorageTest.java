@@ -0,0 +1,159 @@
+package com.neverpile.fusion.jpa.collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.spec.Artifact;
+
+@DataJpaTest
+@EnableAutoConfiguration
+@ContextConfiguration(classes = {
+    JacksonAutoConfiguration.class, JacksonConfiguration.class, FusionModelMapperConfiguration.class,
+    JPACollectionServiceConfiguration.class
+})
+@TestPropertySource(properties = {
+    "neverpile-fusion.jpa.storage-mode=DELTA", "neverpile-fusion.jpa.snapshot-interval=3"
+})
+public class JPACollectionServiceDeltaStorageTest {
+  @Autowired
+  private JPACollectionService collectionService;
+
+  @Autowired
+  private CollectionRepository collectionRepository;
+
+  @Autowired
+  private TestEntityManager entityManager;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @MockBean
+  private Clock clock;
+
+  @Test
+  public void testThat_unchangedElementsAreStoredByReference() {
+    Collection c = createTestCollection(3);
+
+    Instant v1 = save(c, null, 10);
+    c.getElements().get(1).getTags().add("changed");
+    Instant v2 = save(c, v1, 20);
+
+    CollectionEntity stored = load(c.getId(), v2);
+    assertThat(stored.getDeltaDepth()).isEqualTo(1);
+    assertThat(stored.getElements()).extracting(ElementEntity::getBaseVersion).containsExactly(v1, null, v1);
+    assertThat(stored.getElements().get(0).getSpecification()).isNull();
+
+    // references point to the version holding the content, not to the previous version
+    c.getElements().get(2).getTags().add("changed");
+    Instant v3 = save(c, v2, 30);
+    assertThat(load(c.getId(), v3).getElements()).extracting(ElementEntity::getBaseVersion) //
+        .containsExactly(v1, v2, null);
+  }
+
+  @Test
+  public void testThat_fullSnapshotsAreStoredPeriodically() {
+    Collection c = createTestCollection(2);
+
+    List<Instant> versions = new ArrayList<>();
+    Instant previous = null;
+    for (int i = 1; i <= 5; i++) {
+      previous = save(c, previous, i * 10);
+      versions.add(previous);
+    }
+
+    assertThat(versions).extracting(v -> load(c.getId(), v).getDeltaDepth()).containsExactly(0, 1, 2, 0, 1);
+    assertThat(load(c.getId(), versions.get(3)).getElements()).extracting(ElementEntity::getBaseVersion) //
+        .containsOnlyNulls();
+  }
+
+  @Test
+  public void testThat_versionsAreReconstructed() throws Exception {
+    Collection c = createTestCollection(4);
+
+    List<String> expected = new ArrayList<>();
+    List<Instant> versions = new ArrayList<>();
+    Instant previous = null;
+    for (int i = 0; i < 7; i++) {
+      Element e = c.getElements().get(i % 4);
+      e.setMetadata(objectMapper.createObjectNode().put("revision", i));
+      e.setDateModified(Instant.ofEpochMilli(100 + i));
+
+      previous = save(c, previous, 10 + i * 10);
+      versions.add(previous);
+      expected.add(objectMapper.writeValueAsString(c.getElements()));
+    }
+
+    for (int i = 0; i < versions.size(); i++) {
+      Collection reloaded = collectionService.getVersion(c.getId(), versions.get(i)).get();
+      assertThat(objectMapper.writeValueAsString(reloaded.getElements())).isEqualTo(expected.get(i));
+    }
+
+    assertThat(objectMapper.writeValueAsString(collectionService.getCurrent(c.getId()).get().getElements())) //
+        .isEqualTo(expected.get(expected.size() - 1));
+  }
+
+  private Instant save(final Collection c, final Instant previousVersion, final long millis) {
+    c.setVersionTimestamp(previousVersion);
+    when(clock.instant()).thenReturn(Instant.ofEpochMilli(millis));
+    Instant saved = collectionService.save(c).getVersionTimestamp();
+    entityManager.flush();
+    entityManager.clear();
+    return saved;
+  }
+
+  private CollectionEntity load(final String id, final Instant versionTimestamp) {
+    IdAndVersionTimestamp key = new IdAndVersionTimestamp();
+    key.setId(id);
+    key.setVersionTimestamp(versionTimestamp);
+    return collectionRepository.findById(key).get();
+  }
+
+  private Collection createTestCollection(final int elements) {
+    Collection c = new Collection();
+    c.setId(UUID.randomUUID().toString());
+    c.setTypeId("aCollectionType");
+    c.setDateCreated(Instant.ofEpochMilli(10));
+    c.setDateModified(Instant.ofEpochMilli(10));
+    c.setCreatedBy("user");
+
+    for (int i = 0; i < elements; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      e.setDateCreated(Instant.ofEpochMilli(10));
+      e.setDateModified(Instant.ofEpochMilli(10));
+      e.setTags(new ArrayList<>(Arrays.asList("foo", "bar")));
+      e.setMetadata(objectMapper.createObjectNode().put("foo", "baz"));
+
+      Artifact a = new Artifact();
+      a.setContentURI("text:collection:from://some/where/" + i);
+      a.setMediaType(MediaType.TEXT_PLAIN);
+      e.setSpecification(a);
+
+      c.getElements().add(e);
+    }
+    return c;
+  }
+}
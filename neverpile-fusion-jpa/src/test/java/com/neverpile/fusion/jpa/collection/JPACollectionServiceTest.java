@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Optional;
@@ -15,17 +16,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.api.VersionQuery;
+import com.neverpile.fusion.api.VersionQuery.Direction;
 import com.neverpile.fusion.api.exception.VersionMismatchException;
 import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
 import com.neverpile.fusion.configuration.JacksonConfiguration;
 import com.neverpile.fusion.model.Collection;
 import com.neverpile.fusion.model.Collection.State;
 import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.VersionMetadata;
 import com.neverpile.fusion.model.spec.Artifact;
 import com.neverpile.fusion.model.spec.CompositePaged;
 import com.neverpile.fusion.model.spec.CompositePaged.PageSequence;
@@ -43,6 +48,15 @@ public class JPACollectionServiceTest {
   @Autowired
   private ObjectMapper objectMapper;
 
+  @Autowired
+  private CollectionRepository collectionRepository;
+
+  @Autowired
+  private CurrentVersionInitializer currentVersionInitializer;
+
+  @Autowired
+  private TestEntityManager entityManager;
+
   @MockBean
   private Clock clock;
   
@@ -161,6 +175,120 @@ public class JPACollectionServiceTest {
     assertThrows(VersionMismatchException.class, () -> collectionService.save(tf));
   }    
 
+  @Test
+  public void testThat_currentVersionIsTheMostRecentlySavedOne() {
+    Collection tf = createTestCollection();
+    tf.setId(UUID.randomUUID().toString());
+
+    Instant v1 = Instant.ofEpochMilli(10);
+    Instant v2 = Instant.ofEpochMilli(20);
+
+    tf.setVersionTimestamp(null);
+    when(clock.instant()).thenReturn(v1);
+    collectionService.save(tf);
+    assertThat(collectionService.getCurrent(tf.getId()).get().getVersionTimestamp()).isEqualTo(v1);
+
+    // saving without a version timestamp moves the current version as well
+    tf.setVersionTimestamp(null);
+    when(clock.instant()).thenReturn(v2);
+    collectionService.save(tf);
+
+    Optional<Collection> current = collectionService.getCurrent(tf.getId());
+    assertThat(current).isNotEmpty();
+    assertThat(current.get().getVersionTimestamp()).isEqualTo(v2);
+    verifyTestCollection(current.get());
+  }
+
+  @Test
+  public void testThat_missingCurrentVersionsAreInitialized() {
+    String id = UUID.randomUUID().toString();
+
+    // versions stored without a current version pointer
+    for (long millis : new long[]{
+        10, 30, 20
+    }) {
+      CollectionEntity e = new CollectionEntity();
+      e.setId(id);
+      e.setVersionTimestamp(Instant.ofEpochMilli(millis));
+      e.setTypeId("aCollectionType");
+      collectionRepository.save(e);
+    }
+    entityManager.flush();
+
+    assertThat(collectionService.getCurrent(id)).isEmpty();
+    assertThat(currentVersionInitializer.checkMissing()).isGreaterThanOrEqualTo(1);
+
+    assertThat(currentVersionInitializer.initialize()).isEqualTo(1);
+    assertThat(currentVersionInitializer.checkMissing()).isZero();
+
+    assertThat(collectionService.getCurrent(id).get().getVersionTimestamp()).isEqualTo(Instant.ofEpochMilli(30));
+
+    // and the collection can be updated again
+    Collection tf = createTestCollection();
+    tf.setId(id);
+    tf.setVersionTimestamp(Instant.ofEpochMilli(30));
+    when(clock.instant()).thenReturn(Instant.ofEpochMilli(40));
+    assertThat(collectionService.save(tf).getVersionTimestamp()).isEqualTo(Instant.ofEpochMilli(40));
+  }
+
+  @Test
+  public void testThat_versionHistoryCanBePaged() {
+    Collection tf = createTestCollection();
+    tf.setId(UUID.randomUUID().toString());
+
+    tf.setVersionTimestamp(null);
+    for (int i = 1; i <= 5; i++) {
+      when(clock.instant()).thenReturn(Instant.ofEpochMilli(i * 10));
+      collectionService.save(tf);
+    }
+
+    // most recent page first
+    VersionQuery query = new VersionQuery(null, null, 2, Direction.DESCENDING);
+    assertThat(collectionService.getVersions(tf.getId(), query)) //
+        .containsExactly(Instant.ofEpochMilli(50), Instant.ofEpochMilli(40));
+
+    query.setBefore(Instant.ofEpochMilli(40));
+    assertThat(collectionService.getVersionsWithMetadata(tf.getId(), query)) //
+        .flatExtracting(VersionMetadata::getVersionTimestamps) //
+        .containsExactly(Instant.ofEpochMilli(30), Instant.ofEpochMilli(20));
+
+    // ascending between bounds
+    query = new VersionQuery(Instant.ofEpochMilli(10), Instant.ofEpochMilli(50), null, Direction.ASCENDING);
+    assertThat(collectionService.getVersions(tf.getId(), query)) //
+        .containsExactly(Instant.ofEpochMilli(20), Instant.ofEpochMilli(30), Instant.ofEpochMilli(40));
+
+    assertThat(collectionService.getVersions("doesNotExist", VersionQuery.all())).isEmpty();
+  }
+
+  @Test
+  public void testThat_relatedVersionsAreGrouped() {
+    Collection tf = createTestCollection();
+    tf.setId(UUID.randomUUID().toString());
+
+    tf.setVersionTimestamp(null);
+    for (long seconds : new long[]{
+        0, 10, 20, 100, 110, 200
+    }) {
+      when(clock.instant()).thenReturn(Instant.ofEpochSecond(seconds));
+      collectionService.save(tf);
+    }
+
+    VersionQuery query = new VersionQuery(null, null, 2, Direction.DESCENDING);
+    query.setGroupingWindow(Duration.ofSeconds(30));
+
+    assertThat(collectionService.getVersionsWithMetadata(tf.getId(), query)) //
+        .extracting(VersionMetadata::getVersionTimestamps) //
+        .containsExactly( //
+            Arrays.asList(Instant.ofEpochSecond(200)), //
+            Arrays.asList(Instant.ofEpochSecond(110), Instant.ofEpochSecond(100)));
+
+    // next page
+    query.setBefore(Instant.ofEpochSecond(100));
+    assertThat(collectionService.getVersionsWithMetadata(tf.getId(), query)) //
+        .extracting(VersionMetadata::getVersionTimestamps) //
+        .containsExactly(Arrays.asList(Instant.ofEpochSecond(20), Instant.ofEpochSecond(10), Instant.ofEpochSecond(0)));
+  }
+
   private Collection createTestCollection() {
     Collection f = new Collection();
     f.setTypeId("aCollectionType");
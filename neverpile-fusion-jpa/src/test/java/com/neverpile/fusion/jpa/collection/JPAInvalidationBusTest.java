@@ -0,0 +1,89 @@
+package com.neverpile.fusion.jpa.collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+import com.neverpile.fusion.api.InvalidationBus;
+import com.neverpile.fusion.api.InvalidationEvent;
+import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+
+@DataJpaTest
+@EnableAutoConfiguration
+@ContextConfiguration(classes = {
+    JacksonAutoConfiguration.class, JacksonConfiguration.class, FusionModelMapperConfiguration.class,
+    JPACollectionServiceConfiguration.class
+})
+@TestPropertySource(properties = {
+    "neverpile-fusion.jpa.invalidation-bus=true", "neverpile-fusion.jpa.invalidation-poll-interval=PT1H"
+})
+public class JPAInvalidationBusTest {
+  @Autowired
+  private InvalidationBus bus;
+
+  @Autowired
+  private InvalidationEventRepository repository;
+
+  @Autowired
+  private JPAConfiguration config;
+
+  @MockBean
+  private Clock clock;
+
+  private JPAInvalidationBus otherNode;
+
+  private final List<InvalidationEvent> received = new ArrayList<>();
+
+  @BeforeEach
+  public void startOtherNode() {
+    otherNode = new JPAInvalidationBus(repository, config);
+    otherNode.subscribe(received::add);
+  }
+
+  @Test
+  public void testThat_databaseBusIsUsed() {
+    assertThat(bus).isInstanceOf(JPAInvalidationBus.class);
+  }
+
+  @Test
+  public void testThat_eventsAreDeliveredToOtherNodesOnce() {
+    otherNode.poll();
+
+    bus.publish(new InvalidationEvent("aCollection", Instant.ofEpochMilli(10)));
+    bus.publish(new InvalidationEvent("anotherCollection", Instant.ofEpochMilli(20)));
+
+    assertThat(otherNode.poll()).isEqualTo(2);
+    assertThat(received).extracting(InvalidationEvent::getCollectionId, InvalidationEvent::getVersionTimestamp) //
+        .containsExactly( //
+            tuple("aCollection", Instant.ofEpochMilli(10)), //
+            tuple("anotherCollection", Instant.ofEpochMilli(20)));
+
+    // events within the overlap are read again, but not delivered again
+    assertThat(otherNode.poll()).isZero();
+    assertThat(received).hasSize(2);
+  }
+
+  @Test
+  public void testThat_eventsBeforeTheFirstPollAreSkipped() {
+    bus.publish(new InvalidationEvent("aCollection", Instant.ofEpochMilli(10)));
+
+    assertThat(otherNode.poll()).isZero();
+    assertThat(received).isEmpty();
+  }
+}
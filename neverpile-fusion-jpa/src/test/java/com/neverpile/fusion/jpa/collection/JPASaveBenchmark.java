@@ -0,0 +1,180 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neverpile.fusion.configuration.FusionModelMapperConfiguration;
+import com.neverpile.fusion.configuration.JacksonConfiguration;
+import com.neverpile.fusion.model.Collection;
+import com.neverpile.fusion.model.Element;
+import com.neverpile.fusion.model.spec.Artifact;
+
+/**
+ * Measures the latency of saving a new version of collections with 10, 100 and 1000 elements to an
+ * in-memory H2 database, with and without JDBC batching. The number of JDBC statements prepared per
+ * save is printed at the end of each iteration.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JPASaveBenchmark {
+  @Configuration
+  @EnableAutoConfiguration
+  @Import({
+      JacksonAutoConfiguration.class, JacksonConfiguration.class, FusionModelMapperConfiguration.class,
+      JPACollectionServiceConfiguration.class
+  })
+  static class BenchmarkConfiguration {
+    /**
+     * A clock advancing by a millisecond on every call, so that consecutive saves always get
+     * distinct version timestamps.
+     */
+    @Bean
+    Clock tickingClock() {
+      AtomicLong millis = new AtomicLong(System.currentTimeMillis());
+      return new Clock() {
+        @Override
+        public Instant instant() {
+          return Instant.ofEpochMilli(millis.incrementAndGet());
+        }
+
+        @Override
+        public ZoneId getZone() {
+          return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+          return this;
+        }
+      };
+    }
+  }
+
+  @Param({
+      "10", "100", "1000"
+  })
+  public int elements;
+
+  @Param({
+      "1", "50"
+  })
+  public int jdbcBatchSize;
+
+  private ConfigurableApplicationContext context;
+
+  private JPACollectionService collectionService;
+
+  private Statistics statistics;
+
+  private Collection collection;
+
+  private long saves;
+
+  @Setup
+  public void setup() {
+    context = new SpringApplicationBuilder(BenchmarkConfiguration.class) //
+        .web(WebApplicationType.NONE) //
+        .properties( //
+            "spring.datasource.url=jdbc:h2:mem:save-benchmark;DB_CLOSE_DELAY=-1", //
+            "spring.jpa.properties.hibernate.generate_statistics=true", //
+            "neverpile-fusion.jpa.jdbc-batch-size=" + jdbcBatchSize) //
+        .run();
+
+    collectionService = context.getBean(JPACollectionService.class);
+    statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+    ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+    collection = new Collection();
+    collection.setId(UUID.randomUUID().toString());
+    collection.setTypeId("aCollectionType");
+    collection.setCreatedBy("user");
+    collection.setMetadata(objectMapper.createObjectNode().put("foo", "bar"));
+    for (int i = 0; i < elements; i++) {
+      Element e = new Element();
+      e.setId("element-" + i);
+      e.setDateCreated(Instant.now());
+      e.setDateModified(Instant.now());
+      e.setTags(Arrays.asList("foo", "bar"));
+      e.setMetadata(objectMapper.createObjectNode().put("index", i).put("name", "Element " + i));
+
+      Artifact a = new Artifact();
+      a.setContentURI("text:from://some/where/" + i);
+      a.setMediaType(MediaType.TEXT_PLAIN);
+      e.setSpecification(a);
+
+      collection.getElements().add(e);
+    }
+    collection.setVersionTimestamp(null);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Setup(Level.Iteration)
+  public void resetStatistics() {
+    statistics.clear();
+    saves = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void reportStatistics() {
+    // without batching, every row is written by a statement of its own
+    System.out.printf("%n  JDBC statements per save: %.1f%n", (double) statistics.getPrepareStatementCount() / saves);
+  }
+
+  @Benchmark
+  public Collection save() {
+    // the version timestamp of the previous save is the expected current version
+    saves++;
+    return collectionService.save(collection);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JPASaveBenchmark.class.getSimpleName()).build()).run();
+  }
+}
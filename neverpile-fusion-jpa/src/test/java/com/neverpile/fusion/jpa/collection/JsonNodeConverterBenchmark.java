@@ -0,0 +1,136 @@
+package com.neverpile.fusion.jpa.collection;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+import com.neverpile.fusion.jpa.JPAConfiguration.JsonCompression;
+import com.neverpile.fusion.jpa.JPAConfiguration.JsonEncoding;
+import com.neverpile.fusion.model.spec.CompositePaged;
+import com.neverpile.fusion.model.spec.CompositePaged.PageSequence;
+
+/**
+ * Measures encoding and decoding times of {@link JsonNodeConverter} for the supported encodings and
+ * compressions. The stored size of each payload is printed during setup. Payloads are typical
+ * element metadata and a {@link CompositePaged} specification of a 50 page document with annotation
+ * data on every page.
+ * <p>
+ * Run via {@link #main(String[])} from the test class path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonNodeConverterBenchmark {
+  @Param({
+      "metadata", "annotatedSpecification"
+  })
+  public String payload;
+
+  @Param({
+      "TEXT", "SMILE", "CBOR"
+  })
+  public JsonEncoding encoding;
+
+  @Param({
+      "NONE", "DEFLATE", "LZ4"
+  })
+  public JsonCompression compression;
+
+  private final ObjectMapper objectMapper = new ObjectMapper() //
+      .registerModule(new SimpleModule().addSerializer(MediaType.class, ToStringSerializer.instance));
+
+  private JsonNodeConverter converter;
+
+  private JsonNode node;
+
+  private String stored;
+
+  @Setup
+  public void setup() {
+    JPAConfiguration config = new JPAConfiguration();
+    config.setJsonEncoding(encoding);
+    config.setJsonCompression(compression);
+    converter = new JsonNodeConverter(objectMapper, config);
+
+    node = "metadata".equals(payload) ? metadata() : annotatedSpecification();
+    stored = converter.convertToDatabaseColumn(node);
+
+    System.out.printf("%n  %s as %s/%s: %d characters (text: %d)%n", payload, encoding, compression, stored.length(),
+        node.toString().length());
+  }
+
+  @Benchmark
+  public String encode() {
+    return converter.convertToDatabaseColumn(node);
+  }
+
+  @Benchmark
+  public JsonNode decode() {
+    return converter.convertToEntityAttribute(stored);
+  }
+
+  private JsonNode metadata() {
+    ObjectNode metadata = objectMapper.createObjectNode();
+    metadata.put("documentType", "invoice").put("customerNumber", "C-0815-4711").put("amount", 1234.56) //
+        .put("currency", "EUR").put("received", "2020-06-01T12:00:00Z").put("approved", true);
+    metadata.putArray("costCenters").add("4711").add("0815");
+    metadata.putObject("sender").put("name", "ACME Inc.").put("street", "Main Street 1").put("city", "Springfield");
+    return metadata;
+  }
+
+  private JsonNode annotatedSpecification() {
+    CompositePaged spec = new CompositePaged();
+    for (int s = 0; s < 5; s++) {
+      PageSequence ps = new PageSequence();
+      ps.setMediaType(MediaType.APPLICATION_PDF);
+      ps.setContentURI("pdf:from://some/where/part-" + s);
+      ps.setPageIndices(new int[]{
+          0, 1, 2, 3, 4, 5, 6, 7, 8, 9
+      });
+
+      ArrayNode annotations = objectMapper.createArrayNode();
+      for (int page = 0; page < 10; page++)
+        for (int a = 0; a < 20; a++)
+          annotations.addObject() //
+              .put("type", a % 3 == 0 ? "Highlight" : "Note") //
+              .put("page", page) //
+              .put("x", 12.5 * a).put("y", 40.25 * page).put("width", 120).put("height", 18) //
+              .put("color", "#ffee00") //
+              .put("author", "user" + a % 4) //
+              .put("created", "2020-06-01T12:00:00Z") //
+              .put("text", "Please check the amount on this page against the order " + a);
+      ps.setAnnotationData(annotations);
+
+      spec.getPageSequences().add(ps);
+    }
+    return objectMapper.valueToTree(spec);
+  }
+
+  public static void main(final String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(JsonNodeConverterBenchmark.class.getSimpleName()).build()).run();
+  }
+}
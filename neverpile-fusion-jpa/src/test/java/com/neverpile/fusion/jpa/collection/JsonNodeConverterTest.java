@@ -0,0 +1,65 @@
+package com.neverpile.fusion.jpa.collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.neverpile.fusion.jpa.JPAConfiguration;
+import com.neverpile.fusion.jpa.JPAConfiguration.JsonCompression;
+import com.neverpile.fusion.jpa.JPAConfiguration.JsonEncoding;
+
+public class JsonNodeConverterTest {
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final JPAConfiguration config = new JPAConfiguration();
+
+  private final JsonNodeConverter converter = new JsonNodeConverter(objectMapper, config);
+
+  @Test
+  public void testThat_textIsStoredUntaggedByDefault() {
+    assertThat(converter.convertToDatabaseColumn(sample())) //
+        .isEqualTo("{\"foo\":\"bar\",\"values\":[1,2.5,true,null]}");
+  }
+
+  @Test
+  public void testThat_allEncodingsRoundTrip() {
+    for (JsonEncoding encoding : JsonEncoding.values())
+      for (JsonCompression compression : JsonCompression.values()) {
+        config.setJsonEncoding(encoding);
+        config.setJsonCompression(compression);
+
+        String stored = converter.convertToDatabaseColumn(sample());
+        if (encoding != JsonEncoding.TEXT || compression != JsonCompression.NONE)
+          assertThat(stored).startsWith("$" + encoding.name().toLowerCase());
+
+        assertThat(converter.convertToEntityAttribute(stored)).as(encoding + "/" + compression).isEqualTo(sample());
+      }
+  }
+
+  @Test
+  public void testThat_valuesRemainReadableAfterChangingTheEncoding() {
+    String text = converter.convertToDatabaseColumn(sample());
+
+    config.setJsonEncoding(JsonEncoding.SMILE);
+    config.setJsonCompression(JsonCompression.LZ4);
+    String smile = converter.convertToDatabaseColumn(sample());
+
+    config.setJsonEncoding(JsonEncoding.CBOR);
+    config.setJsonCompression(JsonCompression.DEFLATE);
+    assertThat(converter.convertToEntityAttribute(text)).isEqualTo(sample());
+    assertThat(converter.convertToEntityAttribute(smile)).isEqualTo(sample());
+
+    config.setJsonEncoding(JsonEncoding.TEXT);
+    config.setJsonCompression(JsonCompression.NONE);
+    assertThat(converter.convertToEntityAttribute(smile)).isEqualTo(sample());
+  }
+
+  private JsonNode sample() {
+    ObjectNode node = objectMapper.createObjectNode().put("foo", "bar");
+    node.putArray("values").add(1).add(2.5).add(true).addNull();
+    return node;
+  }
+}